@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static ro.derbederos.untwist.ReversibleJavaRandom.ADDEND;
+import static ro.derbederos.untwist.ReversibleJavaRandom.INVERSE_MULTIPLIER;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MASK;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MULTIPLIER;
+
+/**
+ * Recovers the state of {@link java.util.Random} out of consecutive {@code nextInt(bound)} values,
+ * as a hidden number problem solved on a lattice.
+ * <p>
+ * A power of two bound gives the high bits of the state. Any other bound {@code n = 2^t * m}, with
+ * {@code m} odd, gives the lowest {@code t} bits of {@code r = state >>> 17} and the remainder of
+ * {@code r} modulo {@code m}. For these the low {@code 17 + min(t, 7)} bits of the state are guessed,
+ * the known low bits of {@code r} filtering the guesses, and the remainders modulo {@code m} turn into
+ * intervals of the high bits. In both cases each value bounds {@code (B * x + G) mod 2^K} for the unknown
+ * high bits {@code x}. The lattice of these constraints does not depend on the guess, so it is reduced
+ * only once, and the vectors close to each guess are enumerated with the nearest planes algorithm.
+ * <p>
+ * The values rejected by {@code nextInt(bound)} shift the following states by one, so the recovery is
+ * done on windows of values, one after another, and each candidate state is checked against all
+ * the values.
+ */
+final class BoundedIntRecovery {
+
+    /**
+     * Bits of the state below the high bits of {@code nextInt}.
+     */
+    private static final int DROPPED_BITS = 17;
+    /**
+     * Maximum number of low bits of {@code nextInt} values that are guessed, besides the dropped bits.
+     */
+    private static final int MAX_GUESSED_BITS = 7;
+    /**
+     * The fixed part of the bits of information a window has over the unknown bits.
+     */
+    private static final int MARGIN_BITS = 8;
+    /**
+     * The logarithm of the number of close vectors tried for a window, split between the guesses of the low bits,
+     * and the bits added to it when no window gave the state, for a last and slower pass.
+     */
+    private static final int CANDIDATE_BITS = 16;
+    private static final int RETRY_CANDIDATE_BITS = 4;
+    /**
+     * The number of rejected values searched for before a window, for each value before it.
+     */
+    private static final int REJECTIONS_PER_VALUE = 2;
+    /**
+     * The number of values rejected inside a window which are tried, when the bounds reject often enough.
+     */
+    private static final int MAX_WINDOW_REJECTIONS = 3;
+    private static final double MIN_WINDOW_REJECTION_PROBABILITY = 1.0 / 256;
+
+    private final int[] bounds;
+    private final int[] values;
+
+    BoundedIntRecovery(int[] bounds, int[] values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("No values");
+        }
+        BoundedValues.check(bounds, values);
+        this.bounds = bounds.clone();
+        this.values = values.clone();
+    }
+
+    /**
+     * The search is not exhaustive: the lattices are searched only around the closest vectors, so a state
+     * may be missed when the values have little information over the needed one.
+     *
+     * @return the state before the first value, or {@code -1} if no state was found.
+     * @throws IllegalArgumentException if the values do not have enough information to find the state.
+     */
+    long recover() {
+        final Window first = new Window(0);
+        if (first.information < first.neededInformation()) {
+            throw new IllegalArgumentException("Not enough values to recover the state, "
+                    + (int) first.information + " bits of the needed " + (int) first.neededInformation());
+        }
+        final long state = recover(CANDIDATE_BITS);
+        return state >= 0 ? state : recover(CANDIDATE_BITS + RETRY_CANDIDATE_BITS);
+    }
+
+    private long recover(int candidateBits) {
+        int start = 0;
+        while (true) {
+            final Window window = new Window(start);
+            final long state = window.search(candidateBits);
+            if (state >= 0 || window.end == values.length) {
+                return state;
+            }
+            start = BoundedValues.nextWindowStart(start, window.end);
+        }
+    }
+
+    /**
+     * @return the probability that {@code nextInt(bound)} rejects a value of {@code next(31)}.
+     */
+    private static double rejectionProbability(int bound) {
+        if ((bound & (bound - 1)) == 0) {
+            return 0;
+        }
+        return (double) ((1L << 31) % bound) / (1L << 31);
+    }
+
+    /**
+     * Same as {@link java.util.Random#nextInt(int)}, on a state held by an array.
+     *
+     * @param state the state, as its first element, which is updated.
+     * @param bound the bound.
+     * @return the value.
+     */
+    static int nextInt(long[] state, int bound) {
+        int r = next31(state);
+        final int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        int u = r;
+        while (u - (r = u % bound) + m < 0) {
+            u = next31(state);
+        }
+        return r;
+    }
+
+    private static int next31(long[] state) {
+        state[0] = (state[0] * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state[0] >>> DROPPED_BITS);
+    }
+
+    private static long inverse(long odd) {
+        long inverse = odd;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - odd * inverse;
+        }
+        return inverse;
+    }
+
+    /**
+     * Values {@code [start, end)} used to build a lattice, as if none of them or only a few of them were rejected.
+     */
+    private final class Window {
+
+        private final int start;
+        private final int end;
+        /**
+         * The guessed low bits of the state, and the unknown high bits.
+         */
+        private final int lowBits;
+        private final int unknownBits;
+        private final double information;
+
+        // for each informative value: the state before it is multiplier * state + addend, for the values
+        // rejected inside the window given to setRejections
+        private final int size;
+        private final int[] indexes;
+        private final long[] multipliers;
+        private final long[] addends;
+        private final int maxRejections;
+        // for the other bounds: the odd part, its inverse modulo 2^unknownBits, and the inverse of
+        // 2^(lowBits - DROPPED_BITS) modulo the odd part; 0 for the powers of two
+        private final long[] odd;
+        private final long[] oddInverse;
+        private final long[] shiftInverse;
+        private final int[] filterMasks;
+        private final long[] widths;
+        private final double[] scales;
+
+        Window(int start) {
+            this.start = start;
+            int end = start;
+            int count = 0;
+            int guessedBits = -1;
+            double information;
+            int unknownBits;
+            do {
+                final int bound = bounds[end++];
+                if (bound > 1) {
+                    count++;
+                    if ((bound & (bound - 1)) != 0) {
+                        guessedBits = Math.max(guessedBits,
+                                Math.min(MAX_GUESSED_BITS, Integer.numberOfTrailingZeros(bound)));
+                    }
+                }
+                unknownBits = 48 - (guessedBits < 0 ? 0 : DROPPED_BITS + guessedBits);
+                information = information(start, end, unknownBits);
+            } while (end < values.length && count < BoundedValues.MAX_WINDOW_SIZE
+                    && information < neededInformation(unknownBits, count));
+            this.end = end;
+            this.size = count;
+            this.unknownBits = unknownBits;
+            this.lowBits = 48 - unknownBits;
+            this.information = information;
+
+            final long maskK = (1L << unknownBits) - 1;
+            indexes = new int[count];
+            multipliers = new long[count];
+            addends = new long[count];
+            odd = new long[count];
+            oddInverse = new long[count];
+            shiftInverse = new long[count];
+            filterMasks = new int[count];
+            widths = new long[count];
+            scales = new double[count];
+            double rejectionProbability = 0;
+            for (int i = start + 1; i < end; i++) {
+                rejectionProbability += rejectionProbability(bounds[i]);
+            }
+            maxRejections = rejectionProbability < MIN_WINDOW_REJECTION_PROBABILITY ? 0 : MAX_WINDOW_REJECTIONS;
+            for (int i = start, j = 0; i < end; i++) {
+                final int bound = bounds[i];
+                if (bound == 1) {
+                    continue;
+                }
+                indexes[j] = i;
+                final int bits = Integer.numberOfTrailingZeros(bound);
+                if ((bound & (bound - 1)) == 0) {
+                    widths[j] = 1L << (unknownBits - Math.min(bits, unknownBits));
+                } else {
+                    final int guessed = lowBits - DROPPED_BITS;
+                    odd[j] = bound >>> bits;
+                    oddInverse[j] = inverse(odd[j]) & maskK;
+                    shiftInverse[j] = BigInteger.ONE.shiftLeft(guessed)
+                            .modInverse(BigInteger.valueOf(odd[j])).longValue();
+                    filterMasks[j] = (1 << Math.min(bits, guessed)) - 1;
+                    widths[j] = (maskK + odd[j]) / odd[j];
+                }
+                scales[j] = Math.ceil((double) (1L << unknownBits) / widths[j]);
+                j++;
+            }
+        }
+
+        double neededInformation() {
+            return neededInformation(unknownBits, size);
+        }
+
+        private double neededInformation(int unknownBits, int count) {
+            return BoundedValues.neededInformation(unknownBits, MARGIN_BITS, count);
+        }
+
+        private double information(int from, int to, int unknownBits) {
+            double information = 0;
+            for (int i = from; i < to; i++) {
+                final int bound = bounds[i];
+                if ((bound & (bound - 1)) == 0) {
+                    information += Math.min(Integer.numberOfTrailingZeros(bound), unknownBits);
+                } else {
+                    information += Math.log(bound >>> Integer.numberOfTrailingZeros(bound)) / Math.log(2);
+                }
+            }
+            return information;
+        }
+
+        /**
+         * Sets the states of the informative values.
+         *
+         * @param rejections the number of values rejected before each value of the window, after the first.
+         */
+        private void setRejections(int[] rejections) {
+            long multiplier = 1;
+            long addend = 0;
+            for (int i = start, j = 0; i < end; i++) {
+                for (int step = 0; step <= rejections[i - start]; step++) {
+                    multiplier = (multiplier * MULTIPLIER) & MASK;
+                    addend = (addend * MULTIPLIER + ADDEND) & MASK;
+                }
+                if (bounds[i] != 1) {
+                    multipliers[j] = multiplier;
+                    addends[j] = addend;
+                    j++;
+                }
+            }
+        }
+
+        /**
+         * Searches the state assuming no rejected values inside the window, then assuming a few of them, when
+         * the bounds reject often.
+         *
+         * @param candidateBits the logarithm of the number of close vectors tried.
+         * @return the state before the first value, or {@code -1} if not found.
+         */
+        long search(int candidateBits) {
+            if (size == 0) {
+                return -1;
+            }
+            final int[] rejections = new int[end - start];
+            for (int total = 0; total <= maxRejections; total++) {
+                final long state = search(rejections, 1, total, candidateBits);
+                if (state >= 0) {
+                    return state;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Distributes {@code remaining} rejected values to the values from {@code i} to the end of the window,
+         * and searches each of the distributions.
+         */
+        private long search(int[] rejections, int i, int remaining, int candidateBits) {
+            if (remaining == 0) {
+                setRejections(rejections);
+                return searchLattice(candidateBits);
+            }
+            for (; i < rejections.length; i++) {
+                if (rejectionProbability(bounds[start + i]) > 0) {
+                    for (int count = remaining; count > 0; count--) {
+                        rejections[i] = count;
+                        final long state = search(rejections, i + 1, remaining - count, candidateBits);
+                        rejections[i] = 0;
+                        if (state >= 0) {
+                            return state;
+                        }
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private long searchLattice(int candidateBits) {
+            final Lattice lattice = new Lattice(basis());
+            final long maskK = (1L << unknownBits) - 1;
+            final int dimension = lattice.dimension();
+            // the first coordinate of each reduced vector is the multiple of x
+            final long[] firstCoordinates = new long[dimension];
+            for (int i = 0; i < dimension; i++) {
+                firstCoordinates[i] = lattice.vector(i)[0].longValue();
+            }
+            // the close vectors are tried for each guess that passes the filter
+            int filterBits = 0;
+            for (int mask : filterMasks) {
+                filterBits += Integer.bitCount(mask);
+            }
+            final int guessBits = Math.max(0, Math.min(lowBits - filterBits, candidateBits));
+            final int[] branches = lattice.branches(1L << (candidateBits - guessBits));
+            final long[] found = new long[1];
+            final double[] target = new double[size + 1];
+            target[0] = (double) (1L << (unknownBits - 1));
+            final long[] low = new long[size];
+            final int guessedBits = lowBits - DROPPED_BITS;
+            final long guessedMask = (1L << guessedBits) - 1;
+            guesses:
+            for (long guess = 0; guess < (1L << lowBits); guess++) {
+                for (int j = 0; j < size; j++) {
+                    low[j] = (multipliers[j] * guess + addends[j]) & MASK;
+                    if (odd[j] != 0 && ((low[j] >>> DROPPED_BITS) & filterMasks[j])
+                            != (values[indexes[j]] & filterMasks[j])) {
+                        continue guesses;
+                    }
+                }
+                for (int j = 0; j < size; j++) {
+                    final long high = low[j] >>> lowBits;
+                    final long offset;
+                    if (odd[j] == 0) {
+                        final int bits = Math.min(Integer.numberOfTrailingZeros(bounds[indexes[j]]), unknownBits);
+                        final long value = (long) values[indexes[j]] >>> (Integer.numberOfTrailingZeros(
+                                bounds[indexes[j]]) - bits);
+                        offset = (high - (value << (unknownBits - bits))) & maskK;
+                    } else {
+                        final long knownLow = (low[j] >>> DROPPED_BITS) & guessedMask;
+                        final long remainder = Math.floorMod(values[indexes[j]] - knownLow, odd[j])
+                                * shiftInverse[j] % odd[j];
+                        offset = ((high - remainder) * oddInverse[j]) & maskK;
+                    }
+                    target[j + 1] = (widths[j] / 2.0 - offset) * scales[j];
+                }
+                final long lowGuess = guess;
+                if (lattice.closeVectors(target, branches, coefficients -> {
+                    long x = 0;
+                    for (int i = 0; i < dimension; i++) {
+                        x += coefficients[i] * firstCoordinates[i];
+                    }
+                    found[0] = verify(((x & maskK) << lowBits) | lowGuess);
+                    return found[0] >= 0;
+                })) {
+                    return found[0];
+                }
+            }
+            return -1;
+        }
+
+        private BigInteger[][] basis() {
+            final BigInteger modulus = BigInteger.ONE.shiftLeft(unknownBits);
+            final long maskK = (1L << unknownBits) - 1;
+            final BigInteger[][] basis = new BigInteger[size + 1][size + 1];
+            for (BigInteger[] row : basis) {
+                Arrays.fill(row, BigInteger.ZERO);
+            }
+            basis[0][0] = BigInteger.ONE;
+            for (int j = 0; j < size; j++) {
+                final long factor = odd[j] == 0 ? multipliers[j] : multipliers[j] * oddInverse[j];
+                final BigInteger scale = BigInteger.valueOf((long) scales[j]);
+                basis[0][j + 1] = BigInteger.valueOf(factor & maskK).multiply(scale);
+                basis[j + 1][j + 1] = modulus.multiply(scale);
+            }
+            return basis;
+        }
+
+        /**
+         * @param state the state before the first value of the window.
+         * @return the state before the first value, if it gives all the values, or {@code -1}.
+         */
+        private long verify(long state) {
+            final long[] current = {state};
+            for (int i = start; i < end; i++) {
+                if (nextInt(current, bounds[i]) != values[i]) {
+                    return -1;
+                }
+            }
+            for (int rejections = 0; rejections <= REJECTIONS_PER_VALUE * start; rejections++) {
+                final long first = LinearCongruentialJump.skip(state, MULTIPLIER, INVERSE_MULTIPLIER, ADDEND,
+                        MASK, -(start + rejections));
+                current[0] = first;
+                int i = 0;
+                while (i < values.length && nextInt(current, bounds[i]) == values[i]) {
+                    i++;
+                }
+                if (i == values.length) {
+                    return first;
+                }
+            }
+            return -1;
+        }
+    }
+}
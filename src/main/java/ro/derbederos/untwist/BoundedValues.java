@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ro.derbederos.untwist;
+
+/**
+ * The checks of the bounded values given to the searches and the crackers, and the sizing of the windows
+ * the lattice recoveries are done on.
+ */
+final class BoundedValues {
+
+    /**
+     * The bits of information a window has over the unknown bits, for each value, added to a fixed margin,
+     * as the lattices of more values need a wider gap to be solved.
+     */
+    private static final double VALUE_MARGIN_BITS = 0.5;
+    static final int MAX_WINDOW_SIZE = 60;
+
+    private BoundedValues() {
+    }
+
+    /**
+     * @param bounds the bounds of the values.
+     * @param values the values.
+     * @throws IllegalArgumentException if the arrays have different lengths, a bound is not positive,
+     *                                  or a value is out of bound.
+     */
+    static void check(int[] bounds, int[] values) {
+        if (bounds.length != values.length) {
+            throw new IllegalArgumentException("The number of bounds " + bounds.length
+                    + " is different from the number of values " + values.length);
+        }
+        for (int i = 0; i < bounds.length; i++) {
+            if (bounds[i] <= 0) {
+                throw new IllegalArgumentException("bound must be strictly positive");
+            }
+            if (values[i] < 0 || values[i] >= bounds[i]) {
+                throw new IllegalArgumentException("Value " + values[i] + " is out of bound " + bounds[i]);
+            }
+        }
+    }
+
+    /**
+     * @param unknownBits the unknown bits of the state.
+     * @param marginBits  the fixed margin.
+     * @param count       the number of informative values of the window.
+     * @return the bits of information needed by a window.
+     */
+    static double neededInformation(int unknownBits, int marginBits, int count) {
+        return unknownBits + marginBits + VALUE_MARGIN_BITS * count;
+    }
+
+    /**
+     * The windows overlap by half, so that a state missed by a window may be found by the next one.
+     *
+     * @param start the first value of the window.
+     * @param end   the end of the window, exclusive.
+     * @return the first value of the next window.
+     */
+    static int nextWindowStart(int start, int end) {
+        return start + Math.max(1, (end - start) / 2);
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * A compact description of a position in the sequence of a generator: the seed of the generator,
+ * and the number of values generated since the seeding.
+ * <p>
+ * A checkpoint takes a few bytes instead of the whole state of the generator, which is 2.5 KB for a
+ * Mersenne Twister. It is restored by seeding a new generator and skipping to the position, which
+ * takes a logarithmic time for the generators with a jump ahead.
+ * When the seed is not known, the checkpoint holds the whole state of the generator instead,
+ * as written by {@link StateCodec#saveState(ByteBuffer)}, and the position is counted from that state.
+ * <p>
+ * The position counts the calls of the primitive method of each generator:
+ * <ul>
+ * <li>{@link ReversibleMersenneTwister#next()} and {@link TurboPascalRandom#next()}, the 32 bit values,</li>
+ * <li>{@link ReversibleJavaRandom#next(int)}, the steps of the linear congruential generator,</li>
+ * <li>{@link DotNetRandom#nextInt()}, the samples of the subtractive generator.</li>
+ * </ul>
+ * The cache used by {@code nextGaussian()} is part of the whole state, but not of the seeded checkpoints.
+ * <p>
+ * Checkpoints sharing the same seed are stored together in a {@link CheckpointFile}.
+ */
+public final class Checkpoint {
+
+    private static final byte KIND_STATE = 0;
+    private static final byte KIND_INT = 1;
+    private static final byte KIND_LONG = 2;
+    private static final byte KIND_ARRAY = 3;
+
+    /**
+     * The generators supported by checkpoints.
+     */
+    public enum Type {
+        /**
+         * {@link ReversibleMersenneTwister}, restored using {@link ReversibleMersenneTwister#skip(long)}.
+         */
+        MERSENNE_TWISTER(ReversibleMersenneTwister.class, ReversibleMersenneTwister::new) {
+            @Override
+            void skip(ReverseRandomGenerator generator, long n) {
+                ((ReversibleMersenneTwister) generator).skip(n);
+            }
+        },
+        /**
+         * {@link ReversibleJavaRandom}, restored using {@link ReversibleJavaRandom#skip(long)}.
+         */
+        JAVA_RANDOM(ReversibleJavaRandom.class, ReversibleJavaRandom::new) {
+            @Override
+            void skip(ReverseRandomGenerator generator, long n) {
+                ((ReversibleJavaRandom) generator).skip(n);
+            }
+        },
+        /**
+         * {@link TurboPascalRandom}, with the coprocessor disabled, restored using
+         * {@link TurboPascalRandom#skip(long)}.
+         */
+        TURBO_PASCAL(TurboPascalRandom.class, TurboPascalRandom::new) {
+            @Override
+            void skip(ReverseRandomGenerator generator, long n) {
+                ((TurboPascalRandom) generator).skip(n);
+            }
+        },
+        /**
+         * {@link DotNetRandom}, restored using {@link DotNetRandom#skip(long)}.
+         */
+        DOT_NET(DotNetRandom.class, DotNetRandom::new) {
+            @Override
+            void skip(ReverseRandomGenerator generator, long n) {
+                ((DotNetRandom) generator).skip(n);
+            }
+        };
+
+        private final Class<? extends ReverseRandomGenerator> generatorClass;
+        private final IntFunction<? extends ReverseRandomGenerator> factory;
+
+        Type(Class<? extends ReverseRandomGenerator> generatorClass,
+             IntFunction<? extends ReverseRandomGenerator> factory) {
+            this.generatorClass = generatorClass;
+            this.factory = factory;
+        }
+
+        /**
+         * Moves the generator {@code n} positions, backwards when {@code n} is negative.
+         */
+        abstract void skip(ReverseRandomGenerator generator, long n);
+
+        ReverseRandomGenerator newGenerator() {
+            return factory.apply(0);
+        }
+
+        static Type of(ReverseRandomGenerator generator) {
+            for (Type type : values()) {
+                if (type.generatorClass == generator.getClass()) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Checkpoints are not supported for " + generator.getClass().getName());
+        }
+    }
+
+    private final Base base;
+    private final long position;
+
+    private Checkpoint(Base base, long position) {
+        this.base = base;
+        this.position = position;
+    }
+
+    /**
+     * @param type     the type of the generator.
+     * @param seed     the seed given to {@code setSeed(int)}.
+     * @param position the number of values generated since the seeding.
+     * @return the checkpoint.
+     */
+    public static Checkpoint ofSeed(Type type, int seed, long position) {
+        return new Checkpoint(new Base(type, KIND_INT, new int[]{seed}, null), position);
+    }
+
+    /**
+     * @param type     the type of the generator.
+     * @param seed     the seed given to {@code setSeed(long)}.
+     * @param position the number of values generated since the seeding.
+     * @return the checkpoint.
+     */
+    public static Checkpoint ofSeed(Type type, long seed, long position) {
+        return new Checkpoint(new Base(type, KIND_LONG, new int[]{(int) (seed >>> 32), (int) seed}, null), position);
+    }
+
+    /**
+     * @param type     the type of the generator.
+     * @param seed     the seed given to {@code setSeed(int[])}.
+     * @param position the number of values generated since the seeding.
+     * @return the checkpoint.
+     * @throws IllegalArgumentException if the seed is empty.
+     */
+    public static Checkpoint ofSeed(Type type, int[] seed, long position) {
+        if (seed.length == 0) {
+            throw new IllegalArgumentException("The seed is empty");
+        }
+        return new Checkpoint(new Base(type, KIND_ARRAY, seed.clone(), null), position);
+    }
+
+    /**
+     * Creates a checkpoint holding the whole state of a generator, for when its seed is not known.
+     *
+     * @param generator the generator, one of the classes listed by {@link Type}.
+     * @return the checkpoint, at the position {@code 0}.
+     * @throws IllegalArgumentException if the generator is not supported.
+     */
+    public static Checkpoint ofState(ReverseRandomGenerator generator) {
+        final Type type = Type.of(generator);
+        final StateCodec codec = (StateCodec) generator;
+        final byte[] state = new byte[codec.stateSize()];
+        codec.saveState(ByteBuffer.wrap(state));
+        return new Checkpoint(new Base(type, KIND_STATE, null, state), 0);
+    }
+
+    /**
+     * @param position the new position.
+     * @return a checkpoint with the same seed, or state, at another position.
+     */
+    public Checkpoint at(long position) {
+        return new Checkpoint(base, position);
+    }
+
+    /**
+     * @return the type of the generator.
+     */
+    public Type type() {
+        return base.type;
+    }
+
+    /**
+     * @return the number of values generated since the seeding, or since the saved state.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * @return {@code true} if the checkpoint holds the seed, {@code false} if it holds the whole state.
+     */
+    public boolean hasSeed() {
+        return base.kind != KIND_STATE;
+    }
+
+    /**
+     * Creates a new generator at the position of the checkpoint.
+     *
+     * @return the generator, an instance of the class of {@link #type()}.
+     */
+    public ReverseRandomGenerator restore() {
+        final ReverseRandomGenerator generator = base.newGenerator();
+        base.type.skip(generator, position);
+        return generator;
+    }
+
+    /**
+     * @return the number of bytes written by {@link #encode(ByteBuffer)}.
+     */
+    public int encodedSize() {
+        return base.encodedSize() + Long.BYTES;
+    }
+
+    /**
+     * Writes the checkpoint at the position of the buffer, using its byte order.
+     *
+     * @param buffer the buffer which receives the checkpoint.
+     * @throws java.nio.BufferOverflowException if there are less than {@link #encodedSize()} bytes remaining.
+     */
+    public void encode(ByteBuffer buffer) {
+        DefaultRandomPrimitivesFactory.checkSaveState(buffer, encodedSize());
+        base.encode(buffer);
+        buffer.putLong(position);
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #encode(ByteBuffer)}, using the byte order of the buffer.
+     *
+     * @param buffer the buffer which holds the checkpoint.
+     * @return the checkpoint.
+     * @throws BufferUnderflowException if the buffer ends before the checkpoint.
+     * @throws IllegalArgumentException if the checkpoint is not valid.
+     */
+    public static Checkpoint decode(ByteBuffer buffer) {
+        final Base base = Base.decode(buffer);
+        return new Checkpoint(base, buffer.getLong());
+    }
+
+    Base base() {
+        return base;
+    }
+
+    static Checkpoint of(Base base, long position) {
+        return new Checkpoint(base, position);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Checkpoint)) {
+            return false;
+        }
+        final Checkpoint that = (Checkpoint) o;
+        return position == that.position && base.equals(that.base);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * base.hashCode() + Long.hashCode(position);
+    }
+
+    /**
+     * The seed, or the whole state, shared by the checkpoints of a generator.
+     */
+    static final class Base {
+        final Type type;
+        final byte kind;
+        private final int[] seed;
+        private final byte[] state;
+
+        private Base(Type type, byte kind, int[] seed, byte[] state) {
+            this.type = Objects.requireNonNull(type);
+            this.kind = kind;
+            this.seed = seed;
+            this.state = state;
+        }
+
+        ReverseRandomGenerator newGenerator() {
+            final ReverseRandomGenerator generator = type.newGenerator();
+            switch (kind) {
+                case KIND_INT:
+                    generator.setSeed(seed[0]);
+                    break;
+                case KIND_LONG:
+                    generator.setSeed((long) seed[0] << 32 | Integer.toUnsignedLong(seed[1]));
+                    break;
+                case KIND_ARRAY:
+                    generator.setSeed(seed.clone());
+                    break;
+                default:
+                    ((StateCodec) generator).restoreState(ByteBuffer.wrap(state));
+                    break;
+            }
+            return generator;
+        }
+
+        int encodedSize() {
+            switch (kind) {
+                case KIND_INT:
+                    return 2 + Integer.BYTES;
+                case KIND_LONG:
+                    return 2 + Long.BYTES;
+                case KIND_ARRAY:
+                    return 2 + Integer.BYTES + seed.length * Integer.BYTES;
+                default:
+                    return 2 + Integer.BYTES + state.length;
+            }
+        }
+
+        void encode(ByteBuffer buffer) {
+            buffer.put((byte) type.ordinal());
+            buffer.put(kind);
+            switch (kind) {
+                case KIND_INT:
+                    buffer.putInt(seed[0]);
+                    break;
+                case KIND_LONG:
+                    buffer.putInt(seed[0]);
+                    buffer.putInt(seed[1]);
+                    break;
+                case KIND_ARRAY:
+                    buffer.putInt(seed.length);
+                    for (int word : seed) {
+                        buffer.putInt(word);
+                    }
+                    break;
+                default:
+                    buffer.putInt(state.length);
+                    buffer.put(state);
+                    break;
+            }
+        }
+
+        static Base decode(ByteBuffer buffer) {
+            final int typeIndex = buffer.get();
+            final byte kind = buffer.get();
+            if (typeIndex < 0 || typeIndex >= Type.values().length) {
+                throw new IllegalArgumentException("Invalid generator type " + typeIndex);
+            }
+            final Type type = Type.values()[typeIndex];
+            switch (kind) {
+                case KIND_INT:
+                    return new Base(type, kind, new int[]{buffer.getInt()}, null);
+                case KIND_LONG:
+                    return new Base(type, kind, new int[]{buffer.getInt(), buffer.getInt()}, null);
+                case KIND_ARRAY: {
+                    final int length = buffer.getInt();
+                    if (length <= 0) {
+                        throw new IllegalArgumentException("Invalid seed length " + length);
+                    }
+                    if (length > buffer.remaining() / Integer.BYTES) {
+                        throw new BufferUnderflowException();
+                    }
+                    final int[] seed = new int[length];
+                    buffer.asIntBuffer().get(seed);
+                    ((Buffer) buffer).position(buffer.position() + length * Integer.BYTES);
+                    return new Base(type, kind, seed, null);
+                }
+                case KIND_STATE: {
+                    final int length = buffer.getInt();
+                    final int stateSize = ((StateCodec) type.newGenerator()).stateSize();
+                    if (length != stateSize) {
+                        throw new IllegalArgumentException("Invalid state length " + length + " for " + type);
+                    }
+                    final byte[] state = new byte[length];
+                    buffer.get(state);
+                    return new Base(type, kind, null, state);
+                }
+                default:
+                    throw new IllegalArgumentException("Invalid checkpoint kind " + kind);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Base)) {
+                return false;
+            }
+            final Base that = (Base) o;
+            return type == that.type && kind == that.kind
+                    && Arrays.equals(seed, that.seed) && Arrays.equals(state, that.state);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * type.hashCode() + kind;
+            result = 31 * result + Arrays.hashCode(seed);
+            return 31 * result + Arrays.hashCode(state);
+        }
+    }
+}
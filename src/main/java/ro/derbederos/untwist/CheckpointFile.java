@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A memory mapped file holding an indexed list of {@link Checkpoint}s, read in constant time by index.
+ * <p>
+ * The checkpoints of a seed, or whole state, share it, and each checkpoint takes 16 bytes: the offset of
+ * its seed and its position. A seed is stored only once while it is among the last seeds used by the
+ * {@link Writer}, a seed used again later is stored again. The file is laid out as:
+ * <ul>
+ * <li>a header: the magic number, the version and the number of checkpoints,</li>
+ * <li>the checkpoints: pairs of {@code long}s, the offset of the seed from the end of the checkpoints,
+ * and the position,</li>
+ * <li>the seeds, each preceded by its length, encoded as in {@link Checkpoint#encode(ByteBuffer)}.</li>
+ * </ul>
+ * All the values are big endian.
+ * <p>
+ * Files are written with a {@link Writer}, and read from many threads at a time.
+ */
+public final class CheckpointFile implements Closeable {
+
+    private static final int MAGIC = 0x554E5457; // "UNTW"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int CHECKPOINT_LONGS = 2;
+    private static final int CHECKPOINT_SIZE = CHECKPOINT_LONGS * Long.BYTES;
+
+    /**
+     * Number of checkpoints of a mapped region, a mapping can not exceed 2 GB.
+     */
+    private static final int REGION_SHIFT = 26;
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    /**
+     * Number of decoded seeds kept by a reader, and of seed offsets kept by a writer.
+     */
+    private static final int CACHE_SIZE = 256;
+
+    private final FileChannel channel;
+    private final LongBuffer[] regions;
+    private final long size;
+    private final long seedsOffset;
+    private final Map<Long, Checkpoint.Base> seeds = newCache();
+
+    private CheckpointFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Not a checkpoint file");
+        }
+        this.size = header.getLong(2 * Integer.BYTES);
+        if (size < 0 || size > (channel.size() - HEADER_SIZE) / CHECKPOINT_SIZE) {
+            throw new IOException("Truncated checkpoint file");
+        }
+        this.seedsOffset = HEADER_SIZE + size * CHECKPOINT_SIZE;
+        this.regions = new LongBuffer[(int) ((size + REGION_MASK) >>> REGION_SHIFT)];
+        for (int i = 0; i < regions.length; i++) {
+            final long first = (long) i << REGION_SHIFT;
+            final long count = Math.min(size - first, 1L << REGION_SHIFT);
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + first * CHECKPOINT_SIZE, count * CHECKPOINT_SIZE).asLongBuffer();
+        }
+    }
+
+    /**
+     * Opens a file written by a {@link Writer}.
+     *
+     * @param path the file.
+     * @return the opened file.
+     * @throws IOException if the file can not be read, or it is not a checkpoint file.
+     */
+    public static CheckpointFile open(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new CheckpointFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates, or replaces, a checkpoint file.
+     *
+     * @param path the file.
+     * @return the writer, which has to be closed to complete the file.
+     * @throws IOException if the file can not be created.
+     */
+    public static Writer create(Path path) throws IOException {
+        return new Writer(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), path);
+    }
+
+    /**
+     * @return the number of checkpoints.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of the checkpoint, in the order they were added.
+     * @return the checkpoint.
+     * @throws IndexOutOfBoundsException if the index is not lower than {@link #size()}.
+     * @throws IOException               if the seed of the checkpoint can not be read.
+     */
+    public Checkpoint get(long index) throws IOException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        final LongBuffer region = regions[(int) (index >>> REGION_SHIFT)];
+        final int offset = (int) (index & REGION_MASK) * CHECKPOINT_LONGS;
+        return Checkpoint.of(seed(region.get(offset)), region.get(offset + 1));
+    }
+
+    /**
+     * Same as {@code get(index).restore()}.
+     *
+     * @param index the index of the checkpoint.
+     * @return a new generator, at the position of the checkpoint.
+     * @throws IOException if the seed of the checkpoint can not be read.
+     * @see Checkpoint#restore()
+     */
+    public ReverseRandomGenerator restore(long index) throws IOException {
+        return get(index).restore();
+    }
+
+    /**
+     * Closes the file. The mapped checkpoints are released when the instance is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Checkpoint.Base seed(long offset) throws IOException {
+        Checkpoint.Base base;
+        synchronized (seeds) {
+            base = seeds.get(offset);
+        }
+        if (base == null) {
+            final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(length, seedsOffset + offset);
+            if (length.getInt(0) < 0) {
+                throw new IOException("Invalid seed at offset " + offset);
+            }
+            final ByteBuffer encoded = ByteBuffer.allocate(length.getInt(0));
+            readFully(encoded, seedsOffset + offset + Integer.BYTES);
+            ((Buffer) encoded).flip();
+            try {
+                base = Checkpoint.Base.decode(encoded);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid seed at offset " + offset, e);
+            }
+            synchronized (seeds) {
+                seeds.put(offset, base);
+            }
+        }
+        return base;
+    }
+
+    private static <K, V> Map<K, V> newCache() {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated checkpoint file");
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoints of a {@link CheckpointFile}.
+     * <p>
+     * The checkpoints are written as they are added, and the seeds as they are first seen, in a temporary file
+     * next to the file, which is appended to it when the writer is closed. Only the offsets of the last seeds
+     * are kept in memory. A writer is not thread safe.
+     */
+    public static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer checkpoints = ByteBuffer.allocate(4096 * CHECKPOINT_SIZE);
+        private final Map<Checkpoint.Base, Long> seedOffsets = newCache();
+        private final FileChannel seeds;
+        private long size;
+
+        private Writer(FileChannel channel, Path path) throws IOException {
+            this.channel = channel;
+            final Path seedsPath;
+            try {
+                channel.position(HEADER_SIZE);
+                final Path directory = path.toAbsolutePath().getParent();
+                seedsPath = Files.createTempFile(directory, path.getFileName().toString(), ".seeds");
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            try {
+                this.seeds = FileChannel.open(seedsPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                Files.deleteIfExists(seedsPath);
+                throw e;
+            }
+        }
+
+        /**
+         * Appends a checkpoint.
+         *
+         * @param checkpoint the checkpoint.
+         * @return the index of the checkpoint in the file.
+         * @throws IOException if the checkpoint can not be written.
+         */
+        public long add(Checkpoint checkpoint) throws IOException {
+            final Checkpoint.Base base = checkpoint.base();
+            Long offset = seedOffsets.get(base);
+            if (offset == null) {
+                offset = seeds.position();
+                final ByteBuffer encoded = ByteBuffer.allocate(Integer.BYTES + base.encodedSize());
+                encoded.putInt(base.encodedSize());
+                base.encode(encoded);
+                write(seeds, encoded);
+                seedOffsets.put(base, offset);
+            }
+            if (!checkpoints.hasRemaining()) {
+                write(channel, checkpoints);
+            }
+            checkpoints.putLong(offset);
+            checkpoints.putLong(checkpoint.position());
+            return size++;
+        }
+
+        /**
+         * Writes the seeds and the header, and closes the file.
+         *
+         * @throws IOException if the file can not be written.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try (FileChannel seeds = this.seeds) {
+                write(channel, checkpoints);
+                final long seedsSize = seeds.position();
+                for (long copied = 0; copied < seedsSize; ) {
+                    copied += seeds.transferTo(copied, seedsSize - copied, channel);
+                }
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(size);
+                channel.position(0);
+                write(channel, header);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+            ((Buffer) buffer).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            ((Buffer) buffer).clear();
+        }
+    }
+}
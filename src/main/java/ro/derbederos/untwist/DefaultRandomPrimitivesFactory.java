@@ -16,8 +16,75 @@
 
 package ro.derbederos.untwist;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
 class DefaultRandomPrimitivesFactory {
 
+    /**
+     * Checks if the sub-range {@code [off, off + len)} is within the bounds of {@code [0, length)}.
+     *
+     * @param off    the index of the first element of the sub-range.
+     * @param len    the number of elements of the sub-range.
+     * @param length the length of the array.
+     * @throws IndexOutOfBoundsException if the sub-range is out of bounds.
+     */
+    static void checkFromIndexSize(int off, int len, int length) {
+        if ((length | off | len) < 0 || len > length - off) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len +
+                    ") out of bounds for length " + length);
+        }
+    }
+
+    /**
+     * Checks if a state of {@code size} bytes can be written in the buffer.
+     *
+     * @param buffer the buffer.
+     * @param size   the size of the state.
+     * @throws BufferOverflowException if there are not enough bytes remaining.
+     */
+    static void checkSaveState(ByteBuffer buffer, int size) {
+        if (buffer.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    /**
+     * Checks if a state of {@code size} bytes can be read from the buffer.
+     *
+     * @param buffer the buffer.
+     * @param size   the size of the state.
+     * @throws BufferUnderflowException if there are not enough bytes remaining.
+     */
+    static void checkRestoreState(ByteBuffer buffer, int size) {
+        if (buffer.remaining() < size) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    /**
+     * Checks if the byte at {@code index} is a flag written by {@link #putFlag(ByteBuffer, boolean)}.
+     *
+     * @param buffer the buffer.
+     * @param index  the absolute index of the flag.
+     * @throws IllegalArgumentException if the byte is not {@code 0} or {@code 1}.
+     */
+    static void checkFlag(ByteBuffer buffer, int index) {
+        final byte value = buffer.get(index);
+        if (value != 0 && value != 1) {
+            throw new IllegalArgumentException("Invalid flag in the state: " + value);
+        }
+    }
+
+    static void putFlag(ByteBuffer buffer, boolean flag) {
+        buffer.put(flag ? (byte) 1 : (byte) 0);
+    }
+
+    static boolean getFlag(ByteBuffer buffer) {
+        return buffer.get() != 0;
+    }
+
     static boolean toBoolean(int n) {
         return n != 0;
     }
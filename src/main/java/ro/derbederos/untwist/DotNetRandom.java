@@ -18,9 +18,13 @@ package ro.derbederos.untwist;
 
 import org.apache.commons.math3.random.RandomGenerator;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkRestoreState;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkSaveState;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.getFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.putFlag;
 
 /**
  * A Java implementation of the .NET random number generator.
@@ -64,14 +68,17 @@ import java.io.IOException;
  * https://github.com/dotnet/corefx/issues/12746</a></li>
  * </ul>
  */
-public class DotNetRandom implements ReverseRandomGenerator {
+public class DotNetRandom implements ReverseRandomGenerator, StateCodec {
     private static final long serialVersionUID = 1L;
 
     private static final int STATE_SIZE = 58 * Integer.BYTES; //seedArray, iNext, INextp
+    private static final int GAUSSIAN_STATE_SIZE = 1 + Double.BYTES;
 
-    private static final int MBIG = Integer.MAX_VALUE;
-    private static final int MSEED = 161803398;
+    static final int MBIG = Integer.MAX_VALUE;
+    static final int MSEED = 161803398;
     private static final int MZ = 0;
+    // skips shorter than this are stepped over
+    private static final int DIRECT_SKIP_VALUES = 1 << 16;
 
     // the state of the generator
     private final int[] seedArray = new int[56];
@@ -110,6 +117,35 @@ public class DotNetRandom implements ReverseRandomGenerator {
     }
 
     private void initialize(int seed) {
+        initializeSeedArray(seed, seedArray);
+        // .net initializes this with 0, but (++0) % 56 = (++55) % 56 (according to internalSample)
+        // value 55 helps us for the prevInternalSample
+        iNext = 55;
+        iNextp = 21;
+        nextGaussian = Double.NaN;
+        shouldReverseGaussian = false;
+    }
+
+    /**
+     * Sets the {@code SeedArray}, as if the generator was just initialized with it.
+     *
+     * @param values the 55 values of the {@code SeedArray}, starting from the index {@code 1}.
+     */
+    void setSeedArray(int[] values) {
+        System.arraycopy(values, 0, seedArray, 1, 55);
+        iNext = 55;
+        iNextp = 21;
+        nextGaussian = Double.NaN;
+        shouldReverseGaussian = false;
+    }
+
+    /**
+     * Fills the {@code SeedArray} of a seed, the generator starting with {@code inext = 55} and {@code inextp = 21}.
+     *
+     * @param seed      the seed.
+     * @param seedArray the array of 56 values, the first one is not used.
+     */
+    static void initializeSeedArray(int seed, int[] seedArray) {
         int ii = 0;
         int mj, mk;
 
@@ -141,12 +177,6 @@ public class DotNetRandom implements ReverseRandomGenerator {
                 }
             }
         }
-        // .net initializes this with 0, but (++0) % 56 = (++55) % 56 (according to internalSample)
-        // value 55 helps us for the prevInternalSample
-        iNext = 55;
-        iNextp = 21;
-        nextGaussian = Double.NaN;
-        shouldReverseGaussian = false;
     }
 
     //
@@ -208,6 +238,39 @@ public class DotNetRandom implements ReverseRandomGenerator {
         return retVal;
     }
 
+    /**
+     * Same as calling {@link #internalSample()} {@code len} times, but keeps the indices in local variables.
+     */
+    private void internalSamples(int[] dst, int off, int len) {
+        final int[] seedArray = this.seedArray;
+        int locINext = iNext;
+        int locINextp = iNextp;
+
+        for (int i = off, end = off + len; i < end; i++) {
+            if (++locINext >= 56) {
+                locINext = 1;
+            }
+            if (++locINextp >= 56) {
+                locINextp = 1;
+            }
+
+            int retVal = seedArray[locINext] - seedArray[locINextp];
+
+            if (retVal == MBIG) {
+                retVal--;
+            }
+            if (retVal < MZ) {
+                retVal += MBIG;
+            }
+
+            seedArray[locINext] = retVal;
+            dst[i] = retVal;
+        }
+
+        iNext = locINext;
+        iNextp = locINextp;
+    }
+
     private int prevInternalSample() {
         int retVal;
         int locINext = iNext;
@@ -216,10 +279,8 @@ public class DotNetRandom implements ReverseRandomGenerator {
         retVal = seedArray[locINext];
 
         int prevRetVal = seedArray[locINextp] + retVal;
-        if (prevRetVal == MBIG) {
-            prevRetVal--;
-        }
-        if (prevRetVal < MZ) {
+        // the sum modulo MBIG, MBIG being reduced to 0, which gives the same value forward
+        if (prevRetVal == MBIG || prevRetVal < MZ) {
             prevRetVal -= MBIG;
         }
         seedArray[locINext] = prevRetVal;
@@ -236,19 +297,160 @@ public class DotNetRandom implements ReverseRandomGenerator {
         return retVal;
     }
 
-    byte[] getState() {
-        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream(STATE_SIZE);
-        DataOutputStream output = new DataOutputStream(byteOutput);
-        try {
-            output.writeInt(iNext);
-            output.writeInt(iNextp);
-            for (int value : seedArray) {
-                output.writeInt(value);
+    /**
+     * Same as calling {@link #prevInternalSample()} {@code len} times, but keeps the indices in local variables.
+     */
+    private void prevInternalSamples(int[] dst, int off, int len) {
+        final int[] seedArray = this.seedArray;
+        int locINext = iNext;
+        int locINextp = iNextp;
+
+        for (int i = off, end = off + len; i < end; i++) {
+            final int retVal = seedArray[locINext];
+
+            int prevRetVal = seedArray[locINextp] + retVal;
+            if (prevRetVal == MBIG || prevRetVal < MZ) {
+                prevRetVal -= MBIG;
+            }
+            seedArray[locINext] = prevRetVal;
+
+            if (--locINext < 1) {
+                locINext = 55;
             }
-            output.close();
-        } catch (IOException ignore) {
+            if (--locINextp == 0) {
+                locINextp = 55;
+            }
+            dst[i] = retVal;
         }
-        return byteOutput.toByteArray();
+
+        iNext = locINext;
+        iNextp = locINextp;
+    }
+
+    /**
+     * Skips {@code n} values, the same as calling {@link #nextInt()} {@code n} times,
+     * or {@link #prevInt()} {@code -n} times when {@code n} is negative.
+     * <p>
+     * It is computed in a logarithmic time, the values being a linear recurrence modulo {@code MBIG}.
+     * The values which are not reduced modulo {@code MBIG}, given by a few seeds, are stepped over one by one.
+     * The cache used by {@link #nextGaussian()} is cleared, unless {@code n} is {@code 0}.
+     *
+     * @param n the number of values to skip, it can be negative.
+     */
+    public void skip(long n) {
+        if (n == 0) {
+            return;
+        }
+        nextGaussian = Double.NaN;
+        shouldReverseGaussian = false;
+        for (; n != 0 && !isReduced(); n -= Long.signum(n)) {
+            if (n > 0) {
+                internalSample();
+            } else {
+                prevInternalSample();
+            }
+        }
+        if (n > -DIRECT_SKIP_VALUES && n < DIRECT_SKIP_VALUES) {
+            for (; n > 0; n--) {
+                internalSample();
+            }
+            for (; n < 0; n++) {
+                prevInternalSample();
+            }
+        } else {
+            // seedArray[iNext + 1] is the oldest value, the next one being replaced
+            final int[] window = new int[DotNetRandomJump.LAG];
+            for (int i = 0; i < window.length; i++) {
+                window[i] = seedArray[(iNext + i) % 55 + 1];
+            }
+            final int[] jumped = DotNetRandomJump.jump(window, n);
+            iNext = (int) Math.floorMod(iNext - 1 + n, 55L) + 1;
+            iNextp = (iNext + 20) % 55 + 1;
+            for (int i = 0; i < jumped.length; i++) {
+                seedArray[(iNext + i) % 55 + 1] = jumped[i];
+            }
+        }
+    }
+
+    /**
+     * @return if the values are linear modulo {@code MBIG}: all of them reduced, and {@code inextp} 21 values
+     * after {@code inext}.
+     */
+    private boolean isReduced() {
+        if (iNextp != (iNext + 20) % 55 + 1) {
+            return false;
+        }
+        for (int i = 1; i < seedArray.length; i++) {
+            if (seedArray[i] < 0 || seedArray[i] >= MBIG) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The state is {@code inext}, {@code inextp}, the {@code SeedArray} and the cache of {@link #nextGaussian()}.
+     */
+    @Override
+    public int stateSize() {
+        return STATE_SIZE + GAUSSIAN_STATE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        checkSaveState(buffer, stateSize());
+        saveSeedArrayState(buffer);
+        putFlag(buffer, shouldReverseGaussian);
+        buffer.putDouble(nextGaussian);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(ByteBuffer buffer) {
+        checkRestoreState(buffer, stateSize());
+        final int position = buffer.position();
+        final int newINext = buffer.getInt(position);
+        final int newINextp = buffer.getInt(position + Integer.BYTES);
+        checkIndex(newINext);
+        if (newINextp != (newINext + 20) % 55 + 1) {
+            // inextp is always 21 values after inext, the state could not be skipped otherwise
+            throw new IllegalArgumentException("Invalid indices in the state: " + newINext + ", " + newINextp);
+        }
+        checkFlag(buffer, position + STATE_SIZE);
+        iNext = buffer.getInt();
+        iNextp = buffer.getInt();
+        for (int i = 0; i < seedArray.length; i++) {
+            seedArray[i] = buffer.getInt();
+        }
+        shouldReverseGaussian = getFlag(buffer);
+        nextGaussian = buffer.getDouble();
+    }
+
+    private static void checkIndex(int index) {
+        if (index < 1 || index > 55) {
+            throw new IllegalArgumentException("Invalid index in the state: " + index);
+        }
+    }
+
+    private void saveSeedArrayState(ByteBuffer buffer) {
+        buffer.putInt(iNext);
+        buffer.putInt(iNextp);
+        for (int value : seedArray) {
+            buffer.putInt(value);
+        }
+    }
+
+    byte[] getState() {
+        final ByteBuffer buffer = ByteBuffer.allocate(STATE_SIZE);
+        saveSeedArrayState(buffer);
+        return buffer.array();
     }
 
     private double getSampleForLargeRange() {
@@ -573,6 +775,68 @@ public class DotNetRandom implements ReverseRandomGenerator {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Like {@link #nextInt()}, it uses the internal samples directly, not {@link #sample()}.
+     */
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        internalSamples(dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * <b>This method is not part of .Net implementation.</b>
+     */
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final int[] samples = new int[3 * Math.min(len, 256)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, 256);
+            internalSamples(samples, 0, 3 * n);
+            for (int i = 0; i < 3 * n; i += 3) {
+                long b1 = samples[i] & 0xFFFFL; // 16 bits
+                long b2 = samples[i + 1] & 0xFFFFFFL; // 24 bits
+                long b3 = samples[i + 2] & 0xFFFFFFL; // 24 bits
+                dst[off++] = b1 << 48 | b2 << 24 | b3;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Like {@link #prevInt()}, it uses the internal samples directly, not {@link #prevSample()}.
+     */
+    @Override
+    public void prevInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        prevInternalSamples(dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final int[] samples = new int[3 * Math.min(len, 256)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, 256);
+            prevInternalSamples(samples, 0, 3 * n);
+            for (int i = 0; i < 3 * n; i += 3) {
+                long b3 = samples[i] & 0xFFFFFFL; // 24 bits
+                long b2 = samples[i + 1] & 0xFFFFFFL; // 24 bits
+                long b1 = samples[i + 2] & 0xFFFFL; // 16 bits
+                dst[off++] = b1 << 48 | b2 << 24 | b3;
+            }
+        }
+    }
+
     /**
      * Returns a 64 bit random integer (long). Unlike {@link #nextInt()} all 2<sup>64</sup> possible
      * {@code long} values should be produced with (approximately) equal probability.
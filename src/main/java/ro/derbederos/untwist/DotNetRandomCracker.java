@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static ro.derbederos.untwist.DotNetRandom.MBIG;
+
+/**
+ * Recovers the seed of {@link DotNetRandom}, and the position of the observed values from it, out of
+ * consecutive values of {@code Next()}, {@code Next(maxValue)}, {@code Next(minValue, maxValue)} or
+ * {@code NextDouble()}.
+ * <p>
+ * A value of {@code Next()} or {@code NextDouble()} is a whole value of {@code InternalSample}, and 55 of them
+ * give the whole {@code SeedArray} with no search: the values before them follow from the recurrence
+ * {@code x[n] = x[n - 55] - x[n - 34] (mod MBIG)} run backwards, until a {@code SeedArray} initialized by a
+ * seed is met. The values of {@code Next(maxValue)} and {@code Next(minValue, maxValue)} give only a part of a
+ * value of {@code InternalSample}, so their seeds are searched with {@link DotNetRandomSeedSweep}.
+ * <p>
+ * The positions count the calls of {@code InternalSample}: one for each value, and two for the values of
+ * {@code Next(minValue, maxValue)} with a range greater than {@code Int32.MaxValue}.
+ * The seeds are found from {@code 0} to {@code Int32.MaxValue}, .NET using the absolute value of the seed.
+ */
+public final class DotNetRandomCracker {
+
+    /**
+     * The default number of values searched back for the seed by {@link #fromInts(int...)}.
+     */
+    public static final long DEFAULT_MAX_POSITION = 1 << 24;
+
+    private static final double INFORMATION_PER_SAMPLE = Math.log(MBIG) / Math.log(2);
+
+    private DotNetRandomCracker() {
+    }
+
+    /**
+     * Recovers the state out of at least 55 consecutive {@link DotNetRandom#nextInt()} values, and searches the
+     * seed up to {@link #DEFAULT_MAX_POSITION} values before them.
+     *
+     * @param values the values.
+     * @return the state before the first value, or {@code null} if no state gives the values.
+     * @throws IllegalArgumentException if there are less than 55 values, or a value can not be generated by
+     *                                  {@code Next()}.
+     * @see #fromInts(int[], long)
+     */
+    public static Match fromInts(int... values) {
+        return fromInts(values, DEFAULT_MAX_POSITION);
+    }
+
+    /**
+     * Recovers the state out of at least 55 consecutive {@link DotNetRandom#nextInt()} values, and searches the
+     * seed which gives them at most {@code maxPosition} values after seeding, taking about 100 nanoseconds for
+     * each position. The state is returned even if the seed is not found.
+     *
+     * @param values      the values.
+     * @param maxPosition the greatest position of the first value.
+     * @return the state before the first value, or {@code null} if no state gives the values.
+     * @throws IllegalArgumentException if there are less than 55 values, a value can not be generated by
+     *                                  {@code Next()}, or the position is negative.
+     */
+    public static Match fromInts(int[] values, long maxPosition) {
+        if (values.length < 55) {
+            throw new IllegalArgumentException("At least 55 values are needed, got " + values.length);
+        }
+        if (maxPosition < 0) {
+            throw new IllegalArgumentException("maxPosition must be positive");
+        }
+        for (int value : values) {
+            if (value < 0 || value >= MBIG) {
+                throw new IllegalArgumentException("Not a value of Next(): " + value);
+            }
+        }
+        // the values after the first 55 are given by them
+        for (int i = 55; i < values.length; i++) {
+            if (values[i] != Math.floorMod(values[i - 55] - values[i - 34], MBIG)) {
+                return null;
+            }
+        }
+        // the value x[k] is kept at window[k mod 55], starting with x[0], the first value
+        final int[] window = Arrays.copyOf(values, 55);
+        for (int k = 54; k >= 0; k--) {
+            stepBack(window, k);
+        }
+        // the SeedArray before x[0] is x[-55], ..., x[-1], starting at window[0]
+        final int[] seedArray = window.clone();
+        for (long position = 0; ; position++) {
+            final int start = (int) ((55 - position % 55) % 55);
+            final long seed = DotNetRandomSeedSweep.seedOf(window, start);
+            if (seed >= 0) {
+                return new Match((int) seed, position, seedArray);
+            }
+            if (position == maxPosition) {
+                return new Match(-1, -1, seedArray);
+            }
+            stepBack(window, (start + 54) % 55);
+        }
+    }
+
+    /**
+     * Recovers the state out of at least 55 consecutive {@link DotNetRandom#nextDouble()} values, and searches
+     * the seed up to {@link #DEFAULT_MAX_POSITION} values before them.
+     *
+     * @param values the values.
+     * @return the state before the first value, or {@code null} if no state gives the values.
+     * @throws IllegalArgumentException if there are less than 55 values, or a value can not be generated by
+     *                                  {@code NextDouble()}.
+     */
+    public static Match fromDoubles(double... values) {
+        return fromInts(toSamples(values), DEFAULT_MAX_POSITION);
+    }
+
+    /**
+     * Creates the search of the seeds giving consecutive {@link DotNetRandom#nextInt(int)} values right after
+     * seeding.
+     *
+     * @param maxValue the exclusive upper bound of the values.
+     * @param values   the values.
+     * @return the search.
+     * @throws IllegalArgumentException if the bound is negative, a value is out of bound, or the values have
+     *                                  less than 31 bits of information.
+     * @see #searchInts(int, int[], int)
+     */
+    public static Search searchInts(int maxValue, int... values) {
+        return searchInts(maxValue, values, 0);
+    }
+
+    /**
+     * Creates the search of the seeds giving consecutive {@link DotNetRandom#nextInt(int)} values, the first one
+     * at most {@code maxPosition} values after seeding. The time of the search grows with the position, and the
+     * values need more information: 31 bits, and one more bit each time the number of positions doubles.
+     *
+     * @param maxValue    the exclusive upper bound of the values.
+     * @param values      the values.
+     * @param maxPosition the greatest position of the first value.
+     * @return the search.
+     * @throws IllegalArgumentException if the bound or the position is negative, a value is out of bound, or the
+     *                                  values do not have enough information.
+     */
+    public static Search searchInts(int maxValue, int[] values, int maxPosition) {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("maxValue must be positive");
+        }
+        return searchRange(0, maxValue, values, maxPosition);
+    }
+
+    /**
+     * Creates the search of the seeds giving consecutive {@link DotNetRandom#nextInt(int, int)} values right
+     * after seeding.
+     *
+     * @param minValue the inclusive lower bound of the values.
+     * @param maxValue the exclusive upper bound of the values.
+     * @param values   the values.
+     * @return the search.
+     * @throws IllegalArgumentException if the bounds are not ordered, a value is out of the range, or the values
+     *                                  have less than 31 bits of information.
+     * @see #searchRange(int, int, int[], int)
+     */
+    public static Search searchRange(int minValue, int maxValue, int... values) {
+        return searchRange(minValue, maxValue, values, 0);
+    }
+
+    /**
+     * Creates the search of the seeds giving consecutive {@link DotNetRandom#nextInt(int, int)} values, the
+     * first one at most {@code maxPosition} values after seeding. A range greater than {@code Int32.MaxValue}
+     * takes two values of {@code InternalSample} for each value.
+     *
+     * @param minValue    the inclusive lower bound of the values.
+     * @param maxValue    the exclusive upper bound of the values.
+     * @param values      the values.
+     * @param maxPosition the greatest position of the first value.
+     * @return the search.
+     * @throws IllegalArgumentException if the bounds are not ordered, the position is negative, a value is out
+     *                                  of the range, or the values do not have enough information.
+     * @see #searchInts(int, int[], int)
+     */
+    public static Search searchRange(int minValue, int maxValue, int[] values, int maxPosition) {
+        if (minValue > maxValue) {
+            throw new IllegalArgumentException("minValue must be less than maxValue");
+        }
+        final long range = (long) maxValue - minValue;
+        for (int value : values) {
+            if (value < minValue || value > Math.max(minValue, maxValue - 1)) {
+                throw new IllegalArgumentException("Value " + value + " is out of range [" + minValue + ", "
+                        + maxValue + ")");
+            }
+        }
+        final double information = range == 0 ? 0 : values.length * Math.log(range) / Math.log(2);
+        return new Search(new Pattern(minValue, range, values.clone()), information, maxPosition);
+    }
+
+    /**
+     * Creates the search of the seeds giving less than 55 consecutive {@link DotNetRandom#nextDouble()} values,
+     * the first one at most {@code maxPosition} values after seeding. A single value is usually enough.
+     *
+     * @param values      the values.
+     * @param maxPosition the greatest position of the first value.
+     * @return the search.
+     * @throws IllegalArgumentException if a value can not be generated by {@code NextDouble()}, the position is
+     *                                  negative, or the values do not have enough information.
+     * @see #fromDoubles(double...)
+     */
+    public static Search searchDoubles(double[] values, int maxPosition) {
+        final int[] samples = toSamples(values);
+        return new Search(new Pattern(0, -1, samples), samples.length * INFORMATION_PER_SAMPLE, maxPosition);
+    }
+
+    private static int[] toSamples(double[] values) {
+        final int[] samples = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            samples[i] = toSample(values[i]);
+        }
+        return samples;
+    }
+
+    private static int toSample(double value) {
+        if (value >= 0 && value < 1) {
+            final long sample = Math.round(value * MBIG);
+            for (long candidate = sample - 1; candidate <= sample + 1; candidate++) {
+                if (candidate >= 0 && candidate < MBIG && candidate * (1.0 / MBIG) == value) {
+                    return (int) candidate;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Not a value of NextDouble(): " + value);
+    }
+
+    /**
+     * Computes {@code x[k]} as {@code x[k + 55] + x[k + 21]}, in place of {@code x[k + 55]}.
+     */
+    private static void stepBack(int[] window, int index) {
+        window[index] = (int) ((window[index] + (long) window[(index + 21) % 55]) % MBIG);
+    }
+
+    /**
+     * The state before the first value of {@code InternalSample} of a pattern.
+     */
+    private static int[] seedArrayAt(int seed, int position) {
+        final int[] seedArray = new int[56];
+        DotNetRandom.initializeSeedArray(seed, seedArray);
+        final int[] sequence = Arrays.copyOf(Arrays.copyOfRange(seedArray, 1, 56), 55 + position);
+        for (int i = 55; i < sequence.length; i++) {
+            int value = sequence[i - 55] - sequence[i - 34];
+            if (value == MBIG) {
+                value--;
+            }
+            if (value < 0) {
+                value += MBIG;
+            }
+            sequence[i] = value;
+        }
+        return Arrays.copyOfRange(sequence, position, position + 55);
+    }
+
+    /**
+     * The values searched, given by consecutive values of {@code InternalSample}.
+     */
+    private static final class Pattern {
+        private final int minValue;
+        // the range of Next(minValue, maxValue), or -1 for the values of InternalSample
+        private final long range;
+        private final int[] values;
+
+        private Pattern(int minValue, long range, int[] values) {
+            this.minValue = minValue;
+            this.range = range;
+            this.values = values;
+        }
+
+        private int samplesPerValue() {
+            return range > Integer.MAX_VALUE ? 2 : 1;
+        }
+
+        private int samples() {
+            return values.length * samplesPerValue();
+        }
+
+        private boolean matches(int[] samples, int offset) {
+            final int samplesPerValue = samplesPerValue();
+            for (int i = 0, j = offset; i < values.length; i++, j += samplesPerValue) {
+                if (values[i] != value(samples, j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * The value computed as {@link DotNetRandom} does.
+         */
+        private int value(int[] samples, int index) {
+            if (range < 0) {
+                return samples[index];
+            }
+            if (range <= Integer.MAX_VALUE) {
+                return (int) (samples[index] * (1.0 / MBIG) * range) + minValue;
+            }
+            int result = samples[index];
+            if (samples[index + 1] % 2 == 0) {
+                result = -result;
+            }
+            double d = result;
+            d += Integer.MAX_VALUE - 1;
+            d /= 2 * (long) Integer.MAX_VALUE - 1;
+            return (int) ((long) (d * range) + minValue);
+        }
+    }
+
+    /**
+     * A search of the seeds, over the 2<sup>31</sup> seeds of {@link DotNetRandom}.
+     */
+    public static final class Search {
+        private final Pattern pattern;
+        private final int maxPosition;
+        private final DotNetRandomSeedSweep sweep;
+
+        private Search(Pattern pattern, double information, int maxPosition) {
+            if (maxPosition < 0) {
+                throw new IllegalArgumentException("maxPosition must be positive");
+            }
+            final double needed = INFORMATION_PER_SAMPLE + Math.log(maxPosition + 1.0) / Math.log(2);
+            if (information < needed) {
+                throw new IllegalArgumentException("Not enough values to find the seeds, "
+                        + (int) information + " bits of the needed " + (int) Math.ceil(needed));
+            }
+            this.pattern = pattern;
+            this.maxPosition = maxPosition;
+            this.sweep = DotNetRandomSeedSweep.forOutputs(maxPosition + pattern.samples(), (seed, samples) -> {
+                for (int position = 0; position <= maxPosition; position++) {
+                    if (pattern.matches(samples, position)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+
+        /**
+         * Searches the seeds using the common fork join pool.
+         *
+         * @return the matches, ordered by seed and position.
+         * @throws CancellationException if the search was cancelled.
+         */
+        public List<Match> search() {
+            return search(ForkJoinPool.commonPool(), null);
+        }
+
+        /**
+         * Searches the seeds.
+         *
+         * @param pool     the pool which runs the search.
+         * @param listener receives the progress, it can be {@code null}.
+         * @return the matches, ordered by seed and position.
+         * @throws CancellationException if the search was cancelled.
+         */
+        public List<Match> search(ForkJoinPool pool, SearchProgressListener listener) {
+            return search(0, 1L << 31, pool, listener);
+        }
+
+        /**
+         * Searches the seeds from {@code [from, to)}.
+         *
+         * @param from     the first seed, from {@code [0, 2^31]}.
+         * @param to       the seed after the last one, from {@code [0, 2^31]}.
+         * @param pool     the pool which runs the search.
+         * @param listener receives the progress, it can be {@code null}.
+         * @return the matches, ordered by seed and position.
+         * @throws IllegalArgumentException if the range is not valid.
+         * @throws CancellationException    if the search was cancelled.
+         */
+        public List<Match> search(long from, long to, ForkJoinPool pool, SearchProgressListener listener) {
+            final List<Match> matches = new ArrayList<>();
+            for (int seed : sweep.search(from, to, pool, listener)) {
+                final DotNetRandom random = new DotNetRandom(seed);
+                final int[] samples = new int[maxPosition + pattern.samples()];
+                random.nextInts(samples, 0, samples.length);
+                for (int position = 0; position <= maxPosition; position++) {
+                    if (pattern.matches(samples, position)) {
+                        matches.add(new Match(seed, position, seedArrayAt(seed, position)));
+                    }
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * Stops the search, which throws a {@link CancellationException}.
+         */
+        public void cancel() {
+            sweep.cancel();
+        }
+    }
+
+    /**
+     * A state, and the seed and position giving it, when found.
+     */
+    public static final class Match {
+        private final int seed;
+        private final long position;
+        private final int[] seedArray;
+
+        Match(int seed, long position, int[] seedArray) {
+            this.seed = seed;
+            this.position = position;
+            this.seedArray = seedArray;
+        }
+
+        /**
+         * @return the seed, from {@code 0} to {@code Int32.MaxValue}, or {@code -1} if it was not found.
+         */
+        public int seed() {
+            return seed;
+        }
+
+        /**
+         * @return the number of values of {@code InternalSample} generated after seeding, up to the first observed
+         * value, or {@code -1} if the seed was not found.
+         */
+        public long position() {
+            return position;
+        }
+
+        /**
+         * @return a new generator positioned before the first value.
+         */
+        public DotNetRandom newGenerator() {
+            final DotNetRandom random = new DotNetRandom(0);
+            random.setSeedArray(seedArray);
+            return random;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Match)) {
+                return false;
+            }
+            final Match that = (Match) o;
+            return seed == that.seed && position == that.position && Arrays.equals(seedArray, that.seedArray);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * seed + Long.hashCode(position)) + Arrays.hashCode(seedArray);
+        }
+
+        @Override
+        public String toString() {
+            return "Match{seed=" + seed + ", position=" + position + '}';
+        }
+    }
+}
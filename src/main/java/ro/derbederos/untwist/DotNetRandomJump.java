@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static ro.derbederos.untwist.DotNetRandom.MBIG;
+
+/**
+ * Jumps the values of {@link DotNetRandom} ahead or back in {@code O(log n)} polynomial operations.
+ * <p>
+ * The values of {@code InternalSample} satisfy {@code x[k + 55] = x[k] - x[k + 21]} modulo the prime
+ * {@code MBIG}, a linear recurrence with the characteristic polynomial {@code p(x) = x^55 + x^21 - 1}.
+ * So {@code x[k + n]} is {@code sum(c[i] * x[k + i])} for the coefficients of {@code x^n mod p(x)}, and
+ * {@code x} is invertible modulo {@code p(x)}, {@code x^-1 = x^54 + x^20}, which gives the jumps back.
+ * The jump polynomials are cached per distance.
+ */
+final class DotNetRandomJump {
+
+    static final int LAG = 55;
+    private static final int SHORT_LAG = 21;
+    private static final int CACHE_SIZE = 64;
+
+    private static final Map<Long, long[]> CACHE = new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private DotNetRandomJump() {
+    }
+
+    /**
+     * Computes the 55 values {@code n} positions away.
+     *
+     * @param window the values {@code x[k], ..., x[k + 54]}, from {@code [0, MBIG)}.
+     * @param n      the distance, it can be negative.
+     * @return the values {@code x[k + n], ..., x[k + n + 54]}.
+     */
+    static int[] jump(int[] window, long n) {
+        final long[] coefficients = jumpPolynomial(n);
+        // x[k + n + j] uses x[k + j], ..., x[k + j + 54]
+        final long[] values = new long[2 * LAG - 1];
+        for (int i = 0; i < LAG; i++) {
+            values[i] = window[i];
+        }
+        for (int i = LAG; i < values.length; i++) {
+            values[i] = subtract(values[i - LAG], values[i - LAG + SHORT_LAG]);
+        }
+        final int[] result = new int[LAG];
+        for (int j = 0; j < LAG; j++) {
+            long sum = 0;
+            for (int i = 0; i < LAG; i++) {
+                sum += reduce(coefficients[i] * values[i + j]);
+            }
+            result[j] = (int) reduce(sum);
+        }
+        return result;
+    }
+
+    /**
+     * @return the coefficients of {@code x^n mod p(x)}.
+     */
+    private static long[] jumpPolynomial(long n) {
+        synchronized (CACHE) {
+            final long[] cached = CACHE.get(n);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // the bits of |n|, as an unsigned value for Long.MIN_VALUE
+        final long distance = n < 0 ? -n : n;
+        long[] result = new long[LAG];
+        result[0] = 1;
+        for (int bit = 63 - Long.numberOfLeadingZeros(distance); bit >= 0; bit--) {
+            result = multiply(result, result);
+            if ((distance >>> bit & 1) != 0) {
+                result = n < 0 ? divideByX(result) : multiplyByX(result);
+            }
+        }
+        synchronized (CACHE) {
+            CACHE.put(n, result);
+        }
+        return result;
+    }
+
+    private static long[] multiply(long[] a, long[] b) {
+        final long[] product = new long[2 * LAG - 1];
+        for (int i = 0; i < LAG; i++) {
+            if (a[i] != 0) {
+                for (int j = 0; j < LAG; j++) {
+                    product[i + j] += reduce(a[i] * b[j]);
+                }
+            }
+        }
+        // x^d = x^(d - 55) * (1 - x^21)
+        for (int d = product.length - 1; d >= LAG; d--) {
+            final long c = reduce(product[d]);
+            product[d - LAG] += c;
+            product[d - LAG + SHORT_LAG] += MBIG - c;
+        }
+        final long[] result = new long[LAG];
+        for (int i = 0; i < LAG; i++) {
+            result[i] = reduce(product[i]);
+        }
+        return result;
+    }
+
+    private static long[] multiplyByX(long[] a) {
+        final long[] result = new long[LAG];
+        System.arraycopy(a, 0, result, 1, LAG - 1);
+        final long c = a[LAG - 1];
+        result[0] = c;
+        result[SHORT_LAG] = subtract(result[SHORT_LAG], c);
+        return result;
+    }
+
+    private static long[] divideByX(long[] a) {
+        final long[] result = new long[LAG];
+        System.arraycopy(a, 1, result, 0, LAG - 1);
+        final long c = a[0];
+        result[LAG - 1] = c;
+        result[SHORT_LAG - 1] = reduce(result[SHORT_LAG - 1] + c);
+        return result;
+    }
+
+    private static long subtract(long a, long b) {
+        final long difference = a - b;
+        return difference < 0 ? difference + MBIG : difference;
+    }
+
+    /**
+     * Reduces modulo the Mersenne prime {@code MBIG = 2^31 - 1} a non-negative value less than {@code 2^62}.
+     */
+    private static long reduce(long x) {
+        x = (x & MBIG) + (x >>> 31);
+        x = (x & MBIG) + (x >>> 31);
+        return x >= MBIG ? x - MBIG : x;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.math.BigInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+import static ro.derbederos.untwist.DotNetRandom.MBIG;
+import static ro.derbederos.untwist.DotNetRandom.MSEED;
+
+/**
+ * Sweeps the seeds of {@link DotNetRandom}, computing the first values of {@link DotNetRandom#nextInt()}
+ * of each seed without creating generators, and finds the seeds whose values match.
+ * <p>
+ * .NET uses the absolute value of the seed, so the seeds {@code s} and {@code -s} give the same values, and
+ * {@code Int32.MinValue} gives the values of {@code Int32.MaxValue}. The sweep covers the 2<sup>31</sup>
+ * seeds from {@code 0} to {@code Int32.MaxValue}.
+ * <p>
+ * The initialization of the {@code SeedArray} fills it with a Fibonacci like sequence started from
+ * {@code f = MSEED - seed}, and mixes it with four passes of subtractions, all modulo {@code MBIG}. So each
+ * value of the {@code SeedArray} is {@code (a * f + b) mod MBIG}, for constants computed once. There is a
+ * single quirk: for seeds greater than {@code MSEED} the value {@code f} is kept negative until the first
+ * pass, and its two subtractions may overflow, adding {@code -2} or {@code 2} to their results, which are
+ * spread further by the passes as two more constant vectors. A chunk of consecutive seeds is swept
+ * incrementally: going to the next seed subtracts {@code a} from each value, and only the values needed by
+ * the first outputs are computed. The seeds where the overflows give values out of {@code [0, MBIG)}, a
+ * handful of them, are initialized as .NET does.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * DotNetRandomSeedSweep sweep = DotNetRandomSeedSweep.forOutputs(2, (seed, values) -> values[0] < 1000);
+ * int[] seeds = sweep.search();
+ * }</pre>
+ */
+public final class DotNetRandomSeedSweep extends SeedSearch {
+
+    private static final long SEED_SPACE = 1L << 31;
+
+    // the SeedArray is a * f + b + e1 * ERROR1 + e2 * ERROR2 modulo MBIG, where e1, e2 are 0 or 1
+    private static final long[] A = new long[56];
+    private static final long[] B = new long[56];
+    private static final long[] ERROR1 = new long[56];
+    private static final long[] ERROR2 = new long[56];
+    // the values subtracted from f, and f is subtracted from, with their errors
+    private static final long[] FIRST_OPERAND = new long[4];
+    private static final long[] SECOND_OPERAND = new long[4];
+
+    static {
+        // each value is kept as its coefficients: f, 1, the first error and the second error
+        final long[][] seedArray = new long[56][];
+        seedArray[55] = new long[]{1, 0, 0, 0};
+        long[] mj = seedArray[55];
+        long[] mk = {0, 1, 0, 0};
+        int ii = 0;
+        for (int i = 1; i < 55; i++) {
+            if ((ii += 21) >= 55) {
+                ii -= 55;
+            }
+            seedArray[ii] = mk;
+            mk = subtract(mj, mk);
+            mj = seedArray[ii];
+        }
+        for (int k = 1; k < 5; k++) {
+            for (int i = 1; i < 56; i++) {
+                int n = i + 30;
+                if (n >= 55) {
+                    n -= 55;
+                }
+                final long[] difference = subtract(seedArray[i], seedArray[1 + n]);
+                if (k == 1 && 1 + n == 55) {
+                    // seedArray[i] - f, which overflows to a negative value, and MBIG is added: -2 modulo MBIG
+                    System.arraycopy(seedArray[i], 0, FIRST_OPERAND, 0, 4);
+                    difference[2] = 1;
+                } else if (k == 1 && i == 55) {
+                    // f - seedArray[1 + n], which underflows to a positive value: +2 modulo MBIG
+                    System.arraycopy(seedArray[1 + n], 0, SECOND_OPERAND, 0, 4);
+                    difference[3] = 1;
+                }
+                seedArray[i] = difference;
+            }
+        }
+        for (int i = 1; i < 56; i++) {
+            A[i] = seedArray[i][0];
+            B[i] = seedArray[i][1];
+            ERROR1[i] = multiply(seedArray[i][2], MBIG - 2);
+            ERROR2[i] = multiply(seedArray[i][3], 2);
+        }
+    }
+
+    // a value of the SeedArray which gives f, and two values checking it
+    private static final int PIVOT;
+    private static final long PIVOT_INVERSE;
+    private static final int[] CHECKS = new int[2];
+
+    static {
+        int pivot = 1;
+        while (A[pivot] == 0) {
+            pivot++;
+        }
+        PIVOT = pivot;
+        PIVOT_INVERSE = BigInteger.valueOf(A[pivot]).modInverse(BigInteger.valueOf(MBIG)).longValue();
+        for (int i = 0, slot = 1; i < CHECKS.length; slot++) {
+            if (slot != pivot && A[slot] != 0) {
+                CHECKS[i++] = slot;
+            }
+        }
+    }
+
+    /**
+     * Receives the first values of a seed.
+     */
+    @FunctionalInterface
+    public interface OutputsPredicate {
+
+        /**
+         * Called from the threads of the sweep, so it has to be thread safe and fast.
+         *
+         * @param seed   the seed, from {@code 0} to {@code Int32.MaxValue}.
+         * @param values the first values of {@link DotNetRandom#nextInt()} of the seed. The array is reused for
+         *               the next seeds, so it must not be kept.
+         * @return {@code true} if the seed matches.
+         */
+        boolean test(int seed, int[] values);
+    }
+
+    private final int count;
+    private final OutputsPredicate predicate;
+    /**
+     * The indexes of the {@code SeedArray} read by the first {@code count} outputs.
+     */
+    private final int[] slots;
+
+    private DotNetRandomSeedSweep(int count, OutputsPredicate predicate) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("At least one value is needed");
+        }
+        this.count = count;
+        this.predicate = predicate;
+        final int first = Math.min(count, 55);
+        final int second = Math.min(count, 55 - 21);
+        this.slots = new int[first + second];
+        for (int i = 0; i < first; i++) {
+            slots[i] = i + 1;
+        }
+        for (int i = 0; i < second; i++) {
+            slots[first + i] = 22 + i;
+        }
+    }
+
+    /**
+     * Creates a sweep for the seeds whose first values of {@link DotNetRandom#nextInt()} are given.
+     *
+     * @param prefix the first values generated after seeding.
+     * @return the sweep.
+     */
+    public static DotNetRandomSeedSweep forInts(int... prefix) {
+        final int[] expected = prefix.clone();
+        return new DotNetRandomSeedSweep(expected.length, (seed, values) -> {
+            for (int i = 0; i < expected.length; i++) {
+                if (values[i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Creates a sweep which gives the first {@code count} values of {@link DotNetRandom#nextInt()} of each seed
+     * to a predicate, and keeps the seeds it accepts. The other methods of {@link DotNetRandom} are computed
+     * out of these values, see {@link DotNetRandom#nextDouble()}.
+     *
+     * @param count     the number of values of each seed.
+     * @param predicate the predicate.
+     * @return the sweep.
+     */
+    public static DotNetRandomSeedSweep forOutputs(int count, OutputsPredicate predicate) {
+        return new DotNetRandomSeedSweep(count, predicate);
+    }
+
+    /**
+     * Searches all the seeds using the common fork join pool.
+     *
+     * @return the matching seeds, in increasing order.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public int[] search() {
+        return search(ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Searches all the seeds.
+     *
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching seeds, in increasing order.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public int[] search(ForkJoinPool pool, SearchProgressListener listener) {
+        return search(0, SEED_SPACE, pool, listener);
+    }
+
+    /**
+     * Searches the seeds from {@code [from, to)}.
+     *
+     * @param from     the first seed, from {@code [0, 2^31]}.
+     * @param to       the seed after the last one, from {@code [0, 2^31]}.
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching seeds, in increasing order.
+     * @throws IllegalArgumentException if the range is not valid.
+     * @throws CancellationException    if the search was cancelled.
+     */
+    public int[] search(long from, long to, ForkJoinPool pool, SearchProgressListener listener) {
+        final long[] seeds = searchRange(from, to, pool, listener);
+        final int[] result = new int[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            result[i] = (int) seeds[i];
+        }
+        return result;
+    }
+
+    @Override
+    protected long size() {
+        return SEED_SPACE;
+    }
+
+    @Override
+    protected void scan(long from, long to, LongConsumer candidates) {
+        final int[] slots = this.slots;
+        final int[] seedArray = new int[56];
+        final int[] values = new int[count];
+        final long[] initial = new long[slots.length];
+        long f = Math.floorMod(MSEED - from, (long) MBIG);
+        for (int j = 0; j < slots.length; j++) {
+            initial[j] = linear(slots[j], f);
+        }
+        long firstOperand = (FIRST_OPERAND[0] * f + FIRST_OPERAND[1]) % MBIG;
+        long secondOperand = (SECOND_OPERAND[0] * f + SECOND_OPERAND[1]) % MBIG;
+        for (long seed = from; seed < to; seed++) {
+            final long negativeF = MSEED - seed;
+            boolean error1 = false;
+            boolean error2 = false;
+            boolean exact = false;
+            if (negativeF < 0) {
+                final long first = firstOperand - negativeF;
+                error1 = first > Integer.MAX_VALUE;
+                final long second = negativeF - (error1 ? add(secondOperand, multiply(SECOND_OPERAND[2], MBIG - 2)) : secondOperand);
+                error2 = second < Integer.MIN_VALUE;
+                // results out of [0, MBIG), the edge cases of the overflows
+                exact = first == MBIG || first == 1L << 31 || second == Integer.MIN_VALUE
+                        || second == Integer.MIN_VALUE - 1L;
+            }
+            if (exact) {
+                DotNetRandom.initializeSeedArray((int) seed, seedArray);
+            } else {
+                for (int j = 0; j < slots.length; j++) {
+                    long value = initial[j];
+                    if (error1) {
+                        value = add(value, ERROR1[slots[j]]);
+                    }
+                    if (error2) {
+                        value = add(value, ERROR2[slots[j]]);
+                    }
+                    seedArray[slots[j]] = (int) value;
+                }
+            }
+            nextInts(seedArray, values);
+            if (predicate.test((int) seed, values)) {
+                candidates.accept(seed);
+            }
+            // the next seed has f - 1
+            for (int j = 0; j < slots.length; j++) {
+                initial[j] = subtract(initial[j], A[slots[j]]);
+            }
+            firstOperand = subtract(firstOperand, FIRST_OPERAND[0]);
+            secondOperand = subtract(secondOperand, SECOND_OPERAND[0]);
+        }
+    }
+
+    /**
+     * Checks a seed with the initialization of .NET.
+     */
+    @Override
+    protected boolean verify(long seed) {
+        final int[] seedArray = new int[56];
+        final int[] values = new int[count];
+        DotNetRandom.initializeSeedArray((int) seed, seedArray);
+        nextInts(seedArray, values);
+        return predicate.test((int) seed, values);
+    }
+
+    /**
+     * Finds the seed which initializes the {@code SeedArray} with the given values modulo {@code MBIG}, solving
+     * {@code f} out of a value for each of the overflows.
+     *
+     * @param window the values of the {@code SeedArray}, the value of the index {@code i} being found at
+     *               {@code window[(start + i - 1) % 55]}.
+     * @param start  the position of the first value in the window.
+     * @return the seed, from {@code 0} to {@code Int32.MaxValue}, or {@code -1} if there is none.
+     */
+    static long seedOf(int[] window, int start) {
+        final long pivot = window[(start + PIVOT - 1) % 55];
+        for (int errors = 0; errors < 4; errors++) {
+            final boolean error1 = (errors & 1) != 0;
+            final boolean error2 = (errors & 2) != 0;
+            final long f = multiply(subtract(pivot, withErrors(PIVOT, 0, error1, error2)), PIVOT_INVERSE);
+            boolean matches = true;
+            for (int slot : CHECKS) {
+                matches &= window[(start + slot - 1) % 55] == withErrors(slot, f, error1, error2);
+            }
+            if (matches) {
+                final long seed = Math.floorMod(MSEED - f, (long) MBIG);
+                if (isSeedOf(seed, window, start)) {
+                    return seed;
+                }
+                // f is the same for 0 and Int32.MaxValue
+                if (seed == 0 && isSeedOf(Integer.MAX_VALUE, window, start)) {
+                    return Integer.MAX_VALUE;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static long withErrors(int slot, long f, boolean error1, boolean error2) {
+        long value = linear(slot, f);
+        if (error1) {
+            value = add(value, ERROR1[slot]);
+        }
+        if (error2) {
+            value = add(value, ERROR2[slot]);
+        }
+        return value;
+    }
+
+    private static boolean isSeedOf(long seed, int[] window, int start) {
+        final int[] seedArray = new int[56];
+        DotNetRandom.initializeSeedArray((int) seed, seedArray);
+        for (int i = 1; i < 56; i++) {
+            if (window[(start + i - 1) % 55] != Math.floorMod(seedArray[i], MBIG)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The first values of {@code InternalSample}, with {@code inext = 55} and {@code inextp = 21}.
+     */
+    private static void nextInts(int[] seedArray, int[] values) {
+        int locINext = 55;
+        int locINextp = 21;
+        for (int i = 0; i < values.length; i++) {
+            if (++locINext >= 56) {
+                locINext = 1;
+            }
+            if (++locINextp >= 56) {
+                locINextp = 1;
+            }
+            int retVal = seedArray[locINext] - seedArray[locINextp];
+            if (retVal == MBIG) {
+                retVal--;
+            }
+            if (retVal < 0) {
+                retVal += MBIG;
+            }
+            seedArray[locINext] = retVal;
+            values[i] = retVal;
+        }
+    }
+
+    private static long linear(int slot, long f) {
+        return (A[slot] * f + B[slot]) % MBIG;
+    }
+
+    private static long add(long a, long b) {
+        final long sum = a + b;
+        return sum >= MBIG ? sum - MBIG : sum;
+    }
+
+    private static long subtract(long a, long b) {
+        final long difference = a - b;
+        return difference < 0 ? difference + MBIG : difference;
+    }
+
+    private static long multiply(long a, long b) {
+        return a * b % MBIG;
+    }
+
+    private static long[] subtract(long[] a, long[] b) {
+        final long[] difference = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            difference[i] = subtract(a[i], b[i]);
+        }
+        return difference;
+    }
+}
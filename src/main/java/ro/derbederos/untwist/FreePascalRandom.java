@@ -37,6 +37,8 @@ public class FreePascalRandom extends ReversibleMersenneTwister implements Rever
 
     private static final double DOUBLE_UNIT = 0x1.0p-32d; // 1.0 / (1L << 32)
 
+    private static final int N = MersenneTwisterEngine.N;
+
     /**
      * Creates a new random number generator.
      * <p>
@@ -78,6 +80,46 @@ public class FreePascalRandom extends ReversibleMersenneTwister implements Rever
         super(seed);
     }
 
+    /**
+     * Creates a generator out of at least 624 consecutive values of {@link #nextInt()}.
+     *
+     * @param outputs  the observed values, at least 624 of them.
+     * @param position the number of values generated before {@code outputs[0]}.
+     * @return the recovered generator.
+     * @throws IllegalArgumentException if there are less than 624 values or the values could not
+     *                                  have been generated by a Mersenne Twister.
+     * @see ReversibleMersenneTwister#fromOutputs(int[], long)
+     */
+    public static FreePascalRandom fromOutputs(int[] outputs, long position) {
+        FreePascalRandom generator = new FreePascalRandom(0);
+        generator.recoverState(outputs, position);
+        return generator;
+    }
+
+    /**
+     * Creates a generator out of at least 624 consecutive values of {@link #nextDouble()}.
+     * Each value keeps all the 32 bits of the generated word, so the recovery is exact.
+     *
+     * @param outputs  the observed values, at least 624 of them.
+     * @param position the number of values generated before {@code outputs[0]}.
+     * @return the recovered generator.
+     * @throws IllegalArgumentException if there are less than 624 values, a value is not a multiple
+     *                                  of 2<sup>-32</sup> from {@code [0, 1)}, or the values could not
+     *                                  have been generated by a Mersenne Twister.
+     */
+    public static FreePascalRandom fromDoubles(double[] outputs, long position) {
+        final int[] words = new int[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            final double scaled = outputs[i] * 0x1.0p32d;
+            if (!(scaled >= 0 && scaled < 0x1.0p32d) || scaled != Math.rint(scaled)) {
+                throw new IllegalArgumentException("The value at index " + i + " is not a FreePascal random double: "
+                        + outputs[i]);
+            }
+            words[i] = (int) (long) scaled;
+        }
+        return fromOutputs(words, position);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -156,6 +198,74 @@ public class FreePascalRandom extends ReversibleMersenneTwister implements Rever
         return (float) prevDouble();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #nextDouble()}.
+     */
+    @Override
+    protected void nextDoublesFill(double[] dst, int off, int len) {
+        final int[] words = new int[Math.min(len, N)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N);
+            nextIntsFill(words, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = toUnsignedLong(words[i]) * DOUBLE_UNIT;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #nextFloat()}.
+     */
+    @Override
+    protected void nextFloatsFill(float[] dst, int off, int len) {
+        final int[] words = new int[Math.min(len, N)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N);
+            nextIntsFill(words, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (float) (toUnsignedLong(words[i]) * DOUBLE_UNIT);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #prevDouble()}.
+     */
+    @Override
+    protected void prevDoublesFill(double[] dst, int off, int len) {
+        final int[] words = new int[Math.min(len, N)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N);
+            prevIntsFill(words, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = toUnsignedLong(words[i]) * DOUBLE_UNIT;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #prevFloat()}.
+     */
+    @Override
+    protected void prevFloatsFill(float[] dst, int off, int len) {
+        final int[] words = new int[Math.min(len, N)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N);
+            prevIntsFill(words, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (float) (toUnsignedLong(words[i]) * DOUBLE_UNIT);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -295,6 +405,40 @@ public class FreePascalRandom extends ReversibleMersenneTwister implements Rever
         return high | low;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #nextLong()}, the low word comes first.
+     */
+    @Override
+    protected void nextLongsFill(long[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            nextIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = toUnsignedLong(words[2 * i]) | (toUnsignedLong(words[2 * i + 1]) << 32);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #prevLong()}, the high word comes first.
+     */
+    @Override
+    protected void prevLongsFill(long[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            prevIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (toUnsignedLong(words[2 * i]) << 32) | toUnsignedLong(words[2 * i + 1]);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.Arrays;
+
+import static ro.derbederos.untwist.ReversibleJavaRandom.ADDEND;
+import static ro.derbederos.untwist.ReversibleJavaRandom.INVERSE_MULTIPLIER;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MASK;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MULTIPLIER;
+
+/**
+ * Recovers the internal state of {@link java.util.Random} out of a few of its outputs.
+ * <p>
+ * The methods return the candidate 48 bit states the generator had right before the observed values,
+ * which is usually a single one. A state is turned into the seed of {@link java.util.Random#setSeed(long)}
+ * with {@link #seedOf(long)}, and into a generator positioned before the observed values with
+ * {@link #newGenerator(long)}.
+ * <p>
+ * Each observed value gives the high bits of a state, the low bits are found by solving
+ * {@code (c + a * x) mod 2^48} in the interval given by the next observed value. Between two wraps
+ * around {@code 2^48} the values increase by {@code a}, which is wider than the interval, so only one
+ * {@code x} is checked for each wrap, a few hundred at most, instead of all the values of {@code x}.
+ */
+public final class JavaRandomCracker {
+
+    private JavaRandomCracker() {
+    }
+
+    /**
+     * Recovers the state out of two consecutive {@link java.util.Random#nextInt()} values.
+     *
+     * @param first  the first value.
+     * @param second the second value.
+     * @return the candidate states before the first value.
+     */
+    public static long[] fromInts(int first, int second) {
+        return toPreviousStates(solve(Integer.toUnsignedLong(first) << 16, 16,
+                Integer.toUnsignedLong(second) << 16, 16));
+    }
+
+    /**
+     * Recovers the state out of a {@link java.util.Random#nextLong()} value, made of two {@code int} values.
+     *
+     * @param value the value.
+     * @return the candidate states before the value.
+     */
+    public static long[] fromLong(long value) {
+        final int low = (int) value;
+        final int high = (int) ((value - low) >>> 32);
+        return fromInts(high, low);
+    }
+
+    /**
+     * Recovers the state out of a {@link java.util.Random#nextDouble()} value, made of 26 and 27 bits
+     * of two consecutive states.
+     *
+     * @param value the value.
+     * @return the candidate states before the value.
+     * @throws IllegalArgumentException if the value can not be generated by {@code nextDouble()}.
+     */
+    public static long[] fromDouble(double value) {
+        final long bits = (long) (value * 0x1.0p53);
+        if (!(value >= 0 && value < 1) || bits * 0x1.0p-53 != value) {
+            throw new IllegalArgumentException("Not a value of nextDouble: " + value);
+        }
+        return toPreviousStates(solve((bits >>> 27) << 22, 22, (bits & ((1L << 27) - 1)) << 21, 21));
+    }
+
+    /**
+     * Recovers the state out of consecutive {@link java.util.Random#nextFloat()} values, each one
+     * having 24 bits of a state. The first two values are solved, the others check the candidates.
+     *
+     * @param values at least two values.
+     * @return the candidate states before the first value.
+     * @throws IllegalArgumentException if there are less than two values, or a value can not be
+     *                                  generated by {@code nextFloat()}.
+     */
+    public static long[] fromFloats(float... values) {
+        if (values.length < 2) {
+            throw new IllegalArgumentException("At least two values are needed, got " + values.length);
+        }
+        final long[] bits = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bits[i] = (long) (values[i] * 0x1.0p24f);
+            if (!(values[i] >= 0 && values[i] < 1) || bits[i] * 0x1.0p-24f != values[i]) {
+                throw new IllegalArgumentException("Not a value of nextFloat: " + values[i]);
+            }
+        }
+        final long[] candidates = solve(bits[0] << 24, 24, bits[1] << 24, 24);
+        int count = 0;
+        for (long candidate : candidates) {
+            long state = step(candidate);
+            boolean matches = true;
+            for (int i = 2; i < bits.length && matches; i++) {
+                state = step(state);
+                matches = (state >>> 24) == bits[i];
+            }
+            if (matches) {
+                candidates[count++] = candidate;
+            }
+        }
+        return toPreviousStates(Arrays.copyOf(candidates, count));
+    }
+
+    /**
+     * Recovers the state out of consecutive {@link java.util.Random#nextInt(int)} values having the same bound,
+     * like dice rolls.
+     *
+     * @param bound  the bound of the values.
+     * @param values the values.
+     * @return a new generator positioned before the first value, or {@code null} if the state was not found.
+     * @throws IllegalArgumentException if the bound is not positive, a value is out of bound, or the values
+     *                                  do not have enough information to find the state.
+     * @see #fromBoundedInts(int[], int[])
+     */
+    public static ReversibleJavaRandom fromBoundedInts(int bound, int... values) {
+        final int[] bounds = new int[values.length];
+        Arrays.fill(bounds, bound);
+        return fromBoundedInts(bounds, values);
+    }
+
+    /**
+     * Recovers the state out of consecutive {@link java.util.Random#nextInt(int)} values.
+     * <p>
+     * Unlike the other methods, a value gives only a few bits of its state, so the state is searched
+     * with lattice reduction. The unknown bits of the state need about as many bits of the values, plus
+     * a few more: at least 36 dice rolls, or 16 values of {@code nextInt(16)}, while coin flips are not enough.
+     * Bounds which are neither powers of two nor multiples of large powers of two take a brute force of
+     * {@code 2^17} to {@code 2^24} guesses of the low bits of the state. Values rejected by {@code nextInt}
+     * are supported.
+     * <p>
+     * The search is not exhaustive, only the lattice vectors closest to the values are tried, so it may miss
+     * the state when the values have little more information than needed, as for small bounds like
+     * {@code nextInt(3)}. Then {@code null} does not mean that no state gives the values: more values make
+     * the search succeed, while {@link JavaRandomSeedSearch} searches all the states.
+     *
+     * @param bounds the bounds of the values.
+     * @param values the values.
+     * @return a new generator positioned before the first value, or {@code null} if the state was not found.
+     * @throws IllegalArgumentException if the arrays have different lengths, a bound is not positive, a value
+     *                                  is out of bound, or the values do not have enough information to find
+     *                                  the state.
+     */
+    public static ReversibleJavaRandom fromBoundedInts(int[] bounds, int[] values) {
+        final long state = new BoundedIntRecovery(bounds, values).recover();
+        return state < 0 ? null : newGenerator(state);
+    }
+
+    /**
+     * @param state a state of the generator.
+     * @return the seed which gives the state through {@link java.util.Random#setSeed(long)}.
+     */
+    public static long seedOf(long state) {
+        return (state ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * @param state a state of the generator.
+     * @return a new generator having the state.
+     */
+    public static ReversibleJavaRandom newGenerator(long state) {
+        return new ReversibleJavaRandom(seedOf(state));
+    }
+
+    /**
+     * Finds the states {@code high | x}, for {@code x} lower than {@code 2^unknownBits}, whose next state
+     * is between {@code nextHigh} and {@code nextHigh + 2^nextUnknownBits - 1}.
+     */
+    private static long[] solve(long high, int unknownBits, long nextHigh, int nextUnknownBits) {
+        final long limit = 1L << unknownBits;
+        final long width = 1L << nextUnknownBits;
+        // the next state is (start + MULTIPLIER * x) mod 2^48
+        final long start = (high * MULTIPLIER + ADDEND) & MASK;
+        final long wraps = (start + MULTIPLIER * (limit - 1)) >>> 48;
+        long[] result = new long[1];
+        int count = 0;
+        for (long k = 0; k <= wraps; k++) {
+            final long target = nextHigh + (k << 48) - start;
+            final long x = target <= 0 ? 0 : (target + MULTIPLIER - 1) / MULTIPLIER;
+            if (x >= limit) {
+                break;
+            }
+            final long next = start + MULTIPLIER * x - (k << 48);
+            if (next >= nextHigh && next < nextHigh + width) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, 2 * count);
+                }
+                result[count++] = high | x;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static long step(long state) {
+        return (state * MULTIPLIER + ADDEND) & MASK;
+    }
+
+    private static long[] toPreviousStates(long[] states) {
+        for (int i = 0; i < states.length; i++) {
+            states[i] = ((states[i] - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+        }
+        return states;
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkRestoreState;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkSaveState;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.getFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.putFlag;
+import static ro.derbederos.untwist.ReversibleJavaRandom.ADDEND;
+import static ro.derbederos.untwist.ReversibleJavaRandom.INVERSE_MULTIPLIER;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MASK;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MULTIPLIER;
+
+/**
+ * The operations of the linear congruential generator of {@link java.util.Random} on a seed held by the caller,
+ * shared by {@link ReversibleJavaRandom}, which keeps the seed in an atomic, and {@link UnsynchronizedJavaRandom},
+ * which keeps it in a plain field: the steps, the bulk fills, the polar method of {@code nextGaussian()} and the
+ * layout of the saved state.
+ * <p>
+ * The methods which change the seed return the new one.
+ */
+final class JavaRandomEngine {
+
+    static final double DOUBLE_UNIT = 0x1.0p-53d; // 1.0 / (1L << 53)
+    static final float FLOAT_UNIT = 0x1.0p-24f;   // 1.0f / (1 << 24)
+
+    /**
+     * The size of the state: the seed, then the cache of {@code nextGaussian()}.
+     */
+    static final int STATE_SIZE = Long.BYTES + 1 + Double.BYTES + 2 * Long.BYTES;
+
+    private JavaRandomEngine() {
+    }
+
+    static long next(long seed) {
+        return (seed * MULTIPLIER + ADDEND) & MASK;
+    }
+
+    static long prev(long seed) {
+        return ((seed - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+    }
+
+    static long nextInts(long seed, int[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            seed = next(seed);
+            dst[i] = (int) (seed >>> 16);
+        }
+        return seed;
+    }
+
+    static long nextLongs(long seed, long[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            seed = next(seed);
+            final long high = (long) (int) (seed >>> 16) << 32;
+            seed = next(seed);
+            dst[i] = high + (int) (seed >>> 16);
+        }
+        return seed;
+    }
+
+    static long nextDoubles(long seed, double[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            seed = next(seed);
+            final long high = (seed >>> 22) << 27;
+            seed = next(seed);
+            dst[i] = (high + (seed >>> 21)) * DOUBLE_UNIT;
+        }
+        return seed;
+    }
+
+    static long nextFloats(long seed, float[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            seed = next(seed);
+            dst[i] = (int) (seed >>> 24) * FLOAT_UNIT;
+        }
+        return seed;
+    }
+
+    static long prevInts(long seed, int[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = (int) (seed >>> 16);
+            seed = prev(seed);
+        }
+        return seed;
+    }
+
+    static long prevLongs(long seed, long[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            final int low = (int) (seed >>> 16);
+            seed = prev(seed);
+            dst[i] = low + ((long) (int) (seed >>> 16) << 32);
+            seed = prev(seed);
+        }
+        return seed;
+    }
+
+    static long prevDoubles(long seed, double[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            final long low = seed >>> 21;
+            seed = prev(seed);
+            dst[i] = (low + ((seed >>> 22) << 27)) * DOUBLE_UNIT;
+            seed = prev(seed);
+        }
+        return seed;
+    }
+
+    static long prevFloats(long seed, float[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = (int) (seed >>> 24) * FLOAT_UNIT;
+            seed = prev(seed);
+        }
+        return seed;
+    }
+
+    /**
+     * Generates whole pairs of gaussian values as {@link java.util.Random#nextGaussian()} does, with the
+     * <a href="https://en.wikipedia.org/wiki/Marsaglia_polar_method#Implementation">Marsaglia polar method</a>,
+     * stepping over the pairs of doubles it rejects.
+     *
+     * @param seed the seed before the pairs.
+     * @param dst  the array which receives the values.
+     * @param off  the index of the first value.
+     * @param end  the index after the last value, {@code off} plus an even number.
+     * @return the seed after the pairs.
+     */
+    static long nextGaussianPairs(long seed, double[] dst, int off, int end) {
+        for (int i = off; i < end; i += 2) {
+            double v1, v2, s;
+            do {
+                seed = next(seed);
+                long high = (seed >>> 22) << 27;
+                seed = next(seed);
+                v1 = 2 * ((high + (seed >>> 21)) * DOUBLE_UNIT) - 1; // between -1 and 1
+                seed = next(seed);
+                high = (seed >>> 22) << 27;
+                seed = next(seed);
+                v2 = 2 * ((high + (seed >>> 21)) * DOUBLE_UNIT) - 1; // between -1 and 1
+                s = v1 * v1 + v2 * v2;
+            } while (s >= 1 || s == 0);
+            final double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+            dst[i] = v1 * multiplier;
+            dst[i + 1] = v2 * multiplier;
+        }
+        return seed;
+    }
+
+    /**
+     * Reverse of the accepted pair of doubles of {@link #nextGaussianPairs(long, double[], int, int)}.
+     *
+     * @param seed the seed after the pair.
+     * @param dst  the array which receives the two gaussian values.
+     * @return the seed before the pair.
+     */
+    static long prevGaussianPair(long seed, double[] dst) {
+        seed = prevPolarPair(seed, dst);
+        final double s = dst[0] * dst[0] + dst[1] * dst[1];
+        final double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        dst[0] *= multiplier;
+        dst[1] *= multiplier;
+        return seed;
+    }
+
+    /**
+     * Steps back over the pairs of doubles rejected by the polar method before an accepted pair, at most
+     * {@code steps} steps.
+     *
+     * @param accepted the seed before the accepted pair.
+     * @param steps    the steps which can be stepped over.
+     * @return the seed before the rejected pairs.
+     */
+    static long skipRejectedPairs(long accepted, long steps) {
+        final double[] pair = new double[2];
+        long start = accepted;
+        for (; steps >= 4; steps -= 4) {
+            final long previous = prevPolarPair(start, pair);
+            final double s = pair[0] * pair[0] + pair[1] * pair[1];
+            if (s < 1 && s != 0) {
+                break;
+            }
+            start = previous;
+        }
+        return start;
+    }
+
+    /**
+     * @param seed the seed after a pair of doubles.
+     * @param dst  the array which receives the two doubles, between {@code -1} and {@code 1}.
+     * @return the seed before the pair.
+     */
+    private static long prevPolarPair(long seed, double[] dst) {
+        long low = seed >>> 21;
+        seed = prev(seed);
+        dst[1] = 2 * ((((seed >>> 22) << 27) + low) * DOUBLE_UNIT) - 1;
+        seed = prev(seed);
+        low = seed >>> 21;
+        seed = prev(seed);
+        dst[0] = 2 * ((((seed >>> 22) << 27) + low) * DOUBLE_UNIT) - 1;
+        return prev(seed);
+    }
+
+    /**
+     * @return the number of steps from {@code from} to {@code to}.
+     */
+    static long distance(long from, long to) {
+        return LinearCongruentialJump.distance(from, to, MULTIPLIER, ADDEND, 48);
+    }
+
+    static void saveState(ByteBuffer buffer, long seed, GaussianCache cache) {
+        checkSaveState(buffer, STATE_SIZE);
+        buffer.putLong(seed);
+        putFlag(buffer, cache.hasNext);
+        buffer.putDouble(cache.next);
+        buffer.putLong(cache.origin);
+        buffer.putLong(cache.end);
+    }
+
+    /**
+     * Checks a state written by {@link #saveState(ByteBuffer, long, GaussianCache)}, without reading it.
+     *
+     * @param buffer the buffer.
+     * @return the seed of the state.
+     * @throws IllegalArgumentException if the state is not valid.
+     */
+    static long checkState(ByteBuffer buffer) {
+        checkRestoreState(buffer, STATE_SIZE);
+        final int position = buffer.position();
+        final long seed = buffer.getLong(position);
+        if ((seed & ~MASK) != 0) {
+            throw new IllegalArgumentException("Invalid seed in the state: " + seed);
+        }
+        checkFlag(buffer, position + Long.BYTES);
+        final long origin = buffer.getLong(position + Long.BYTES + 1 + Double.BYTES);
+        final long end = buffer.getLong(position + 2 * Long.BYTES + 1 + Double.BYTES);
+        if (origin != -1 && (origin & ~MASK) != 0 || end != -1 && (end & ~MASK) != 0) {
+            throw new IllegalArgumentException("Invalid gaussian seeds in the state: " + origin + ", " + end);
+        }
+        return seed;
+    }
+
+    /**
+     * Reads a state checked by {@link #checkState(ByteBuffer)}.
+     *
+     * @param buffer the buffer.
+     * @return the cache of {@code nextGaussian()}.
+     */
+    static GaussianCache readState(ByteBuffer buffer) {
+        buffer.getLong();
+        final boolean hasNext = getFlag(buffer);
+        final double next = buffer.getDouble();
+        final long origin = buffer.getLong();
+        final long end = buffer.getLong();
+        return new GaussianCache(hasNext, next, origin, end);
+    }
+
+    /**
+     * The cache of {@code nextGaussian()}, immutable so that it can be replaced atomically.
+     * <p>
+     * Besides the second value of the last pair, it has the seeds around the run of pairs generated one after
+     * the other. Going back inside the run, the pairs rejected by the polar method are between the previous
+     * accepted pair, or the start of the run, and the accepted pair.
+     */
+    static final class GaussianCache implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final GaussianCache EMPTY = new GaussianCache(false, 0, -1, -1);
+
+        /**
+         * Whether the second value of the last pair was not returned yet, and the value.
+         */
+        final boolean hasNext;
+        final double next;
+        /**
+         * The seeds before and after the run of pairs, or {@code -1}.
+         */
+        final long origin;
+        final long end;
+
+        GaussianCache(boolean hasNext, double next, long origin, long end) {
+            this.hasNext = hasNext;
+            this.next = next;
+            this.origin = origin;
+            this.end = end;
+        }
+
+        /**
+         * @param from the seed before new pairs.
+         * @param to   the seed after them.
+         * @return the cache after the pairs, which continue the run when they follow it.
+         */
+        GaussianCache afterPairs(long from, long to) {
+            return new GaussianCache(false, 0, end == from && origin >= 0 ? origin : from, to);
+        }
+
+        GaussianCache withNext(double next) {
+            return new GaussianCache(true, next, origin, end);
+        }
+
+        GaussianCache taken() {
+            return new GaussianCache(false, 0, origin, end);
+        }
+
+        /**
+         * @param next the second value of the pair which ends at {@code end}, cached again.
+         * @param end  the seed after the pair.
+         */
+        GaussianCache restored(double next, long end) {
+            return new GaussianCache(true, next, origin, end);
+        }
+
+        /**
+         * @param start the seed before the pair which was stepped back over.
+         */
+        GaussianCache rewound(long start) {
+            return new GaussianCache(false, 0, origin, start);
+        }
+
+        /**
+         * @param accepted  the seed before an accepted pair.
+         * @param seedState the seed after seeding.
+         * @return the steps before the accepted pair which can be stepped over, back to the start of the run,
+         * or back to the seed when the start is not known or not before the pair.
+         */
+        long rejectedSteps(long accepted, long seedState) {
+            final long steps = distance(seedState, accepted);
+            return origin >= 0 ? Math.min(steps, distance(origin, accepted)) : steps;
+        }
+    }
+}
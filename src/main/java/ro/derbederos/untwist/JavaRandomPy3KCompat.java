@@ -20,6 +20,11 @@ public class JavaRandomPy3KCompat extends ReversibleJavaRandom {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The number of doubles converted at a time by the bulk float methods.
+     */
+    private static final int CHUNK_SIZE = 256;
+
     public JavaRandomPy3KCompat() {
         super();
     }
@@ -33,8 +38,44 @@ public class JavaRandomPy3KCompat extends ReversibleJavaRandom {
         return (float) nextDouble();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The values are generated in chunks of 256 values, each chunk updating the seed atomically.
+     */
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final double[] doubles = new double[Math.min(len, CHUNK_SIZE)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, CHUNK_SIZE);
+            nextDoubles(doubles, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (float) doubles[i];
+            }
+        }
+    }
+
     @Override
     public float prevFloat() {
         return (float) prevDouble();
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The values are generated in chunks of 256 values, each chunk updating the seed atomically.
+     */
+    @Override
+    public void prevFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final double[] doubles = new double[Math.min(len, CHUNK_SIZE)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, CHUNK_SIZE);
+            prevDoubles(doubles, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (float) doubles[i];
+            }
+        }
+    }
 }
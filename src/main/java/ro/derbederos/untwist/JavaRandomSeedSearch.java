@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+import static ro.derbederos.untwist.ReversibleJavaRandom.ADDEND;
+import static ro.derbederos.untwist.ReversibleJavaRandom.INVERSE_MULTIPLIER;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MASK;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MULTIPLIER;
+
+/**
+ * Finds the states of {@link java.util.Random} which generate a known sequence of {@code nextInt(bound)}
+ * or {@code nextBoolean()} values, by brute force over the 2<sup>48</sup> states.
+ * <p>
+ * It is meant for the values which carry too little information for {@link JavaRandomCracker}, like
+ * coin flips. A power of two bound gives the high bits of a state, so the high bits of the state of the
+ * first value are known and only its low bits are searched: {@code 2^47} states for a coin flip. The scan
+ * advances {@value #LANES} states at a time, in independent lanes which the JIT compiler can vectorize,
+ * and compares the next values until all the lanes fail. The states which pass are verified exactly,
+ * including the values rejected by {@code nextInt(bound)}.
+ * <p>
+ * The whole search of {@code 2^47} states takes days on a single machine, so it is usually split with
+ * {@link #search(long, long, ForkJoinPool, SearchProgressListener)}. The speed of a thread is reported by
+ * {@link SearchProgressListener#onThroughput(double)}.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * JavaRandomSeedSearch search = JavaRandomSeedSearch.forBooleans(flips);
+ * long[] states = search.search(0, search.searchSpaceSize() / 1024, ForkJoinPool.commonPool(), null);
+ * Random random = JavaRandomCracker.newGenerator(states[0]);
+ * }</pre>
+ */
+public final class JavaRandomSeedSearch extends SeedSearch {
+
+    /**
+     * The number of states scanned at a time.
+     */
+    static final int LANES = 8;
+
+    private final int[] bounds;
+    private final int[] values;
+    /**
+     * The high bits of the state of the first value, known from it.
+     */
+    private final int knownBits;
+    private final long knownHigh;
+
+    private JavaRandomSeedSearch(int[] bounds, int[] values) {
+        BoundedValues.check(bounds, values);
+        if (values.length == 0) {
+            throw new IllegalArgumentException("At least one value is needed");
+        }
+        double information = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            information += Math.log(bounds[i]) / Math.log(2);
+        }
+        if (information < 48) {
+            throw new IllegalArgumentException("Not enough values to find the states, "
+                    + (int) information + " bits of the needed 48");
+        }
+        this.bounds = bounds;
+        this.values = values;
+        if (isPowerOfTwo(bounds[0])) {
+            this.knownBits = Integer.numberOfTrailingZeros(bounds[0]);
+            this.knownHigh = (long) values[0] << (48 - knownBits);
+        } else {
+            this.knownBits = 0;
+            this.knownHigh = 0;
+        }
+    }
+
+    /**
+     * Creates a search for the states which generate a sequence of {@link java.util.Random#nextBoolean()}.
+     *
+     * @param values the values, at least 48 of them.
+     * @return the search.
+     */
+    public static JavaRandomSeedSearch forBooleans(boolean... values) {
+        final int[] bounds = new int[values.length];
+        final int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bounds[i] = 2;
+            ints[i] = values[i] ? 1 : 0;
+        }
+        return new JavaRandomSeedSearch(bounds, ints);
+    }
+
+    /**
+     * Creates a search for the states which generate a sequence of {@link java.util.Random#nextInt(int)}
+     * having the same bound.
+     *
+     * @param bound  the bound of the values.
+     * @param values the values.
+     * @return the search.
+     * @see #forBoundedInts(int[], int[])
+     */
+    public static JavaRandomSeedSearch forBoundedInts(int bound, int... values) {
+        final int[] bounds = new int[values.length];
+        Arrays.fill(bounds, bound);
+        return new JavaRandomSeedSearch(bounds, values.clone());
+    }
+
+    /**
+     * Creates a search for the states which generate a sequence of {@link java.util.Random#nextInt(int)}.
+     * The values must have at least 48 bits of information, and the search is the fastest when the first
+     * bound is a large power of two.
+     *
+     * @param bounds the bounds of the values.
+     * @param values the values.
+     * @return the search.
+     * @throws IllegalArgumentException if the arrays have different lengths, a bound is not positive,
+     *                                  a value is out of bound, or the values have less than 48 bits.
+     */
+    public static JavaRandomSeedSearch forBoundedInts(int[] bounds, int[] values) {
+        return new JavaRandomSeedSearch(bounds.clone(), values.clone());
+    }
+
+    /**
+     * @return the number of states searched, the states of the first value whose high bits match it.
+     */
+    public long searchSpaceSize() {
+        return 1L << (48 - knownBits);
+    }
+
+    /**
+     * Searches all the states using the common fork join pool.
+     *
+     * @return the matching states before the first value, see {@link JavaRandomCracker#newGenerator(long)}.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public long[] search() {
+        return search(ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Searches all the states.
+     *
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching states before the first value.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public long[] search(ForkJoinPool pool, SearchProgressListener listener) {
+        return search(0, searchSpaceSize(), pool, listener);
+    }
+
+    /**
+     * Searches a part of the states. The states of the first value are numbered by their unknown low bits,
+     * from {@code 0} to {@link #searchSpaceSize()}, so that the search can be split across several machines.
+     *
+     * @param from     the first state.
+     * @param to       the state after the last one.
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching states before the first value, ordered by their numbers.
+     * @throws IllegalArgumentException if the range is not valid.
+     * @throws CancellationException    if the search was cancelled.
+     */
+    public long[] search(long from, long to, ForkJoinPool pool, SearchProgressListener listener) {
+        final long[] states = searchRange(from, to, pool, listener);
+        for (int i = 0; i < states.length; i++) {
+            states[i] = previous(knownHigh | states[i]);
+        }
+        return states;
+    }
+
+    @Override
+    protected long size() {
+        return searchSpaceSize();
+    }
+
+    /**
+     * The lanes are kept as bit masks: {@code alive} for the states that generated all the values
+     * so far, and {@code unsure} for the ones which hit a rejected value, which are left to the verification.
+     */
+    @Override
+    protected void scan(long from, long to, LongConsumer candidates) {
+        final long[] states = new long[LANES];
+        final int[] bounds = this.bounds;
+        final int[] values = this.values;
+        long seed = from;
+        for (; seed + LANES <= to; seed += LANES) {
+            for (int i = 0; i < LANES; i++) {
+                states[i] = knownHigh | (seed + i);
+            }
+            int alive = (1 << LANES) - 1;
+            int unsure = 0;
+            for (int j = 0; j < values.length && (alive & ~unsure) != 0; j++) {
+                if (j > 0) {
+                    for (int i = 0; i < LANES; i++) {
+                        states[i] = (states[i] * MULTIPLIER + ADDEND) & MASK;
+                    }
+                }
+                final int bound = bounds[j];
+                final int value = values[j];
+                int different = 0;
+                int rejected = 0;
+                if (isPowerOfTwo(bound)) {
+                    final int shift = 48 - Integer.numberOfTrailingZeros(bound);
+                    for (int i = 0; i < LANES; i++) {
+                        different |= (states[i] >>> shift) != value ? 1 << i : 0;
+                    }
+                } else {
+                    final int m = bound - 1;
+                    for (int i = 0; i < LANES; i++) {
+                        final int u = (int) (states[i] >>> 17);
+                        final int r = u % bound;
+                        different |= r != value ? 1 << i : 0;
+                        rejected |= u - r + m < 0 ? 1 << i : 0;
+                    }
+                }
+                unsure |= rejected & alive;
+                alive &= ~different | unsure;
+            }
+            for (int i = 0; alive != 0; i++, alive >>>= 1) {
+                if ((alive & 1) != 0) {
+                    candidates.accept(seed + i);
+                }
+            }
+        }
+        for (; seed < to; seed++) {
+            if (verify(seed)) {
+                candidates.accept(seed);
+            }
+        }
+    }
+
+    @Override
+    protected boolean verify(long seed) {
+        final long[] state = {previous(knownHigh | seed)};
+        for (int i = 0; i < values.length; i++) {
+            if (BoundedIntRecovery.nextInt(state, bounds[i]) != values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPowerOfTwo(int bound) {
+        return (bound & (bound - 1)) == 0;
+    }
+
+    private static long previous(long state) {
+        return ((state - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+    }
+}
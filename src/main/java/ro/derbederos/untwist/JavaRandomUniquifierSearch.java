@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+import static ro.derbederos.untwist.ReversibleJavaRandom.MASK;
+import static ro.derbederos.untwist.ReversibleJavaRandom.SEED_UNIQUIFIER_INVERSE_MULTIPLIER;
+
+/**
+ * Finds how a {@link java.util.Random} created with {@code new Random()} was seeded, out of its state.
+ * <p>
+ * The default constructor uses the seed {@code seedUniquifier() ^ System.nanoTime()}, where the
+ * uniquifier is a static value multiplied by a constant at each call, in the whole JVM. The index of
+ * the call is searched: the uniquifier of each index gives the low 48 bits of the nano time, which
+ * matches when it falls in the given window. The windows up to {@code 2^48} nanoseconds, more than
+ * three days, give at most one nano time for each index. The indexes are searched in parallel.
+ * <p>
+ * Only 48 bits of the seed are known, so an index matches by chance with a probability of
+ * {@code window / 2^48}: a millisecond window and a million indexes give about 4 false matches
+ * in a thousand searches, a one second window gives about 4 in each search.
+ * <p>
+ * The generators created by the same JVM have close indexes and nano times, which groups them.
+ * The state is usually found with {@link JavaRandomCracker}.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * long state = JavaRandomCracker.fromInts(first, second)[0];
+ * JavaRandomUniquifierSearch search = JavaRandomUniquifierSearch.forState(Uniquifier.CURRENT, state, start, end);
+ * for (JavaRandomUniquifierSearch.Match match : search.search(1, 1 << 30, ForkJoinPool.commonPool(), null)) {
+ *     System.out.println(match.index() + " " + match.nanoTime());
+ * }
+ * }</pre>
+ */
+public final class JavaRandomUniquifierSearch extends SeedSearch {
+
+    private static final long INITIAL_UNIQUIFIER = 8682522807148012L;
+
+    /**
+     * The versions of {@code seedUniquifier()}, which differ by the multiplier.
+     */
+    public enum Uniquifier {
+        /**
+         * The multiplier {@code 181783497276652981}, as in Java 8.
+         */
+        LEGACY(181783497276652981L, SEED_UNIQUIFIER_INVERSE_MULTIPLIER),
+        /**
+         * The multiplier {@code 1181783497276652981}, as in Java 17.
+         */
+        CURRENT(1181783497276652981L, -4930887936951138147L);
+
+        private final long multiplier;
+        private final long inverseMultiplier;
+
+        Uniquifier(long multiplier, long inverseMultiplier) {
+            this.multiplier = multiplier;
+            this.inverseMultiplier = inverseMultiplier;
+        }
+
+        /**
+         * Computes the value returned by a call of {@code Random.seedUniquifier()}.
+         *
+         * @param index the index of the call, the first call being 1, it can be negative.
+         * @return the uniquifier.
+         */
+        public long value(long index) {
+            return LinearCongruentialJump.skip(INITIAL_UNIQUIFIER, multiplier, inverseMultiplier, 0, -1L, index);
+        }
+    }
+
+    private final Uniquifier uniquifier;
+    private final long seed;
+    private final long fromNanoTime;
+    private final long width;
+
+    private JavaRandomUniquifierSearch(Uniquifier uniquifier, long seed, long fromNanoTime, long width) {
+        this.uniquifier = uniquifier;
+        this.seed = seed;
+        this.fromNanoTime = fromNanoTime;
+        this.width = width;
+    }
+
+    /**
+     * Creates a search for a generator created with {@code new Random()}.
+     *
+     * @param uniquifier   the version of {@code seedUniquifier()}.
+     * @param state        the state of the generator right after it was created.
+     * @param fromNanoTime the first {@link System#nanoTime()} it could have been created at.
+     * @param toNanoTime   the nano time after the last one.
+     * @return the search.
+     * @throws IllegalArgumentException if the window is empty or longer than {@code 2^48} nanoseconds.
+     */
+    public static JavaRandomUniquifierSearch forState(Uniquifier uniquifier, long state,
+                                                      long fromNanoTime, long toNanoTime) {
+        final long width = toNanoTime - fromNanoTime;
+        if (width <= 0 || width > 1L << 48) {
+            throw new IllegalArgumentException("The nano time window [" + fromNanoTime + ", " + toNanoTime
+                    + ") is empty or longer than 2^48");
+        }
+        return new JavaRandomUniquifierSearch(uniquifier, JavaRandomCracker.seedOf(state), fromNanoTime, width);
+    }
+
+    /**
+     * Searches the indexes of the calls of {@code seedUniquifier()} from {@code [from, to)}.
+     *
+     * @param from     the first index.
+     * @param to       the index after the last one.
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matches, ordered by index.
+     * @throws IllegalArgumentException if the range is not valid.
+     * @throws CancellationException    if the search was cancelled.
+     */
+    public Match[] search(long from, long to, ForkJoinPool pool, SearchProgressListener listener) {
+        final long[] indexes = searchRange(from, to, pool, listener);
+        final Match[] matches = new Match[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            matches[i] = new Match(indexes[i], nanoTime(uniquifier.value(indexes[i])), uniquifier.value(indexes[i]));
+        }
+        return matches;
+    }
+
+    @Override
+    protected long size() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    protected void scan(long from, long to, LongConsumer candidates) {
+        final long multiplier = uniquifier.multiplier;
+        long value = uniquifier.value(from);
+        for (long index = from; index < to; index++) {
+            if (((seed ^ value) - fromNanoTime & MASK) < width) {
+                candidates.accept(index);
+            }
+            value *= multiplier;
+        }
+    }
+
+    @Override
+    protected boolean verify(long index) {
+        return ((seed ^ uniquifier.value(index)) - fromNanoTime & MASK) < width;
+    }
+
+    private long nanoTime(long value) {
+        return fromNanoTime + ((seed ^ value) - fromNanoTime & MASK);
+    }
+
+    /**
+     * A call of {@code seedUniquifier()} and the nano time which give the state.
+     */
+    public static final class Match {
+        private final long index;
+        private final long nanoTime;
+        private final long uniquifier;
+
+        Match(long index, long nanoTime, long uniquifier) {
+            this.index = index;
+            this.nanoTime = nanoTime;
+            this.uniquifier = uniquifier;
+        }
+
+        /**
+         * @return the index of the call of {@code seedUniquifier()}, the number of generators created
+         * with {@code new Random()} by the JVM, up to this one.
+         */
+        public long index() {
+            return index;
+        }
+
+        /**
+         * @return the value of {@link System#nanoTime()} used by the constructor.
+         */
+        public long nanoTime() {
+            return nanoTime;
+        }
+
+        /**
+         * @return the seed given to {@link java.util.Random#Random(long)} by the constructor.
+         */
+        public long seed() {
+            return uniquifier ^ nanoTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Match)) {
+                return false;
+            }
+            final Match that = (Match) o;
+            return index == that.index && nanoTime == that.nanoTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(index) + Long.hashCode(nanoTime);
+        }
+
+        @Override
+        public String toString() {
+            return "Match{index=" + index + ", nanoTime=" + nanoTime + '}';
+        }
+    }
+}
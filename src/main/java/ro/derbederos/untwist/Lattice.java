@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * A lattice reduced with the LLL algorithm, used to find lattice vectors close to a target.
+ * <p>
+ * The reduction is exact, it uses the integral version of the algorithm, which keeps the Gram-Schmidt
+ * coefficients as integers multiplied by the Gram determinants, see H. Cohen, A Course in Computational
+ * Algebraic Number Theory, algorithm 2.6.7. The close vectors are found with the nearest planes algorithm
+ * over the reduced basis, in floating point, as it is run for many targets. The callers check the vectors
+ * they get.
+ */
+final class Lattice {
+
+    /**
+     * The reduction parameter {@code delta = 99 / 100}.
+     */
+    private static final BigInteger DELTA_NUMERATOR = BigInteger.valueOf(99);
+    private static final BigInteger DELTA_DENOMINATOR = BigInteger.valueOf(100);
+
+    private final BigInteger[][] basis;
+    private final double[][] doubleBasis;
+    private final double[][] orthogonal;
+    private final double[] orthogonalNorms;
+
+    /**
+     * @param basis the rows of the basis, linearly independent vectors of the same size.
+     */
+    Lattice(BigInteger[][] basis) {
+        this.basis = reduce(basis);
+        final int n = this.basis.length;
+        this.doubleBasis = new double[n][];
+        this.orthogonal = new double[n][];
+        this.orthogonalNorms = new double[n];
+        for (int i = 0; i < n; i++) {
+            doubleBasis[i] = toDoubles(this.basis[i]);
+            final double[] vector = doubleBasis[i].clone();
+            for (int j = 0; j < i; j++) {
+                final double mu = dot(doubleBasis[i], orthogonal[j]) / orthogonalNorms[j];
+                for (int c = 0; c < vector.length; c++) {
+                    vector[c] -= mu * orthogonal[j][c];
+                }
+            }
+            orthogonal[i] = vector;
+            orthogonalNorms[i] = dot(vector, vector);
+        }
+    }
+
+    /**
+     * @return the number of vectors of the basis.
+     */
+    int dimension() {
+        return basis.length;
+    }
+
+    /**
+     * @param row the index of a vector of the reduced basis, the shorter ones first.
+     * @return the vector.
+     */
+    BigInteger[] vector(int row) {
+        return basis[row].clone();
+    }
+
+    /**
+     * Splits a number of close vectors between the vectors of the basis, as in the nearest planes algorithm
+     * of R. Lindner and C. Peikert, Better Key Sizes (and Attacks) for LWE-Based Encryption: the number
+     * of planes tried for a vector is higher where its orthogonal vector is shorter.
+     *
+     * @param count the maximum number of close vectors.
+     * @return the number of planes tried for each vector of the basis.
+     */
+    int[] branches(long count) {
+        final int n = basis.length;
+        final int[] branches = new int[n];
+        Arrays.fill(branches, 1);
+        long product = 1;
+        while (true) {
+            int next = 0;
+            for (int i = 1; i < n; i++) {
+                if (branches[i] * branches[i] * orthogonalNorms[i]
+                        < branches[next] * branches[next] * orthogonalNorms[next]) {
+                    next = i;
+                }
+            }
+            if (product / branches[next] * (branches[next] + 1) > count) {
+                return branches;
+            }
+            product = product / branches[next] * (branches[next] + 1);
+            branches[next]++;
+        }
+    }
+
+    /**
+     * The nearest planes algorithm, Babai's nearest plane algorithm which tries more than one of the
+     * closest planes for each vector of the basis. With one plane for each vector it is Babai's algorithm.
+     *
+     * @param target   the target vector.
+     * @param branches the number of planes tried for each vector of the basis.
+     * @param consumer receives the coefficients, in the reduced basis, of the lattice vectors close to the target,
+     *                 the closest ones first, and returns {@code true} to stop.
+     * @return {@code true} if the consumer stopped the search.
+     */
+    boolean closeVectors(double[] target, int[] branches, Predicate<long[]> consumer) {
+        final int n = basis.length;
+        final double[][] remainders = new double[n + 1][];
+        remainders[n] = target;
+        for (int i = 0; i < n; i++) {
+            remainders[i] = new double[target.length];
+        }
+        return nearestPlanes(n - 1, remainders, branches, new long[n], consumer);
+    }
+
+    private boolean nearestPlanes(int i, double[][] remainders, int[] branches, long[] coefficients,
+                                  Predicate<long[]> consumer) {
+        if (i < 0) {
+            return consumer.test(coefficients);
+        }
+        final double[] remainder = remainders[i + 1];
+        final double[] next = remainders[i];
+        final double[] vector = doubleBasis[i];
+        final double projection = dot(remainder, orthogonal[i]) / orthogonalNorms[i];
+        final double closest = Math.rint(projection);
+        final int direction = projection >= closest ? 1 : -1;
+        for (int k = 0; k < branches[i]; k++) {
+            // closest, then alternating around it: c, c + 1, c - 1, c + 2, ...
+            final double c = closest + ((k & 1) == 0 ? -direction : direction) * ((k + 1) >> 1);
+            coefficients[i] = (long) c;
+            for (int j = 0; j < next.length; j++) {
+                next[j] = remainder[j] - c * vector[j];
+            }
+            if (nearestPlanes(i - 1, remainders, branches, coefficients, consumer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reduces a basis with the integral LLL algorithm.
+     *
+     * @param rows the rows of the basis, which are not changed.
+     * @return the reduced basis.
+     */
+    static BigInteger[][] reduce(BigInteger[][] rows) {
+        final int n = rows.length;
+        final BigInteger[][] b = new BigInteger[n][];
+        for (int i = 0; i < n; i++) {
+            b[i] = rows[i].clone();
+        }
+        // d[i + 1] is the Gram determinant of the first i + 1 vectors, d[0] = 1,
+        // lambda[i][j] = d[j + 1] * mu[i][j]
+        final BigInteger[] d = new BigInteger[n + 1];
+        final BigInteger[][] lambda = new BigInteger[n][n];
+        d[0] = BigInteger.ONE;
+        d[1] = dot(b[0], b[0]);
+        int k = 1;
+        int kMax = 0;
+        while (k < n) {
+            if (k > kMax) {
+                kMax = k;
+                for (int j = 0; j <= k; j++) {
+                    BigInteger u = dot(b[k], b[j]);
+                    for (int i = 0; i < j; i++) {
+                        u = d[i + 1].multiply(u).subtract(lambda[k][i].multiply(lambda[j][i])).divide(d[i]);
+                    }
+                    if (j < k) {
+                        lambda[k][j] = u;
+                    } else {
+                        if (u.signum() == 0) {
+                            throw new IllegalArgumentException("The vectors are linearly dependent");
+                        }
+                        d[k + 1] = u;
+                    }
+                }
+            }
+            sizeReduce(b, d, lambda, k, k - 1);
+            // Lovasz condition: d[k + 1] * d[k - 1] >= (delta * d[k]^2 - lambda[k][k - 1]^2)
+            final BigInteger left = DELTA_DENOMINATOR.multiply(d[k + 1]).multiply(d[k - 1]);
+            final BigInteger right = DELTA_NUMERATOR.multiply(d[k].multiply(d[k]))
+                    .subtract(DELTA_DENOMINATOR.multiply(lambda[k][k - 1].multiply(lambda[k][k - 1])));
+            if (left.compareTo(right) < 0) {
+                swap(b, d, lambda, k, kMax);
+                k = Math.max(1, k - 1);
+            } else {
+                for (int l = k - 2; l >= 0; l--) {
+                    sizeReduce(b, d, lambda, k, l);
+                }
+                k++;
+            }
+        }
+        return b;
+    }
+
+    private static void sizeReduce(BigInteger[][] b, BigInteger[] d, BigInteger[][] lambda, int k, int l) {
+        final BigInteger twice = lambda[k][l].shiftLeft(1);
+        if (twice.abs().compareTo(d[l + 1]) <= 0) {
+            return;
+        }
+        // q = round(lambda[k][l] / d[l + 1])
+        final BigInteger denominator = d[l + 1].shiftLeft(1);
+        final BigInteger q = floorDiv(twice.add(d[l + 1]), denominator);
+        for (int c = 0; c < b[k].length; c++) {
+            b[k][c] = b[k][c].subtract(q.multiply(b[l][c]));
+        }
+        lambda[k][l] = lambda[k][l].subtract(q.multiply(d[l + 1]));
+        for (int i = 0; i < l; i++) {
+            lambda[k][i] = lambda[k][i].subtract(q.multiply(lambda[l][i]));
+        }
+    }
+
+    private static void swap(BigInteger[][] b, BigInteger[] d, BigInteger[][] lambda, int k, int kMax) {
+        final BigInteger[] vector = b[k];
+        b[k] = b[k - 1];
+        b[k - 1] = vector;
+        for (int j = 0; j < k - 1; j++) {
+            final BigInteger t = lambda[k][j];
+            lambda[k][j] = lambda[k - 1][j];
+            lambda[k - 1][j] = t;
+        }
+        final BigInteger l = lambda[k][k - 1];
+        final BigInteger newD = d[k - 1].multiply(d[k + 1]).add(l.multiply(l)).divide(d[k]);
+        for (int i = k + 1; i <= kMax; i++) {
+            final BigInteger t = lambda[i][k];
+            lambda[i][k] = d[k + 1].multiply(lambda[i][k - 1]).subtract(l.multiply(t)).divide(d[k]);
+            lambda[i][k - 1] = newD.multiply(t).add(l.multiply(lambda[i][k])).divide(d[k + 1]);
+        }
+        d[k] = newD;
+    }
+
+    private static BigInteger floorDiv(BigInteger a, BigInteger b) {
+        final BigInteger[] qr = a.divideAndRemainder(b);
+        return qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0];
+    }
+
+    private static BigInteger dot(BigInteger[] a, BigInteger[] b) {
+        BigInteger result = BigInteger.ZERO;
+        for (int i = 0; i < a.length; i++) {
+            result = result.add(a[i].multiply(b[i]));
+        }
+        return result;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double result = 0;
+        for (int i = 0; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    private static double[] toDoubles(BigInteger[] vector) {
+        final double[] result = new double[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i].doubleValue();
+        }
+        return result;
+    }
+}
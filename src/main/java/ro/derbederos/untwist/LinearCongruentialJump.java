@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+/**
+ * Jumps the state of a linear congruential generator {@code x -> (a * x + c) mod 2^k}
+ * ahead or back by any number of steps in {@code O(log n)} operations.
+ * <p>
+ * Composing the step with itself gives again an affine map, {@code x -> (a^2 * x + (a + 1) * c) mod 2^k},
+ * so {@code n} steps are computed by square and multiply over the binary digits of {@code n}.
+ * The arithmetic is done modulo {@code 2^64}, the result being reduced at the end.
+ * <p>
+ * Reference: F. B. Brown, Random Number Generation with Arbitrary Strides,
+ * Transactions of the American Nuclear Society, 1994.
+ */
+final class LinearCongruentialJump {
+
+    private LinearCongruentialJump() {
+    }
+
+    /**
+     * Computes the state of the generator {@code n} steps away, the steps being backwards when
+     * {@code n} is negative.
+     *
+     * @param state             the current state.
+     * @param multiplier        the multiplier {@code a}.
+     * @param inverseMultiplier the inverse of {@code a} modulo {@code 2^k}, used by the backward steps.
+     * @param addend            the addend {@code c}.
+     * @param mask              {@code 2^k - 1}.
+     * @param n                 the number of steps, it can be negative.
+     * @return the state after the steps.
+     */
+    static long skip(long state, long multiplier, long inverseMultiplier, long addend, long mask, long n) {
+        if (n >= 0) {
+            return skip(state, multiplier, addend, n) & mask;
+        }
+        // the backward step is x -> (x - c) * a^-1, and -n is read as an unsigned value
+        return skip(state, inverseMultiplier, -addend * inverseMultiplier, -n) & mask;
+    }
+
+    private static long skip(long state, long multiplier, long addend, long n) {
+        long accMultiplier = 1;
+        long accAddend = 0;
+        for (; n != 0; n >>>= 1) {
+            if ((n & 1) != 0) {
+                accMultiplier *= multiplier;
+                accAddend = accAddend * multiplier + addend;
+            }
+            addend *= multiplier + 1;
+            multiplier *= multiplier;
+        }
+        return accMultiplier * state + accAddend;
+    }
+
+    /**
+     * Computes the number of steps from a state to another, for a generator of full period {@code 2^bits},
+     * which is the case when {@code a mod 4 == 1} and {@code c} is odd.
+     * <p>
+     * The lowest {@code j} bits of the states have a period of {@code 2^j}, so the {@code 2^j} steps
+     * keep the lowest {@code j} bits and flip the bit {@code j}. The distance is found one bit at a time.
+     *
+     * @param from       the first state.
+     * @param to         the second state.
+     * @param multiplier the multiplier {@code a}.
+     * @param addend     the addend {@code c}.
+     * @param bits       the number of bits {@code k} of the state.
+     * @return the number of steps, between {@code 0} and {@code 2^bits - 1}.
+     */
+    static long distance(long from, long to, long multiplier, long addend, int bits) {
+        long n = 0;
+        long state = from;
+        for (int j = 0; j < bits; j++) {
+            final long bit = 1L << j;
+            if (((state ^ to) & bit) != 0) {
+                state = multiplier * state + addend;
+                n |= bit;
+            }
+            addend *= multiplier + 1;
+            multiplier *= multiplier;
+        }
+        return n;
+    }
+}
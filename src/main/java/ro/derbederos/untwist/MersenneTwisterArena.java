@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Off heap storage for the states of many Mersenne Twister generators.
+ * <p>
+ * Each state lives in a slot of a direct {@link ByteBuffer}, instead of a {@code int[624]} array of a
+ * {@link ReversibleMersenneTwister} instance, so millions of states do not put pressure on the garbage collector.
+ * The slots are used through {@link OffHeapMersenneTwister} views, a single view can move between any number
+ * of slots.
+ * <p>
+ * The buffers are allocated in pages of 1024 slots, when needed. The freed slots
+ * are reused by the next allocations, but the pages are released only with the arena.
+ * <p>
+ * Allocating and freeing slots is thread safe. A slot must not be used by more than one thread at a time.
+ */
+public final class MersenneTwisterArena {
+
+    /**
+     * Number of ints of a slot, {@code mti} followed by the {@code mt} array.
+     */
+    static final int SLOT_INTS = MersenneTwisterEngine.N + 1;
+
+    static final int SLOTS_PER_PAGE = 1024;
+
+    private volatile IntBuffer[] pages = new IntBuffer[0];
+
+    /**
+     * One bit per slot, set when the slot is allocated. It is changed under the lock of the arena, and it is
+     * replaced by a longer copy with each new page, so {@link #checkSlot(int)} can read it without the lock.
+     */
+    private volatile AtomicLongArray allocated = new AtomicLongArray(0);
+
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    /**
+     * Creates an empty arena, the pages are allocated with the slots.
+     */
+    public MersenneTwisterArena() {
+    }
+
+    /**
+     * Allocates a slot. The state of the slot is not defined until a generator is seeded
+     * or copied into it through a view.
+     *
+     * @return the slot.
+     */
+    public synchronized int allocate() {
+        final int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount++;
+            if (slot / SLOTS_PER_PAGE >= pages.length) {
+                addPage();
+            }
+        }
+        final AtomicLongArray allocated = this.allocated;
+        allocated.set(slot >>> 6, allocated.get(slot >>> 6) | (1L << slot));
+        return slot;
+    }
+
+    /**
+     * Frees a slot, which can be returned by a later call of {@link #allocate()}.
+     *
+     * @param slot the slot to free.
+     * @throws IllegalArgumentException if the slot is not allocated.
+     */
+    public synchronized void free(int slot) {
+        checkSlot(slot);
+        final AtomicLongArray allocated = this.allocated;
+        allocated.set(slot >>> 6, allocated.get(slot >>> 6) & ~(1L << slot));
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, 2 * freeCount);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * @return the number of allocated slots.
+     */
+    public synchronized int size() {
+        return slotCount - freeCount;
+    }
+
+    /**
+     * @return the number of bytes held by the arena off heap.
+     */
+    public long offHeapBytes() {
+        return (long) pages.length * SLOTS_PER_PAGE * SLOT_INTS * Integer.BYTES;
+    }
+
+    /**
+     * Creates a new view over the slots of this arena.
+     *
+     * @param slot the slot used by the view.
+     * @return the view.
+     * @throws IllegalArgumentException if the slot is not allocated.
+     */
+    public OffHeapMersenneTwister view(int slot) {
+        checkSlot(slot);
+        return new OffHeapMersenneTwister(this, slot);
+    }
+
+    /**
+     * @param slot a slot.
+     * @return the buffer which holds the slot, starting at {@link #offset(int)}.
+     * @throws IllegalArgumentException if the slot was never allocated.
+     */
+    IntBuffer page(int slot) {
+        final IntBuffer[] pages = this.pages;
+        if (slot < 0 || slot / SLOTS_PER_PAGE >= pages.length) {
+            throw new IllegalArgumentException("The slot " + slot + " is not allocated");
+        }
+        return pages[slot / SLOTS_PER_PAGE];
+    }
+
+    /**
+     * @param slot an allocated slot.
+     * @return the index of the first int of the slot in {@link #page(int)}.
+     */
+    static int offset(int slot) {
+        return (slot % SLOTS_PER_PAGE) * SLOT_INTS;
+    }
+
+    /**
+     * Checks the slot without taking the lock of the arena, as it runs with each {@link
+     * OffHeapMersenneTwister#moveTo(int)}.
+     *
+     * @param slot a slot.
+     * @throws IllegalArgumentException if the slot is not allocated.
+     */
+    void checkSlot(int slot) {
+        final AtomicLongArray allocated = this.allocated;
+        if (slot < 0 || slot >>> 6 >= allocated.length() || (allocated.get(slot >>> 6) & (1L << slot)) == 0) {
+            throw new IllegalArgumentException("The slot " + slot + " is not allocated");
+        }
+    }
+
+    private void addPage() {
+        final IntBuffer page = ByteBuffer.allocateDirect(SLOTS_PER_PAGE * SLOT_INTS * Integer.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+        final IntBuffer[] newPages = Arrays.copyOf(pages, pages.length + 1);
+        newPages[pages.length] = page;
+        pages = newPages;
+        final AtomicLongArray newAllocated = new AtomicLongArray(newPages.length * (SLOTS_PER_PAGE / Long.SIZE));
+        for (int i = 0; i < allocated.length(); i++) {
+            newAllocated.set(i, allocated.get(i));
+        }
+        allocated = newAllocated;
+    }
+}
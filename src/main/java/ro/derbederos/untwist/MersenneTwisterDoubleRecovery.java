@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import static ro.derbederos.untwist.MersenneTwisterEngine.M;
+import static ro.derbederos.untwist.MersenneTwisterEngine.MATRIX_A;
+import static ro.derbederos.untwist.MersenneTwisterEngine.N;
+
+/**
+ * Recovers the outputs of a Mersenne Twister out of consecutive values of Python's {@code random.random()},
+ * as a linear system over GF(2).
+ * <p>
+ * A double is made of the 27 high bits of a 32 bit output and the 26 high bits of the next one, so the
+ * first 624 outputs are known except for their 5 or 6 low bits, 3432 unknown bits in all. The tempering,
+ * the twist and their inverses are linear, so each bit of the later outputs, and of the previous words
+ * implied by the first 624, is a linear function of the unknown bits. The equations are solved by Gaussian
+ * elimination, one at a time, with the unknown bits packed in {@code long}s.
+ */
+final class MersenneTwisterDoubleRecovery {
+
+    /**
+     * The number of high bits of the even and odd outputs kept in a double.
+     */
+    private static final int EVEN_KNOWN_BITS = 27;
+    private static final int ODD_KNOWN_BITS = 26;
+
+    private static final int VARIABLES = N / 2 * (Integer.SIZE - EVEN_KNOWN_BITS)
+            + N / 2 * (Integer.SIZE - ODD_KNOWN_BITS);
+    /**
+     * The longs of a linear form: the coefficients of the unknown bits, then the constant term.
+     */
+    private static final int WIDTH = VARIABLES / Long.SIZE + 1;
+    private static final long LAST_VARIABLES_MASK = (1L << (VARIABLES % Long.SIZE)) - 1;
+
+    /**
+     * Bit {@code j} of {@code TEMPER_ROWS[i]} is set if the bit {@code j} of a word is in the bit {@code i}
+     * of the tempered word, and the same for {@code UNTEMPER_ROWS}.
+     */
+    private static final int[] TEMPER_ROWS = rows(true);
+    private static final int[] UNTEMPER_ROWS = rows(false);
+
+    private final long[][] pivots = new long[VARIABLES][];
+    private int rank;
+
+    private MersenneTwisterDoubleRecovery() {
+    }
+
+    /**
+     * @param doubles consecutive values of {@code random.random()}.
+     * @return the 624 outputs of {@code getrandbits(32)} which the first 312 doubles are made of.
+     * @throws IllegalArgumentException if the doubles are not values of {@code random.random()}, do not determine
+     *                                  the outputs, or could not have been generated by a Mersenne Twister.
+     */
+    static int[] recoverOutputs(double[] doubles) {
+        final int[] high = new int[2 * doubles.length];
+        for (int i = 0; i < doubles.length; i++) {
+            final double value = doubles[i] * 0x1.0p53;
+            if (!(value >= 0 && value < 0x1.0p53) || value != Math.rint(value)) {
+                throw new IllegalArgumentException("The value at index " + i + " is not a double of random(): "
+                        + doubles[i]);
+            }
+            final long bits = (long) value;
+            high[2 * i] = (int) (bits >>> ODD_KNOWN_BITS);
+            high[2 * i + 1] = (int) bits & ((1 << ODD_KNOWN_BITS) - 1);
+        }
+        if (high.length < N) {
+            throw new IllegalArgumentException("At least " + N / 2 + " doubles are needed, but got " + doubles.length);
+        }
+        return new MersenneTwisterDoubleRecovery().solve(high);
+    }
+
+    private int[] solve(int[] high) {
+        // the words of the last 624 outputs, before the tempering, as linear forms of the unknown bits
+        final long[][][] words = new long[N][][];
+        int variable = 0;
+        for (int k = 0; k < N; k++) {
+            final int unknown = Integer.SIZE - knownBits(k);
+            final long[][] tempered = new long[Integer.SIZE][];
+            for (int i = 0; i < Integer.SIZE; i++) {
+                tempered[i] = new long[WIDTH];
+                if (i < unknown) {
+                    setBit(tempered[i], variable++);
+                } else if ((high[k] >>> (i - unknown) & 1) != 0) {
+                    setBit(tempered[i], VARIABLES);
+                }
+            }
+            words[k] = combine(tempered, UNTEMPER_ROWS);
+        }
+        // the word before the first one is twisted with the low bits of the first word into the last one
+        final long[][] implied = xor(words[N - 1], words[M - 1]);
+        addEquation(xor(words[0][0], implied[Integer.SIZE - 1]));
+        for (int j = 0; j < Integer.SIZE - 2; j++) {
+            final long[] equation = xor(words[0][j + 1], implied[j]);
+            if ((MATRIX_A >>> j & 1) != 0) {
+                xorInto(equation, implied[Integer.SIZE - 1]);
+            }
+            addEquation(equation);
+        }
+        for (int k = N; k < high.length && rank < VARIABLES; k++) {
+            final long[][] word = xor(words[(k + M) % N], twist(words[k % N], words[(k + 1) % N]));
+            words[k % N] = word;
+            final int known = knownBits(k);
+            for (int i = Integer.SIZE - known; i < Integer.SIZE; i++) {
+                final long[] equation = combine(word, TEMPER_ROWS[i]);
+                if ((high[k] >>> (i - Integer.SIZE + known) & 1) != 0) {
+                    equation[WIDTH - 1] ^= 1L << (VARIABLES % Long.SIZE);
+                }
+                addEquation(equation);
+            }
+        }
+        if (rank < VARIABLES) {
+            throw new IllegalArgumentException("The doubles do not determine the state, more of them are needed");
+        }
+        final long[] solution = backSubstitute();
+        final int[] outputs = new int[N];
+        variable = 0;
+        for (int k = 0; k < N; k++) {
+            final int unknown = Integer.SIZE - knownBits(k);
+            int low = 0;
+            for (int i = 0; i < unknown; i++, variable++) {
+                low |= ((int) (solution[variable / Long.SIZE] >>> variable) & 1) << i;
+            }
+            outputs[k] = high[k] << unknown | low;
+        }
+        return outputs;
+    }
+
+    /**
+     * Reduces an equation {@code form = 0} by the previous ones, and keeps it if it is independent of them.
+     */
+    private void addEquation(long[] form) {
+        for (int w = 0; w < WIDTH; w++) {
+            long bits;
+            while ((bits = form[w] & variablesMask(w)) != 0) {
+                final int column = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                final long[] pivot = pivots[column];
+                if (pivot == null) {
+                    pivots[column] = form;
+                    rank++;
+                    return;
+                }
+                for (int i = w; i < WIDTH; i++) {
+                    form[i] ^= pivot[i];
+                }
+            }
+        }
+        if (form[WIDTH - 1] != 0) {
+            throw new IllegalArgumentException("The doubles could not have been generated by a Mersenne Twister");
+        }
+    }
+
+    /**
+     * @return the unknown bits, out of the equations of full rank, each pivot being the lowest bit of its equation.
+     */
+    private long[] backSubstitute() {
+        final long[] solution = new long[WIDTH];
+        for (int column = VARIABLES - 1; column >= 0; column--) {
+            final long[] pivot = pivots[column];
+            long parity = pivot[WIDTH - 1] >>> (VARIABLES % Long.SIZE);
+            for (int w = 0; w < WIDTH; w++) {
+                parity ^= Long.bitCount(pivot[w] & solution[w]);
+            }
+            if ((parity & 1) != 0) {
+                setBit(solution, column);
+            }
+        }
+        return solution;
+    }
+
+    private static long variablesMask(int w) {
+        return w < WIDTH - 1 ? -1L : LAST_VARIABLES_MASK;
+    }
+
+    private static int knownBits(int k) {
+        return (k & 1) == 0 ? EVEN_KNOWN_BITS : ODD_KNOWN_BITS;
+    }
+
+    /**
+     * Same as {@link MersenneTwisterEngine#twistWord(int, int)} on linear forms.
+     */
+    private static long[][] twist(long[][] u, long[][] v) {
+        final long[][] result = new long[Integer.SIZE][];
+        final long[] low = v[0];
+        for (int j = 0; j < Integer.SIZE - 1; j++) {
+            // bit j + 1 of (u & UPPER_MASK) | (v & LOWER_MASK)
+            result[j] = (j + 1 == Integer.SIZE - 1 ? u[j + 1] : v[j + 1]).clone();
+            if ((MATRIX_A >>> j & 1) != 0) {
+                xorInto(result[j], low);
+            }
+        }
+        result[Integer.SIZE - 1] = (MATRIX_A >>> (Integer.SIZE - 1) & 1) != 0 ? low.clone() : new long[WIDTH];
+        return result;
+    }
+
+    private static long[][] combine(long[][] word, int[] rows) {
+        final long[][] result = new long[Integer.SIZE][];
+        for (int i = 0; i < Integer.SIZE; i++) {
+            result[i] = combine(word, rows[i]);
+        }
+        return result;
+    }
+
+    private static long[] combine(long[][] word, int row) {
+        final long[] result = new long[WIDTH];
+        for (int j = 0; j < Integer.SIZE; j++) {
+            if ((row >>> j & 1) != 0) {
+                xorInto(result, word[j]);
+            }
+        }
+        return result;
+    }
+
+    private static long[][] xor(long[][] a, long[][] b) {
+        final long[][] result = new long[Integer.SIZE][];
+        for (int i = 0; i < Integer.SIZE; i++) {
+            result[i] = xor(a[i], b[i]);
+        }
+        return result;
+    }
+
+    private static long[] xor(long[] a, long[] b) {
+        final long[] result = a.clone();
+        xorInto(result, b);
+        return result;
+    }
+
+    private static void xorInto(long[] a, long[] b) {
+        for (int i = 0; i < WIDTH; i++) {
+            a[i] ^= b[i];
+        }
+    }
+
+    private static void setBit(long[] form, int bit) {
+        form[bit / Long.SIZE] |= 1L << bit;
+    }
+
+    private static int[] rows(boolean temper) {
+        final int[] rows = new int[Integer.SIZE];
+        for (int j = 0; j < Integer.SIZE; j++) {
+            final int column = temper
+                    ? MersenneTwisterEngine.temper(1 << j)
+                    : ReversibleMersenneTwister.untemper(1 << j);
+            for (int i = 0; i < Integer.SIZE; i++) {
+                if ((column >>> i & 1) != 0) {
+                    rows[i] |= 1 << j;
+                }
+            }
+        }
+        return rows;
+    }
+}
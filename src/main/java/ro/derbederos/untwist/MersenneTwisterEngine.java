@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.nio.IntBuffer;
+
+/**
+ * The block operations of the Mersenne Twister over the whole {@code mt} array:
+ * {@code twist}, {@code untwist} and {@code temper}.
+ * <p>
+ * This is the scalar implementation, the one used by default. The Java 17+ part of the
+ * multi-release jar contains a subclass which uses the Vector API. It is picked by
+ * {@link MersenneTwisterEngines#create()} when the {@code jdk.incubator.vector} module
+ * is available (e.g. {@code --add-modules jdk.incubator.vector}).
+ */
+class MersenneTwisterEngine {
+
+    /**
+     * Size of the bytes pool.
+     */
+    static final int N = 624;
+
+    /**
+     * Period second parameter.
+     */
+    static final int M = 397;
+
+    /**
+     * Constant vector a.
+     */
+    static final int MATRIX_A = 0x9908B0DF;
+
+    /**
+     * Most significant w-r bits.
+     */
+    static final int UPPER_MASK = 0x80000000;
+
+    /**
+     * Least significant r bits.
+     */
+    static final int LOWER_MASK = 0x7FFFFFFF;
+
+    /**
+     * Tempering bitmask b.
+     */
+    static final int TEMPERING_MASK_B = 0x9D2C5680;
+
+    /**
+     * Tempering bitmask c.
+     */
+    static final int TEMPERING_MASK_C = 0xEFC60000;
+
+    private static final MersenneTwisterEngine INSTANCE = MersenneTwisterEngines.create();
+
+    /**
+     * @return the engine used by all the Mersenne Twister generators.
+     */
+    static MersenneTwisterEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Part of the <a href="http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/MT2002/CODES/mt19937ar.c">original code</a>.
+     * The block of code which computes the next {@code mt} array from the original method {@code genrand_int32}.
+     * <p>
+     * Like the original code, the loop is split in three index ranges so no modulo is needed when
+     * accessing the neighbours of {@code mt[i]}.
+     *
+     * @param mt the state array to twist in place.
+     */
+    void twist(int[] mt) {
+        int kk;
+        for (kk = 0; kk < N - M; kk++) {
+            mt[kk] = mt[kk + M] ^ twistWord(mt[kk], mt[kk + 1]);
+        }
+        for (; kk < N - 1; kk++) {
+            mt[kk] = mt[kk + (M - N)] ^ twistWord(mt[kk], mt[kk + 1]);
+        }
+        mt[N - 1] = mt[M - 1] ^ twistWord(mt[N - 1], mt[0]);
+    }
+
+    /**
+     * The reverse of {@link #twist(int[])} method.
+     * <p>
+     * Source code:
+     * <a href="https://jazzy.id.au/2010/09/25/cracking_random_number_generators_part_4.html">Cracking Random Number Generators - Part 4</a>
+     * <a href="https://jazzy.id.au/2010/09/22/cracking_random_number_generators_part_3.html">Cracking Random Number Generators - Part 3</a>
+     *
+     * @param mt the state array to untwist in place.
+     */
+    void untwist(int[] mt) {
+        // same three index ranges as in twist, walked backwards
+        int i;
+        for (i = N - 1; i > N - M; i--) {
+            mt[i] = untwistWord(mt[i] ^ mt[i + (M - N)], mt[i - 1] ^ mt[i + (M - N) - 1]);
+        }
+        mt[N - M] = untwistWord(mt[N - M] ^ mt[0], mt[N - M - 1] ^ mt[N - 1]);
+        for (i = N - M - 1; i > 0; i--) {
+            mt[i] = untwistWord(mt[i] ^ mt[i + M], mt[i - 1] ^ mt[i + M - 1]);
+        }
+        mt[0] = untwistWord(mt[0] ^ mt[M], mt[N - 1] ^ mt[M - 1]);
+    }
+
+    /**
+     * Same as {@link #twist(int[])}, on an {@code mt} array which starts at the index {@code base} of a buffer,
+     * with absolute gets and puts, so the array is twisted in place, without copying it on heap.
+     *
+     * @param mt   the buffer which holds the state array.
+     * @param base the index of {@code mt[0]} in the buffer.
+     */
+    static void twist(IntBuffer mt, int base) {
+        int kk;
+        for (kk = base; kk < base + N - M; kk++) {
+            mt.put(kk, mt.get(kk + M) ^ twistWord(mt.get(kk), mt.get(kk + 1)));
+        }
+        for (; kk < base + N - 1; kk++) {
+            mt.put(kk, mt.get(kk + (M - N)) ^ twistWord(mt.get(kk), mt.get(kk + 1)));
+        }
+        mt.put(kk, mt.get(base + M - 1) ^ twistWord(mt.get(kk), mt.get(base)));
+    }
+
+    /**
+     * Same as {@link #untwist(int[])}, on an {@code mt} array which starts at the index {@code base} of a
+     * buffer.
+     *
+     * @param mt   the buffer which holds the state array.
+     * @param base the index of {@code mt[0]} in the buffer.
+     * @see #twist(IntBuffer, int)
+     */
+    static void untwist(IntBuffer mt, int base) {
+        int i;
+        for (i = base + N - 1; i > base + N - M; i--) {
+            mt.put(i, untwistWord(mt.get(i) ^ mt.get(i + (M - N)), mt.get(i - 1) ^ mt.get(i + (M - N) - 1)));
+        }
+        mt.put(i, untwistWord(mt.get(i) ^ mt.get(base), mt.get(i - 1) ^ mt.get(base + N - 1)));
+        for (i--; i > base; i--) {
+            mt.put(i, untwistWord(mt.get(i) ^ mt.get(i + M), mt.get(i - 1) ^ mt.get(i + M - 1)));
+        }
+        mt.put(base, untwistWord(mt.get(base) ^ mt.get(base + M), mt.get(base + N - 1) ^ mt.get(base + M - 1)));
+    }
+
+    /**
+     * Tempers {@code len} consecutive values of {@code src} into {@code dst}.
+     *
+     * @param src    the state array.
+     * @param srcPos the index of the first value to temper.
+     * @param dst    the array which receives the tempered values.
+     * @param dstPos the index of the first tempered value in {@code dst}.
+     * @param len    the number of values to temper.
+     */
+    void temper(int[] src, int srcPos, int[] dst, int dstPos, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dstPos + i] = temper(src[srcPos + i]);
+        }
+    }
+
+    /**
+     * Mixes the upper bit of {@code u} with the lower bits of {@code v} and multiplies the result by the matrix A.
+     * The multiplication is done without the {@code mag01} table lookup from the original code,
+     * the {@code MATRIX_A} mask is computed out of the lowest bit of {@code v}.
+     *
+     * @param u the word which provides the upper bit.
+     * @param v the word which provides the lower bits.
+     * @return the twisted value, which has to be xor-ed with {@code mt[i + M]}.
+     */
+    static int twistWord(int u, int v) {
+        final int y = (u & UPPER_MASK) | (v & LOWER_MASK);
+        return (y >>> 1) ^ (-(y & 0x1) & MATRIX_A);
+    }
+
+    /**
+     * Recovers a single word of the previous {@code mt} array.
+     * <p>
+     * Instead of branching on the first bit like in the reference code, the {@code MATRIX_A} mask
+     * is obtained through an arithmetic shift of the sign bit.
+     *
+     * @param upper {@code mt[i] ^ mt[i + M]}, which gives the first bit of the result.
+     * @param lower {@code mt[i - 1] ^ mt[i + M - 1]}, which gives the remaining 31 bits of the result.
+     * @return the previous value of {@code mt[i]}.
+     */
+    static int untwistWord(int upper, int lower) {
+        // if the first bit is odd, unapply magic
+        upper ^= (upper >> 31) & MATRIX_A;
+        // since it was odd, the last bit must have been 1
+        final int lastBit = lower >>> 31;
+        lower ^= (lower >> 31) & MATRIX_A;
+        // the second bit of upper is the first bit of the result,
+        // the final 30 bits come from lower
+        return ((upper << 1) & UPPER_MASK) | ((lower << 1) & LOWER_MASK) | lastBit;
+    }
+
+    /**
+     * Twists the single word {@code mt[i]}, with the indices taken circularly. Twisting the words
+     * {@code 0..N-1} in this order is the same as {@link #twist(int[])}.
+     *
+     * @param mt the state array.
+     * @param i  the index of the word to twist.
+     */
+    static void twistAt(int[] mt, int i) {
+        final int i1 = i + 1 == N ? 0 : i + 1;
+        final int im = i + M >= N ? i + M - N : i + M;
+        mt[i] = mt[im] ^ twistWord(mt[i], mt[i1]);
+    }
+
+    /**
+     * The reverse of {@link #twistAt(int[], int)}. Untwisting the words {@code N-1..0} in this order
+     * is the same as {@link #untwist(int[])}.
+     *
+     * @param mt the state array.
+     * @param i  the index of the word to untwist.
+     */
+    static void untwistAt(int[] mt, int i) {
+        final int ip = i == 0 ? N - 1 : i - 1;
+        final int im = i + M >= N ? i + M - N : i + M;
+        final int imp = im == 0 ? N - 1 : im - 1;
+        mt[i] = untwistWord(mt[i] ^ mt[im], mt[ip] ^ mt[imp]);
+    }
+
+    /**
+     * Part of the <a href="http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/MT2002/CODES/mt19937ar.c">original code</a>.
+     * The tempering part from the original method {@code genrand_int32}.
+     *
+     * @param y the value to temper.
+     * @return The tempered value.
+     */
+    static int temper(int y) {
+        y ^= (y >>> 11);
+        y ^= (y << 7) & TEMPERING_MASK_B;
+        y ^= (y << 15) & TEMPERING_MASK_C;
+        y ^= (y >>> 18);
+        return y;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+/**
+ * Chooses the {@link MersenneTwisterEngine} implementation.
+ * <p>
+ * This version is the one for Java 8 up to Java 16 and always returns the scalar engine.
+ * The Java 17+ version of this class, from {@code META-INF/versions/17}, returns
+ * the vectorized engine when the {@code jdk.incubator.vector} module is available.
+ */
+final class MersenneTwisterEngines {
+
+    private MersenneTwisterEngines() {
+    }
+
+    static MersenneTwisterEngine create() {
+        return new MersenneTwisterEngine();
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static ro.derbederos.untwist.MersenneTwisterEngine.M;
+import static ro.derbederos.untwist.MersenneTwisterEngine.N;
+import static ro.derbederos.untwist.MersenneTwisterEngine.twistWord;
+
+/**
+ * Jumps the state of the Mersenne Twister ahead or back by a number of {@code mt} blocks
+ * in {@code O(log n)} polynomial operations.
+ * <p>
+ * The sequence of words produced by the generator satisfies a linear recurrence over GF(2)
+ * whose characteristic polynomial {@code phi} has degree 19937. Advancing by {@code d} words
+ * is the same as evaluating {@code g(T)} for {@code g(x) = x^d mod phi(x)}, where {@code T} is
+ * the one word transition of the generator.
+ * <p>
+ * The characteristic polynomial is computed once, using the Berlekamp-Massey algorithm over
+ * a bit of the generated words, and the jump polynomials are cached per distance.
+ * <p>
+ * Reference: H. Haramoto, M. Matsumoto, T. Nishimura, F. Panneton, P. L'Ecuyer,
+ * <a href="http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/JUMP/jump-ahead.pdf">Efficient
+ * Jump Ahead for F2-Linear Random Number Generators</a>, INFORMS Journal on Computing, 2008.
+ */
+final class MersenneTwisterJump {
+
+    /**
+     * The degree of the characteristic polynomial, {@code 32 * N - 31}.
+     */
+    static final int DEGREE = 19937;
+
+    /**
+     * Number of words of a polynomial of degree at most {@link #DEGREE}.
+     */
+    private static final int WORDS = (DEGREE >>> 6) + 1;
+
+    private static final int CACHE_SIZE = 64;
+
+    private static final MersenneTwisterJump INSTANCE = new MersenneTwisterJump();
+
+    /**
+     * The characteristic polynomial, bit {@code i} is the coefficient of {@code x^i}.
+     */
+    private final long[] phi;
+
+    /**
+     * {@code phi} shifted left by {@code 0..63} bits, used by the reduction.
+     */
+    private final long[][] shiftedPhi;
+
+    private final Map<Long, long[]> cache = new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private MersenneTwisterJump() {
+        phi = characteristicPolynomial();
+        shiftedPhi = new long[64][];
+        for (int s = 0; s < 64; s++) {
+            final long[] shifted = new long[WORDS + 1];
+            for (int i = 0; i < WORDS; i++) {
+                shifted[i] |= phi[i] << s;
+                if (s != 0) {
+                    shifted[i + 1] |= phi[i] >>> (64 - s);
+                }
+            }
+            shiftedPhi[s] = shifted;
+        }
+    }
+
+    static MersenneTwisterJump getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Replaces the {@code mt} block with the one found {@code blocks} twists away.
+     * The result is the same as calling {@code twist} {@code blocks} times, or {@code untwist}
+     * {@code -blocks} times when {@code blocks} is negative.
+     * <p>
+     * The {@code mt} block has to be a consistent one, like the ones obtained after {@code fixState},
+     * so that all its 32 bit words, including the first one, belong to the same sequence.
+     *
+     * @param mt     the state array to jump in place.
+     * @param blocks the number of blocks to jump over, it can be negative.
+     */
+    void jump(int[] mt, long blocks) {
+        if (blocks != 0) {
+            apply(jumpPolynomial(blocks), mt);
+        }
+    }
+
+    /**
+     * @param blocks the number of blocks.
+     * @return {@code x^(N * blocks) mod phi(x)}.
+     */
+    long[] jumpPolynomial(long blocks) {
+        synchronized (cache) {
+            final long[] cached = cache.get(blocks);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final long[] result = computeJumpPolynomial(blocks);
+        synchronized (cache) {
+            cache.put(blocks, result);
+        }
+        return result;
+    }
+
+    private long[] computeJumpPolynomial(long blocks) {
+        // the magnitude is treated as unsigned, so Long.MIN_VALUE works too
+        final long e = blocks < 0 ? -blocks : blocks;
+        final long[] result = new long[WORDS];
+        result[0] = 1;
+        final long[] square = new long[2 * WORDS + 1];
+        for (int bit = 63 - Long.numberOfLeadingZeros(e); bit >= 0; bit--) {
+            square(result, square);
+            if (((e >>> bit) & 1) != 0) {
+                for (int i = 0; i < N; i++) {
+                    if (blocks > 0) {
+                        multiplyByX(result);
+                    } else {
+                        divideByX(result);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes {@code g(T)} of the state, using the Horner scheme.
+     * The accumulator is kept as a circular buffer, so a transition costs a single word.
+     */
+    private static void apply(long[] g, int[] mt) {
+        final int[] r = new int[N];
+        int p = 0;
+        for (int i = degree(g); i >= 0; i--) {
+            // r = T(r)
+            final int p1 = p + 1 == N ? 0 : p + 1;
+            final int pm = p + M >= N ? p + M - N : p + M;
+            r[p] = r[pm] ^ twistWord(r[p], r[p1]);
+            p = p1;
+            if (((g[i >>> 6] >>> i) & 1) != 0) {
+                // r ^= state
+                for (int j = 0, k = p; j < N - p; j++, k++) {
+                    r[k] ^= mt[j];
+                }
+                for (int j = N - p, k = 0; j < N; j++, k++) {
+                    r[k] ^= mt[j];
+                }
+            }
+        }
+        System.arraycopy(r, p, mt, 0, N - p);
+        System.arraycopy(r, 0, mt, N - p, p);
+    }
+
+    private void multiplyByX(long[] a) {
+        for (int i = WORDS - 1; i > 0; i--) {
+            a[i] = (a[i] << 1) | (a[i - 1] >>> 63);
+        }
+        a[0] <<= 1;
+        if (((a[DEGREE >>> 6] >>> DEGREE) & 1) != 0) {
+            for (int i = 0; i < WORDS; i++) {
+                a[i] ^= phi[i];
+            }
+        }
+    }
+
+    private void divideByX(long[] a) {
+        // x^-1 = (phi(x) + 1) / x, as phi(0) = 1
+        if ((a[0] & 1) != 0) {
+            for (int i = 0; i < WORDS; i++) {
+                a[i] ^= phi[i];
+            }
+        }
+        for (int i = 0; i < WORDS - 1; i++) {
+            a[i] = (a[i] >>> 1) | (a[i + 1] << 63);
+        }
+        a[WORDS - 1] >>>= 1;
+    }
+
+    /**
+     * Squares {@code a} modulo {@code phi}, in place.
+     *
+     * @param a   the polynomial to square.
+     * @param tmp a buffer of at least {@code 2 * WORDS + 1} words.
+     */
+    private void square(long[] a, long[] tmp) {
+        // squaring in GF(2)[x] only spreads the bits
+        for (int i = 0; i < WORDS; i++) {
+            tmp[2 * i] = spread((int) a[i]);
+            tmp[2 * i + 1] = spread((int) (a[i] >>> 32));
+        }
+        tmp[2 * WORDS] = 0;
+        for (int i = 2 * DEGREE - 2; i >= DEGREE; i--) {
+            if (((tmp[i >>> 6] >>> i) & 1) != 0) {
+                final int k = i - DEGREE;
+                final long[] shifted = shiftedPhi[k & 63];
+                final int off = k >>> 6;
+                for (int j = 0; j <= WORDS; j++) {
+                    tmp[off + j] ^= shifted[j];
+                }
+            }
+        }
+        System.arraycopy(tmp, 0, a, 0, WORDS);
+    }
+
+    private static long spread(int v) {
+        long x = Integer.toUnsignedLong(v);
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    private static int degree(long[] a) {
+        for (int i = a.length - 1; i >= 0; i--) {
+            if (a[i] != 0) {
+                return 64 * i + 63 - Long.numberOfLeadingZeros(a[i]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the characteristic polynomial of the generator with the Berlekamp-Massey algorithm.
+     * The polynomial is irreducible, so the minimal polynomial of any non zero bit sequence
+     * generated by the recurrence is the characteristic polynomial itself.
+     */
+    private static long[] characteristicPolynomial() {
+        final int length = 2 * DEGREE;
+        // the least significant bit of the untempered words, stored in reverse order
+        final long[] reversed = new long[(length >>> 6) + 2];
+        final int[] mt = new int[N];
+        mt[0] = 5489;
+        for (int i = 1; i < N; i++) {
+            mt[i] = 1812433253 * (mt[i - 1] ^ (mt[i - 1] >>> 30)) + i;
+        }
+        final MersenneTwisterEngine engine = MersenneTwisterEngine.getInstance();
+        for (int i = 0; i < length; i++) {
+            if (i % N == 0) {
+                engine.twist(mt);
+            }
+            final int r = length - 1 - i;
+            reversed[r >>> 6] |= (long) (mt[i % N] & 1) << r;
+        }
+
+        final int words = WORDS + 1;
+        long[] c = new long[words];
+        long[] b = new long[words];
+        long[] t = new long[words];
+        c[0] = 1;
+        b[0] = 1;
+        int l = 0;
+        int m = 1;
+        for (int n = 0; n < length; n++) {
+            // discrepancy: s[n] + sum c[j] * s[n - j], j = 1..l
+            // s[n - j] is the bit at position (length - 1 - n + j) of reversed
+            final int off = length - 1 - n;
+            long d = 0;
+            for (int w = 0; w <= (l >>> 6); w++) {
+                d ^= c[w] & window(reversed, off + 64 * w);
+            }
+            if (Long.bitCount(d) % 2 == 0) {
+                m++;
+            } else if (2 * l <= n) {
+                System.arraycopy(c, 0, t, 0, words);
+                xorShifted(c, b, m);
+                l = n + 1 - l;
+                long[] tmp = b;
+                b = t;
+                t = tmp;
+                m = 1;
+            } else {
+                xorShifted(c, b, m);
+                m++;
+            }
+        }
+        if (l != DEGREE) {
+            throw new IllegalStateException("Unexpected degree of the characteristic polynomial: " + l);
+        }
+        // the characteristic polynomial is the reciprocal of the connection polynomial
+        final long[] result = new long[WORDS];
+        for (int i = 0; i <= DEGREE; i++) {
+            if (((c[i >>> 6] >>> i) & 1) != 0) {
+                final int j = DEGREE - i;
+                result[j >>> 6] |= 1L << j;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the 64 bits of {@code bits} starting at bit {@code from}.
+     */
+    private static long window(long[] bits, int from) {
+        final int w = from >>> 6;
+        final int s = from & 63;
+        if (w >= bits.length) {
+            return 0;
+        }
+        long result = bits[w] >>> s;
+        if (s != 0 && w + 1 < bits.length) {
+            result |= bits[w + 1] << (64 - s);
+        }
+        return result;
+    }
+
+    /**
+     * {@code a ^= b * x^shift}.
+     */
+    private static void xorShifted(long[] a, long[] b, int shift) {
+        final int off = shift >>> 6;
+        final int s = shift & 63;
+        for (int i = a.length - 1; i >= off; i--) {
+            long v = b[i - off] << s;
+            if (s != 0 && i - off - 1 >= 0) {
+                v |= b[i - off - 1] >>> (64 - s);
+            }
+            a[i] ^= v;
+        }
+    }
+}
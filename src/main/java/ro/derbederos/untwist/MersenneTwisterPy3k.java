@@ -16,7 +16,11 @@
 
 package ro.derbederos.untwist;
 
+import java.nio.ByteBuffer;
+
 import static java.lang.Integer.toUnsignedLong;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.getFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.putFlag;
 
 /**
  * A Mersenne Twister subclass which generates the same numbers as the Python 3 implementation.
@@ -34,6 +38,8 @@ public class MersenneTwisterPy3k extends ReversibleMersenneTwister implements Re
 
     private static final double DOUBLE_UNIT = 0x1.0p-53d; // 1.0 / (1L << 53)
 
+    private static final int N = MersenneTwisterEngine.N;
+
     /**
      * Creates a new random number generator.
      * <p>
@@ -75,6 +81,56 @@ public class MersenneTwisterPy3k extends ReversibleMersenneTwister implements Re
         super(seed);
     }
 
+    /**
+     * Creates a generator out of at least 624 consecutive 32 bit values, like the ones returned
+     * by Python's {@code random.getrandbits(32)}.
+     * <p>
+     * For the values of {@code random.random()}, which keep only 53 of the 64 bits of the two words
+     * they are made of, see {@link #fromDoubles(double[], long)}.
+     *
+     * @param outputs  the observed values, at least 624 of them.
+     * @param position the number of 32 bit values generated before {@code outputs[0]}.
+     * @return the recovered generator.
+     * @throws IllegalArgumentException if there are less than 624 values or the values could not
+     *                                  have been generated by a Mersenne Twister.
+     * @see ReversibleMersenneTwister#fromOutputs(int[], long)
+     */
+    public static MersenneTwisterPy3k fromOutputs(int[] outputs, long position) {
+        MersenneTwisterPy3k generator = new MersenneTwisterPy3k(0);
+        generator.recoverState(outputs, position);
+        return generator;
+    }
+
+    /**
+     * Creates a generator out of consecutive values of Python's {@code random.random()}.
+     * <p>
+     * Each double gives the high 53 bits of two 32 bit words, so the low bits of the first 624 words
+     * are solved as a linear system over GF(2), out of the bits of the following words. In practice 623 doubles,
+     * about two blocks of the Mersenne Twister, determine the state.
+     * <p>
+     * The generator is positioned right after the last observed double.
+     *
+     * @param doubles  the observed values.
+     * @param position the number of 32 bit values generated before {@code doubles[0]}, twice the number
+     *                 of the doubles before it if only {@code random.random()} was called.
+     * @return the recovered generator.
+     * @throws IllegalArgumentException if there are not enough values to recover the state, or the values
+     *                                  could not have been generated by {@link #nextDouble()}.
+     */
+    public static MersenneTwisterPy3k fromDoubles(double[] doubles, long position) {
+        final int[] outputs = MersenneTwisterDoubleRecovery.recoverOutputs(doubles);
+        final MersenneTwisterPy3k generator = new MersenneTwisterPy3k(0);
+        generator.recoverState(outputs, position);
+        generator.skip(2L * doubles.length - N);
+        for (int i = doubles.length - 1; i >= 0; i--) {
+            if (Double.compare(generator.prevDouble(), doubles[i]) != 0) {
+                throw new IllegalArgumentException("The value at index " + i + " does not match the recovered state");
+            }
+        }
+        generator.skip(2L * doubles.length);
+        return generator;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -161,6 +217,74 @@ public class MersenneTwisterPy3k extends ReversibleMersenneTwister implements Re
         return (float) prevDouble();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #nextDouble()}.
+     */
+    @Override
+    protected void nextDoublesFill(double[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            nextIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (((long) (words[2 * i] >>> 5) << 26) + (words[2 * i + 1] >>> 6)) * DOUBLE_UNIT;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #nextFloat()}.
+     */
+    @Override
+    protected void nextFloatsFill(float[] dst, int off, int len) {
+        final double[] doubles = new double[Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            nextDoublesFill(doubles, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (float) doubles[i];
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #prevDouble()}.
+     */
+    @Override
+    protected void prevDoublesFill(double[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            prevIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = ((words[2 * i] >>> 6) + ((long) (words[2 * i + 1] >>> 5) << 26)) * DOUBLE_UNIT;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #prevFloat()}.
+     */
+    @Override
+    protected void prevFloatsFill(float[] dst, int off, int len) {
+        final double[] doubles = new double[Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            prevDoublesFill(doubles, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (float) doubles[i];
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -231,6 +355,40 @@ public class MersenneTwisterPy3k extends ReversibleMersenneTwister implements Re
         return low | high;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #nextLong()}, the low word comes first.
+     */
+    @Override
+    protected void nextLongsFill(long[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            nextIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = toUnsignedLong(words[2 * i]) | (toUnsignedLong(words[2 * i + 1]) << 32);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Same values as {@link #prevLong()}, the high word comes first.
+     */
+    @Override
+    protected void prevLongsFill(long[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            prevIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (toUnsignedLong(words[2 * i]) << 32) | toUnsignedLong(words[2 * i + 1]);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -347,6 +505,18 @@ public class MersenneTwisterPy3k extends ReversibleMersenneTwister implements Re
         shouldReverseGaussian = false;
     }
 
+    @Override
+    void saveGaussianState(ByteBuffer buffer) {
+        putFlag(buffer, shouldReverseGaussian);
+        buffer.putDouble(nextGaussian);
+    }
+
+    @Override
+    void restoreGaussianState(ByteBuffer buffer) {
+        shouldReverseGaussian = getFlag(buffer);
+        nextGaussian = buffer.getDouble();
+    }
+
     /**
      * It uses a variation of <a href="https://en.wikipedia.org/wiki/Box%E2%80%93Muller_transform#Implementation">Box-Müller transform</a>.
      * <p>
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+
+import static ro.derbederos.untwist.MersenneTwisterEngine.M;
+import static ro.derbederos.untwist.MersenneTwisterEngine.N;
+import static ro.derbederos.untwist.MersenneTwisterEngine.twistWord;
+
+/**
+ * Finds the {@code int} seeds, given to {@code setSeed(int)}, which make a Mersenne Twister
+ * generate a known sequence of 32 bit values (the values of {@code next()} or {@code nextInt()}).
+ * <p>
+ * The whole 2<sup>32</sup> seed space is searched in parallel. For each seed only the state words
+ * needed by the first generated value are computed, instead of the whole seeding and twist,
+ * and only the seeds which pass this check are verified with a real generator.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(observed);
+ * int[] seeds = search.search(ForkJoinPool.commonPool(),
+ *         (searched, total) -> System.out.printf("%.2f%%%n", 100.0 * searched / total));
+ * }</pre>
+ */
+public final class MersenneTwisterSeedSearch extends SeedSearch {
+
+    private static final long SEED_SPACE = 1L << 32;
+
+    private static final int INIT_MULTIPLIER = 1812433253;
+
+    /**
+     * The state of {@code init_genrand(19650218)}, where {@code init_by_array} starts from.
+     */
+    private static final int[] INIT_BY_ARRAY_BASE = SeedUtils.initGenRand(19650218);
+
+    private final int[] prefix;
+    private final boolean initByArray;
+    private final IntFunction<ReversibleMersenneTwister> factory;
+
+    /**
+     * The untempered first value, which is compared by the scan.
+     */
+    private final int firstWord;
+
+    private MersenneTwisterSeedSearch(int[] prefix, boolean initByArray,
+                                      IntFunction<ReversibleMersenneTwister> factory) {
+        if (prefix.length == 0) {
+            throw new IllegalArgumentException("At least one value is needed");
+        }
+        this.prefix = prefix.clone();
+        this.initByArray = initByArray;
+        this.factory = factory;
+        this.firstWord = ReversibleMersenneTwister.untemper(prefix[0]);
+    }
+
+    /**
+     * Creates a search for the seeds of {@link ReversibleMersenneTwister#setSeed(int)}.
+     *
+     * @param prefix the first values generated after seeding.
+     * @return the seed search.
+     */
+    public static MersenneTwisterSeedSearch forMersenneTwister(int... prefix) {
+        return new MersenneTwisterSeedSearch(prefix, false, ReversibleMersenneTwister::new);
+    }
+
+    /**
+     * Creates a search for the seeds of {@link FreePascalRandom#setSeed(int)}, the {@code RandSeed} of FreePascal.
+     *
+     * @param prefix the first values generated after seeding.
+     * @return the seed search.
+     */
+    public static MersenneTwisterSeedSearch forFreePascal(int... prefix) {
+        return new MersenneTwisterSeedSearch(prefix, false, FreePascalRandom::new);
+    }
+
+    /**
+     * Creates a search for the seeds of {@link MersenneTwisterPy3k#setSeed(int)}, which is
+     * Python's {@code random.seed(n)} for {@code 0 <= n < 2^32}.
+     *
+     * @param prefix the first values generated after seeding, like the ones of {@code random.getrandbits(32)}.
+     * @return the seed search.
+     */
+    public static MersenneTwisterSeedSearch forPython3(int... prefix) {
+        return new MersenneTwisterSeedSearch(prefix, true, MersenneTwisterPy3k::new);
+    }
+
+    /**
+     * Searches the whole seed space using the common fork join pool.
+     *
+     * @return the matching seeds, ordered as unsigned integers.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public int[] search() {
+        return search(ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Searches the whole seed space.
+     *
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching seeds, ordered as unsigned integers.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public int[] search(ForkJoinPool pool, SearchProgressListener listener) {
+        return search(0, SEED_SPACE, pool, listener);
+    }
+
+    /**
+     * Searches the seeds from {@code [from, to)}, where the seeds are seen as unsigned integers.
+     * It is useful for splitting the search across several machines.
+     *
+     * @param from     the first seed, from {@code [0, 2^32]}.
+     * @param to       the seed after the last one, from {@code [0, 2^32]}.
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching seeds, ordered as unsigned integers.
+     * @throws IllegalArgumentException if the range is not valid.
+     * @throws CancellationException    if the search was cancelled.
+     */
+    public int[] search(long from, long to, ForkJoinPool pool, SearchProgressListener listener) {
+        final long[] seeds = searchRange(from, to, pool, listener);
+        final int[] result = new int[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            result[i] = (int) seeds[i];
+        }
+        return result;
+    }
+
+    @Override
+    protected long size() {
+        return SEED_SPACE;
+    }
+
+    @Override
+    protected void scan(long from, long to, LongConsumer candidates) {
+        if (initByArray) {
+            scanInitByArray(from, to, candidates);
+        } else {
+            scanInitGenRand(from, to, candidates);
+        }
+    }
+
+    @Override
+    protected boolean verify(long seed) {
+        final ReversibleMersenneTwister generator = factory.apply((int) seed);
+        for (int value : prefix) {
+            if (generator.nextInt() != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The first value after {@code init_genrand} is computed out of the words 0, 1 and M of the state,
+     * so the seeding stops at word M. Four seeds are computed at once, as each word depends on the
+     * previous one and the multiplications of a single seed can not overlap.
+     */
+    private void scanInitGenRand(long from, long to, LongConsumer candidates) {
+        final int target = firstWord;
+        long seed = from;
+        for (; seed + 4 <= to; seed += 4) {
+            final int s0 = (int) seed;
+            final int s1 = s0 + 1;
+            final int s2 = s0 + 2;
+            final int s3 = s0 + 3;
+            int a = INIT_MULTIPLIER * (s0 ^ (s0 >>> 30)) + 1;
+            int b = INIT_MULTIPLIER * (s1 ^ (s1 >>> 30)) + 1;
+            int c = INIT_MULTIPLIER * (s2 ^ (s2 >>> 30)) + 1;
+            int d = INIT_MULTIPLIER * (s3 ^ (s3 >>> 30)) + 1;
+            final int a1 = a;
+            final int b1 = b;
+            final int c1 = c;
+            final int d1 = d;
+            for (int i = 2; i <= M; i++) {
+                a = INIT_MULTIPLIER * (a ^ (a >>> 30)) + i;
+                b = INIT_MULTIPLIER * (b ^ (b >>> 30)) + i;
+                c = INIT_MULTIPLIER * (c ^ (c >>> 30)) + i;
+                d = INIT_MULTIPLIER * (d ^ (d >>> 30)) + i;
+            }
+            if ((a ^ twistWord(s0, a1)) == target) {
+                candidates.accept(seed);
+            }
+            if ((b ^ twistWord(s1, b1)) == target) {
+                candidates.accept(seed + 1);
+            }
+            if ((c ^ twistWord(s2, c1)) == target) {
+                candidates.accept(seed + 2);
+            }
+            if ((d ^ twistWord(s3, d1)) == target) {
+                candidates.accept(seed + 3);
+            }
+        }
+        for (; seed < to; seed++) {
+            final int s = (int) seed;
+            int x = INIT_MULTIPLIER * (s ^ (s >>> 30)) + 1;
+            final int x1 = x;
+            for (int i = 2; i <= M; i++) {
+                x = INIT_MULTIPLIER * (x ^ (x >>> 30)) + i;
+            }
+            if ((x ^ twistWord(s, x1)) == target) {
+                candidates.accept(seed);
+            }
+        }
+    }
+
+    /**
+     * The first value after {@code init_by_array} with a single key needs the words 0, 1 and M
+     * of the state, but word 1 is the last one written by the seeding, so both loops of
+     * {@code init_by_array} are computed, without the initial {@code init_genrand} and the twist.
+     * Two seeds are computed at once.
+     */
+    private void scanInitByArray(long from, long to, LongConsumer candidates) {
+        final int target = firstWord;
+        final int[] base = INIT_BY_ARRAY_BASE;
+        final int[] ma = new int[N];
+        final int[] mb = new int[N];
+        long seed = from;
+        for (; seed + 2 <= to; seed += 2) {
+            final int ka = (int) seed;
+            final int kb = ka + 1;
+            // first loop, i = 1..N-1, then i = 1 again
+            int a = base[0];
+            int b = base[0];
+            for (int i = 1; i < N; i++) {
+                final int x = base[i];
+                a = (x ^ ((a ^ (a >>> 30)) * 1664525)) + ka;
+                b = (x ^ ((b ^ (b >>> 30)) * 1664525)) + kb;
+                ma[i] = a;
+                mb[i] = b;
+            }
+            a = (ma[1] ^ ((a ^ (a >>> 30)) * 1664525)) + ka;
+            b = (mb[1] ^ ((b ^ (b >>> 30)) * 1664525)) + kb;
+            final int a1 = a;
+            final int b1 = b;
+            // second loop, i = 2..N-1, then i = 1 again
+            for (int i = 2; i <= M; i++) {
+                a = (ma[i] ^ ((a ^ (a >>> 30)) * 1566083941)) - i;
+                b = (mb[i] ^ ((b ^ (b >>> 30)) * 1566083941)) - i;
+            }
+            final int am = a;
+            final int bm = b;
+            for (int i = M + 1; i < N; i++) {
+                a = (ma[i] ^ ((a ^ (a >>> 30)) * 1566083941)) - i;
+                b = (mb[i] ^ ((b ^ (b >>> 30)) * 1566083941)) - i;
+            }
+            a = (a1 ^ ((a ^ (a >>> 30)) * 1566083941)) - 1;
+            b = (b1 ^ ((b ^ (b >>> 30)) * 1566083941)) - 1;
+            // mt[0] = 0x80000000
+            if ((am ^ twistWord(0x80000000, a)) == target) {
+                candidates.accept(seed);
+            }
+            if ((bm ^ twistWord(0x80000000, b)) == target) {
+                candidates.accept(seed + 1);
+            }
+        }
+        for (; seed < to; seed++) {
+            if (verify(seed)) {
+                candidates.accept(seed);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A Mersenne Twister whose state lives in a slot of a {@link MersenneTwisterArena}.
+ * <p>
+ * The view is a flyweight: it can be moved to any slot of the arena with {@link #moveTo(int)},
+ * so a single instance serves any number of generators. The generated values are the same as
+ * the ones of a {@link ReversibleMersenneTwister} with the same seed.
+ * <p>
+ * Only the state of the Mersenne Twister is kept in the slot. The cache of {@link #nextGaussian()}
+ * belongs to the view and it is cleared when the view moves to another slot.
+ * <p>
+ * A view is not thread safe, each thread should use its own.
+ * <p>
+ * A view can not be serialized, the state it generates from lives in the arena.
+ */
+public final class OffHeapMersenneTwister extends ReverseBitsStreamGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int N = MersenneTwisterEngine.N;
+
+    private static final MersenneTwisterEngine ENGINE = MersenneTwisterEngine.getInstance();
+
+    private final MersenneTwisterArena arena;
+
+    /**
+     * The {@code mt} array being seeded, before it is stored in the current slot.
+     */
+    private final int[] words = new int[N];
+
+    private IntBuffer page;
+
+    /**
+     * Index of {@code mti} in {@link #page}, followed by the {@code mt} array.
+     */
+    private int base;
+
+    private int slot;
+
+    OffHeapMersenneTwister(MersenneTwisterArena arena, int slot) {
+        this.arena = arena;
+        moveTo(slot);
+    }
+
+    /**
+     * Moves the view to another slot of the arena. The cache of {@link #nextGaussian()} is cleared.
+     *
+     * @param slot the slot.
+     * @throws IllegalArgumentException if the slot is not allocated.
+     */
+    public void moveTo(int slot) {
+        arena.checkSlot(slot);
+        this.page = arena.page(slot);
+        this.base = MersenneTwisterArena.offset(slot);
+        this.slot = slot;
+        clear();
+    }
+
+    /**
+     * @return the slot the view is on.
+     */
+    public int slot() {
+        return slot;
+    }
+
+    /**
+     * Copies the state of a generator into the current slot.
+     *
+     * @param generator the generator to copy.
+     */
+    public void copyFrom(ReversibleMersenneTwister generator) {
+        final IntBuffer state = ByteBuffer.wrap(generator.getState()).asIntBuffer();
+        page.put(base, state.get());
+        state.get(words);
+        store();
+        clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see ReversibleMersenneTwister#setSeed(int)
+     */
+    @Override
+    public void setSeed(int seed) {
+        ReversibleMersenneTwister.initGenRand(words, seed);
+        seed();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see ReversibleMersenneTwister#setSeed(int[])
+     */
+    @Override
+    public void setSeed(int[] seed) {
+        if (seed == null) {
+            setSeed(System.currentTimeMillis() + System.identityHashCode(this));
+            return;
+        }
+        ReversibleMersenneTwister.initByArray(words, seed);
+        seed();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see ReversibleMersenneTwister#setSeed(long)
+     */
+    @Override
+    public void setSeed(long seed) {
+        setSeed(new int[]{(int) (seed >>> 32), (int) (seed & 0xFFFFFFFFL)});
+    }
+
+    @Override
+    public int next() {
+        final IntBuffer page = this.page;
+        int mti = page.get(base);
+        if (mti >= N) {
+            twist();
+            mti = 0;
+        }
+        page.put(base, mti + 1);
+        return ReversibleMersenneTwister.temper(page.get(base + 1 + mti));
+    }
+
+    @Override
+    public int prev() {
+        final IntBuffer page = this.page;
+        int mti = page.get(base) - 1;
+        final int result = ReversibleMersenneTwister.temper(page.get(base + 1 + mti));
+        if (mti == 0) {
+            untwist();
+            mti = N;
+        }
+        page.put(base, mti);
+        return result;
+    }
+
+    /**
+     * Twists the {@code mt} array of the current slot.
+     *
+     * @see MersenneTwisterEngine#twist(IntBuffer, int)
+     */
+    void twist() {
+        MersenneTwisterEngine.twist(page, base + 1);
+    }
+
+    /**
+     * Untwists the {@code mt} array of the current slot.
+     *
+     * @see MersenneTwisterEngine#untwist(IntBuffer, int)
+     */
+    void untwist() {
+        MersenneTwisterEngine.untwist(page, base + 1);
+    }
+
+    /**
+     * Same as the private {@code fixState} of {@link ReversibleMersenneTwister}, applied to the seeded words,
+     * which are stored afterwards in the current slot.
+     */
+    private void seed() {
+        ENGINE.twist(words);
+        ENGINE.untwist(words);
+        store();
+        page.put(base, N);
+        clear();
+    }
+
+    private void store() {
+        final IntBuffer page = this.page;
+        final int[] words = this.words;
+        for (int i = 0, index = base + 1; i < N; i++, index++) {
+            page.put(index, words[i]);
+        }
+    }
+
+    /**
+     * The arena and its buffers can not be serialized.
+     *
+     * @throws NotSerializableException always.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException(getClass().getName());
+    }
+}
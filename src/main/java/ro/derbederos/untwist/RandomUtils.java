@@ -18,9 +18,18 @@ package ro.derbederos.untwist;
 
 import org.apache.commons.math3.random.RandomGenerator;
 
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 public class RandomUtils {
     public static IntStream nextInts(RandomGenerator generator) {
@@ -105,9 +114,272 @@ public class RandomUtils {
         return prevDoubles(generator).limit(streamSize);
     }
 
+    /**
+     * Returns a parallel stream of the next {@code streamSize} values of {@link ReversibleJavaRandom#nextInt()},
+     * the same values as {@link #nextInts(RandomGenerator, long)}, in the same order.
+     * <p>
+     * The stream is split in consecutive blocks, each one generated by a copy of the generator skipped to
+     * the start of the block. The generator is skipped right away after the whole stream.
+     *
+     * @param generator  the generator, not a subclass.
+     * @param streamSize the number of values.
+     * @return the stream.
+     * @throws IllegalArgumentException if the size is negative, or the generator is a subclass.
+     */
+    public static IntStream parallelInts(ReversibleJavaRandom generator, long streamSize) {
+        return StreamSupport.intStream(new IntSpliterator<>(copies(generator, streamSize, 1),
+                0, streamSize, ReversibleJavaRandom::nextInt), true);
+    }
+
+    /**
+     * Same as {@link #parallelInts(ReversibleJavaRandom, long)}, for {@link ReversibleJavaRandom#nextLong()}.
+     */
+    public static LongStream parallelLongs(ReversibleJavaRandom generator, long streamSize) {
+        return StreamSupport.longStream(new LongSpliterator<>(copies(generator, streamSize, 2),
+                0, streamSize, ReversibleJavaRandom::nextLong), true);
+    }
+
+    /**
+     * Same as {@link #parallelInts(ReversibleJavaRandom, long)}, for {@link ReversibleJavaRandom#nextDouble()}.
+     */
+    public static DoubleStream parallelDoubles(ReversibleJavaRandom generator, long streamSize) {
+        return StreamSupport.doubleStream(new DoubleSpliterator<>(copies(generator, streamSize, 2),
+                0, streamSize, ReversibleJavaRandom::nextDouble), true);
+    }
+
+    /**
+     * Same as {@link #parallelInts(ReversibleJavaRandom, long)}, for {@link TurboPascalRandom#nextInt()}.
+     */
+    public static IntStream parallelInts(TurboPascalRandom generator, long streamSize) {
+        return StreamSupport.intStream(new IntSpliterator<>(copies(generator, streamSize, 1),
+                0, streamSize, TurboPascalRandom::nextInt), true);
+    }
+
+    /**
+     * Same as {@link #parallelInts(ReversibleJavaRandom, long)}, for {@link TurboPascalRandom#nextLong()}.
+     */
+    public static LongStream parallelLongs(TurboPascalRandom generator, long streamSize) {
+        return StreamSupport.longStream(new LongSpliterator<>(copies(generator, streamSize, 2),
+                0, streamSize, TurboPascalRandom::nextLong), true);
+    }
+
+    /**
+     * Same as {@link #parallelInts(ReversibleJavaRandom, long)}, for {@link TurboPascalRandom#nextDouble()}.
+     */
+    public static DoubleStream parallelDoubles(TurboPascalRandom generator, long streamSize) {
+        return StreamSupport.doubleStream(new DoubleSpliterator<>(copies(generator, streamSize, 1),
+                0, streamSize, TurboPascalRandom::nextDouble), true);
+    }
+
+    /**
+     * @return the copies of the generator at a number of values from its current position,
+     * each value taking {@code steps} steps.
+     */
+    private static LongFunction<ReversibleJavaRandom> copies(ReversibleJavaRandom generator, long streamSize,
+                                                             int steps) {
+        checkStreamSize(streamSize);
+        if (generator.getClass() != ReversibleJavaRandom.class) {
+            throw new IllegalArgumentException("Subclasses are not supported: " + generator.getClass());
+        }
+        final ReversibleJavaRandom origin = generator.copyAt(0);
+        generator.skip(streamSize * steps);
+        return values -> origin.copyAt(values * steps);
+    }
+
+    private static LongFunction<TurboPascalRandom> copies(TurboPascalRandom generator, long streamSize, int steps) {
+        checkStreamSize(streamSize);
+        if (generator.getClass() != TurboPascalRandom.class) {
+            throw new IllegalArgumentException("Subclasses are not supported: " + generator.getClass());
+        }
+        final TurboPascalRandom origin = generator.copyAt(0);
+        generator.skip(streamSize * steps);
+        return values -> origin.copyAt(values * steps);
+    }
+
+    private static void checkStreamSize(long streamSize) {
+        if (streamSize < 0) {
+            throw new IllegalArgumentException("size must be non-negative");
+        }
+    }
+
     private static void checkRange(long origin, long bound) {
         if (origin < bound && bound - origin <= 0) {
             throw new IllegalArgumentException("range not representable as long");
         }
     }
+
+    /**
+     * Splits the values {@code [index, fence)} in halves, the generator being created only when
+     * the values are generated, at the first value of its part.
+     */
+    private abstract static class SkipSpliterator<G> {
+        final LongFunction<G> copies;
+        long index;
+        final long fence;
+        G generator;
+
+        SkipSpliterator(LongFunction<G> copies, long index, long fence) {
+            this.copies = copies;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        /**
+         * @return the end of the first half, which is taken by the new spliterator, or {@code -1} if too small.
+         */
+        long split() {
+            final long middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return -1;
+            }
+            // the generator is at the start of the first half
+            index = middle;
+            return middle;
+        }
+
+        G generator() {
+            if (generator == null) {
+                generator = copies.apply(index);
+            }
+            return generator;
+        }
+
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+                    | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+        }
+    }
+
+    private static final class IntSpliterator<G> extends SkipSpliterator<G> implements Spliterator.OfInt {
+        private final ToIntFunction<G> next;
+
+        IntSpliterator(LongFunction<G> copies, long index, long fence, ToIntFunction<G> next) {
+            super(copies, index, fence);
+            this.next = next;
+        }
+
+        @Override
+        public IntSpliterator<G> trySplit() {
+            final long from = index;
+            final G first = generator;
+            final long middle = split();
+            if (middle < 0) {
+                return null;
+            }
+            final IntSpliterator<G> prefix = new IntSpliterator<>(copies, from, middle, next);
+            prefix.generator = first;
+            generator = null;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(next.applyAsInt(generator()));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if (index < fence) {
+                final G generator = generator();
+                for (; index < fence; index++) {
+                    action.accept(next.applyAsInt(generator));
+                }
+            }
+        }
+    }
+
+    private static final class LongSpliterator<G> extends SkipSpliterator<G> implements Spliterator.OfLong {
+        private final ToLongFunction<G> next;
+
+        LongSpliterator(LongFunction<G> copies, long index, long fence, ToLongFunction<G> next) {
+            super(copies, index, fence);
+            this.next = next;
+        }
+
+        @Override
+        public LongSpliterator<G> trySplit() {
+            final long from = index;
+            final G first = generator;
+            final long middle = split();
+            if (middle < 0) {
+                return null;
+            }
+            final LongSpliterator<G> prefix = new LongSpliterator<>(copies, from, middle, next);
+            prefix.generator = first;
+            generator = null;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(next.applyAsLong(generator()));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            if (index < fence) {
+                final G generator = generator();
+                for (; index < fence; index++) {
+                    action.accept(next.applyAsLong(generator));
+                }
+            }
+        }
+    }
+
+    private static final class DoubleSpliterator<G> extends SkipSpliterator<G> implements Spliterator.OfDouble {
+        private final ToDoubleFunction<G> next;
+
+        DoubleSpliterator(LongFunction<G> copies, long index, long fence, ToDoubleFunction<G> next) {
+            super(copies, index, fence);
+            this.next = next;
+        }
+
+        @Override
+        public DoubleSpliterator<G> trySplit() {
+            final long from = index;
+            final G first = generator;
+            final long middle = split();
+            if (middle < 0) {
+                return null;
+            }
+            final DoubleSpliterator<G> prefix = new DoubleSpliterator<>(copies, from, middle, next);
+            prefix.generator = first;
+            generator = null;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(next.applyAsDouble(generator()));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            if (index < fence) {
+                final G generator = generator();
+                for (; index < fence; index++) {
+                    action.accept(next.applyAsDouble(generator));
+                }
+            }
+        }
+    }
 }
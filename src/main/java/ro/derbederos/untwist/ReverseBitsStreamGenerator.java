@@ -16,7 +16,11 @@
 
 package ro.derbederos.untwist;
 
+import java.nio.ByteBuffer;
+
 import static java.lang.Integer.toUnsignedLong;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.getFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.putFlag;
 
 public abstract class ReverseBitsStreamGenerator
         implements ReverseRandomGenerator, ReverseRandomIntSource {
@@ -25,6 +29,10 @@ public abstract class ReverseBitsStreamGenerator
     private static final double DOUBLE_UNIT = 0x1.0p-52d; // 1.0 / (1L << 52)
     private static final float FLOAT_UNIT = 0x1.0p-23f;   // 1.0 / (1 << 23)
 
+    /**
+     * Number of bytes written by {@link #saveGaussianState(ByteBuffer)}, the flag followed by the cached value.
+     */
+    static final int GAUSSIAN_STATE_SIZE = 1 + Double.BYTES;
 
     /**
      * @return the next random value.
@@ -182,6 +190,190 @@ public abstract class ReverseBitsStreamGenerator
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        nextIntsFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #nextInt()}.
+     * Generators which can produce values in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void nextIntsFill(int[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextInt();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        nextLongsFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #nextLong()}.
+     * Generators which can produce values in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void nextLongsFill(long[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextLong();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        nextDoublesFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #nextDouble()}.
+     * Generators which can produce values in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void nextDoublesFill(double[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextDouble();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        nextFloatsFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #nextFloat()}.
+     * Generators which can produce values in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void nextFloatsFill(float[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextFloat();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        prevIntsFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #prevInt()}.
+     * Generators which can walk their state backwards in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void prevIntsFill(int[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevInt();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        prevLongsFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #prevLong()}.
+     * Generators which can walk their state backwards in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void prevLongsFill(long[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevLong();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        prevDoublesFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #prevDouble()}.
+     * Generators which can walk their state backwards in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void prevDoublesFill(double[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevDouble();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        prevFloatsFill(dst, off, len);
+    }
+
+    /**
+     * Fills the already validated range of {@code dst} with the values of {@link #prevFloat()}.
+     * Generators which can walk their state backwards in blocks should override it.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     */
+    protected void prevFloatsFill(float[] dst, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevFloat();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -368,6 +560,26 @@ public abstract class ReverseBitsStreamGenerator
         return random;
     }
 
+    /**
+     * Writes the cache used by {@link #nextGaussian()}.
+     *
+     * @param buffer the buffer which receives {@link #GAUSSIAN_STATE_SIZE} bytes.
+     */
+    void saveGaussianState(ByteBuffer buffer) {
+        putFlag(buffer, shouldReverseGaussian);
+        buffer.putDouble(nextGaussian);
+    }
+
+    /**
+     * Reads the cache written by {@link #saveGaussianState(ByteBuffer)}.
+     *
+     * @param buffer the buffer which holds {@link #GAUSSIAN_STATE_SIZE} bytes.
+     */
+    void restoreGaussianState(ByteBuffer buffer) {
+        shouldReverseGaussian = getFlag(buffer);
+        nextGaussian = buffer.getDouble();
+    }
+
     /**
      * {@inheritDoc}
      */
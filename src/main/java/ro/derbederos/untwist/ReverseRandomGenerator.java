@@ -129,6 +129,142 @@ public interface ReverseRandomGenerator extends RandomGenerator, Serializable {
      */
     long prevLong(long bound);
 
+    /**
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #nextInt()}.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void nextInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextInt();
+        }
+    }
+
+    /**
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #nextLong()}.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void nextLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextLong();
+        }
+    }
+
+    /**
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #nextDouble()}.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void nextDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextDouble();
+        }
+    }
+
+    /**
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #nextFloat()}.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void nextFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextFloat();
+        }
+    }
+
+    /**
+     * The reverse of {@link #nextInts(int[], int, int)}.
+     * <p>
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #prevInt()}, in the same order.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void prevInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevInt();
+        }
+    }
+
+    /**
+     * The reverse of {@link #nextLongs(long[], int, int)}.
+     * <p>
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #prevLong()}, in the same order.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void prevLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevLong();
+        }
+    }
+
+    /**
+     * The reverse of {@link #nextDoubles(double[], int, int)}.
+     * <p>
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #prevDouble()}, in the same order.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void prevDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevDouble();
+        }
+    }
+
+    /**
+     * The reverse of {@link #nextFloats(float[], int, int)}.
+     * <p>
+     * Fills {@code len} elements of {@code dst}, starting at {@code off}, with the values which
+     * would be returned by successive calls of {@link #prevFloat()}, in the same order.
+     *
+     * @param dst the array which receives the random values.
+     * @param off the index of the first value in {@code dst}.
+     * @param len the number of values to generate.
+     * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not a valid range of {@code dst}.
+     */
+    default void prevFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = prevFloat();
+        }
+    }
+
 //    long nextLong(long origin, long bound);
 //
 //    long prevLong(long origin, long bound);
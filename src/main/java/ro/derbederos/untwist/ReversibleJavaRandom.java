@@ -16,29 +16,37 @@
 
 package ro.derbederos.untwist;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ro.derbederos.untwist.JavaRandomEngine.GaussianCache;
+
+import static ro.derbederos.untwist.JavaRandomEngine.DOUBLE_UNIT;
+import static ro.derbederos.untwist.JavaRandomEngine.FLOAT_UNIT;
 
 /**
  * This class extends the random class and ads methods for generating random values in reverse.
  */
-public class ReversibleJavaRandom extends Random implements ReverseRandomGenerator, ReverseNormalizedGaussianSampler {
+public class ReversibleJavaRandom extends Random
+        implements ReverseRandomGenerator, ReverseNormalizedGaussianSampler, StateCodec {
     private static final long serialVersionUID = 1L;
 
-    private static final long MULTIPLIER = 0x5DEECE66DL;
-    private static final long INVERSE_MULTIPLIER = 0xDFE05BCB1365L;
-    private static final long ADDEND = 0xBL;
-    private static final long MASK = 0xFFFFFFFFFFFFL;     // (1L << 48) - 1
-    private static final double DOUBLE_UNIT = 0x1.0p-53d; // 1.0 / (1L << 53)
-    private static final float FLOAT_UNIT = 0x1.0p-24f;   // 1.0f / (1 << 24)
+    static final long MULTIPLIER = 0x5DEECE66DL;
+    static final long INVERSE_MULTIPLIER = 0xDFE05BCB1365L;
+    static final long ADDEND = 0xBL;
+    static final long MASK = 0xFFFFFFFFFFFFL;     // (1L << 48) - 1
 
     protected static final long SEED_UNIQUIFIER_INVERSE_MULTIPLIER = -289066557591992163L;
 
     // the state of the generator
     private final AtomicLong seed = new AtomicLong();
     private transient long tempSeed;
-    private boolean shouldReverseGaussian;
-    private boolean hasNextGaussian;
+    // the cache of nextGaussian(), replaced as a whole
+    private final AtomicReference<GaussianCache> gaussianCache = new AtomicReference<>(GaussianCache.EMPTY);
+    // the state right after the seeding, where position() counts from
+    private long seedState;
 
     public ReversibleJavaRandom() {
         super();
@@ -74,7 +82,8 @@ public class ReversibleJavaRandom extends Random implements ReverseRandomGenerat
     public synchronized void setSeed(long seed) {
         if (this.seed != null) { //work around miserable override NPE in constructor.
             clear();
-            this.seed.set(scrambleSeed(seed));
+            seedState = scrambleSeed(seed);
+            this.seed.set(seedState);
         } else {
             tempSeed = seed;
         }
@@ -93,6 +102,36 @@ public class ReversibleJavaRandom extends Random implements ReverseRandomGenerat
         return (seed ^ MULTIPLIER) & MASK;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The state is the 48 bits seed and the cache of {@link #nextGaussian()}: the second value of the last pair,
+     * if it was not returned yet, and the seeds around the run of pairs generated one after the other.
+     */
+    @Override
+    public int stateSize() {
+        return JavaRandomEngine.STATE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void saveState(ByteBuffer buffer) {
+        JavaRandomEngine.saveState(buffer, seed.get(), gaussianCache.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void restoreState(ByteBuffer buffer) {
+        final long newSeed = JavaRandomEngine.checkState(buffer);
+        seed.set(newSeed);
+        seedState = newSeed;
+        gaussianCache.set(JavaRandomEngine.readState(buffer));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -102,7 +141,7 @@ public class ReversibleJavaRandom extends Random implements ReverseRandomGenerat
         AtomicLong seed = this.seed;
         do {
             oldSeed = seed.get();
-            nextSeed = (oldSeed * MULTIPLIER + ADDEND) & MASK;
+            nextSeed = JavaRandomEngine.next(oldSeed);
         } while (!seed.compareAndSet(oldSeed, nextSeed));
         return (int) (nextSeed >>> (48 - bits));
     }
@@ -125,13 +164,194 @@ public class ReversibleJavaRandom extends Random implements ReverseRandomGenerat
         long nextSeed, prevSeed;
         do {
             nextSeed = seed.get();
-            prevSeed = ((nextSeed - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+            prevSeed = JavaRandomEngine.prev(nextSeed);
         } while (!seed.compareAndSet(nextSeed, prevSeed));
         // we generate the bits from the current seed,
         // but we have updated the value of the seed with the prev one
         return (int) (nextSeed >>> (48 - bits));
     }
 
+    /**
+     * Skips {@code n} steps of the generator, the same as calling {@link #next(int)} {@code n} times,
+     * or {@link #prev(int)} {@code -n} times when {@code n} is negative.
+     * <p>
+     * It is computed in a logarithmic time, by composing the linear congruential step with itself.
+     * The cache used by {@link #nextGaussian()} is cleared.
+     *
+     * @param n the number of steps to skip, it can be negative.
+     */
+    public synchronized void skip(long n) {
+        clear();
+        final AtomicLong seed = this.seed;
+        long oldSeed, nextSeed;
+        do {
+            oldSeed = seed.get();
+            nextSeed = LinearCongruentialJump.skip(oldSeed, MULTIPLIER, INVERSE_MULTIPLIER, ADDEND, MASK, n);
+        } while (!seed.compareAndSet(oldSeed, nextSeed));
+    }
+
+    /**
+     * Returns the number of steps of the generator since the last call of {@link #setSeed(long)} or
+     * {@link #restoreState(ByteBuffer)}, modulo the period {@code 2^48}. Each {@link #nextInt()} is one step,
+     * each {@link #nextLong()} and {@link #nextDouble()} are two steps, and a step back is counted as
+     * {@code 2^48 - 1} steps forward.
+     *
+     * @return the position, between {@code 0} and {@code 2^48 - 1}.
+     */
+    public long position() {
+        return position(seed.get());
+    }
+
+    private synchronized long position(long state) {
+        return JavaRandomEngine.distance(seedState, state);
+    }
+
+    /**
+     * @param n the number of steps, it can be negative.
+     * @return a new generator, {@code n} steps away from this one, which is not changed.
+     */
+    ReversibleJavaRandom copyAt(long n) {
+        final ReversibleJavaRandom copy = new ReversibleJavaRandom(getSeed());
+        copy.skip(n);
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.nextInts(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.nextLongs(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.nextDoubles(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.nextFloats(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void prevInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.prevInts(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void prevLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.prevLongs(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void prevDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.prevDoubles(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole range is generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     */
+    @Override
+    public void prevFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        final AtomicLong seed = this.seed;
+        long oldSeed, newSeed;
+        do {
+            oldSeed = seed.get();
+            newSeed = JavaRandomEngine.prevFloats(oldSeed, dst, off, len);
+        } while (!seed.compareAndSet(oldSeed, newSeed));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -204,40 +424,126 @@ public class ReversibleJavaRandom extends Random implements ReverseRandomGenerat
     }
 
     private void clear() {
-        shouldReverseGaussian = false;
-        if (hasNextGaussian) {
-            super.nextGaussian();
-            hasNextGaussian = false;
-        }
+        gaussianCache.set(GaussianCache.EMPTY);
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * It uses the same <a href="https://en.wikipedia.org/wiki/Marsaglia_polar_method#Implementation">Marsaglia
+     * polar method</a> as {@link Random#nextGaussian()}, with the cache kept by this class, so it can be saved
+     * and reversed. Instead of a lock, the cache is replaced atomically, like the seed, so a value is returned
+     * only once even when several threads generate gaussian values at the same time.
      */
     @Override
     public double nextGaussian() {
-        shouldReverseGaussian = !shouldReverseGaussian;
-        hasNextGaussian = !hasNextGaussian;
-        return super.nextGaussian();
+        final AtomicReference<GaussianCache> gaussianCache = this.gaussianCache;
+        while (true) {
+            final GaussianCache cache = gaussianCache.get();
+            if (!cache.hasNext) {
+                final double[] pair = new double[2];
+                gaussianCache.set(nextGaussianPairs(cache, pair, 0, 2).withNext(pair[1]));
+                return pair[0];
+            }
+            if (gaussianCache.compareAndSet(cache, cache.taken())) {
+                return cache.next;
+            }
+        }
+    }
+
+    /**
+     * Fills the array with the values of {@link #nextGaussian()}.
+     * <p>
+     * The whole pairs are generated out of a local copy of the seed, which is
+     * atomically updated only once at the end.
+     *
+     * @param gaussians the array to fill.
+     */
+    public void nextGaussians(double[] gaussians) {
+        int i = 0;
+        GaussianCache cache;
+        while (gaussians.length > 0 && (cache = gaussianCache.get()).hasNext) {
+            if (gaussianCache.compareAndSet(cache, cache.taken())) {
+                gaussians[i++] = cache.next;
+                break;
+            }
+        }
+        final int end = i + (gaussians.length - i) / 2 * 2;
+        if (i < end) {
+            gaussianCache.set(nextGaussianPairs(gaussianCache.get(), gaussians, i, end));
+        }
+        if (end < gaussians.length) {
+            gaussians[end] = nextGaussian();
+        }
+    }
+
+    /**
+     * Reverse of {@link #nextGaussian()}, it returns the last value of {@link #nextGaussian()} and
+     * restores the generator to the state before generating it.
+     * <p>
+     * Going back from the first value of a pair also steps over the pairs rejected by the polar method before
+     * it. They are known exactly back to the start of the pairs generated one after the other, by
+     * {@link #nextGaussian()} or {@link #nextGaussians(double[])} with no other values in between. Before it,
+     * for instance after going back over other values, they are the pairs of doubles which the polar method
+     * would reject, back to the seed.
+     *
+     * @return the previous gaussian value from this random number generator's sequence.
+     */
+    public double prevGaussian() {
+        final double[] pair = new double[2];
+        while (true) {
+            final GaussianCache cache = gaussianCache.get();
+            final long end = seed.get();
+            // the last pair of doubles is the accepted one, the rejected pairs are before it
+            final long accepted = JavaRandomEngine.prevGaussianPair(end, pair);
+            if (!cache.hasNext) {
+                // the second value of the pair was returned, the pair is kept
+                if (gaussianCache.compareAndSet(cache, cache.restored(pair[1], end))) {
+                    return pair[1];
+                }
+            } else {
+                final long start = JavaRandomEngine.skipRejectedPairs(accepted,
+                        cache.rejectedSteps(accepted, seedState()));
+                if (seed.compareAndSet(end, start)) {
+                    gaussianCache.compareAndSet(cache, cache.rewound(start));
+                    return pair[0];
+                }
+            }
+        }
+    }
+
+    private synchronized long seedState() {
+        return seedState;
+    }
+
+    /**
+     * Generates whole pairs of gaussian values, from the seed which is atomically updated only once at the end.
+     *
+     * @param cache the cache before the pairs.
+     * @param dst   the array which receives the values.
+     * @param off   the index of the first value.
+     * @param end   the index after the last value, {@code off} plus an even number.
+     * @return the cache after the pairs.
+     */
+    private GaussianCache nextGaussianPairs(GaussianCache cache, double[] dst, int off, int end) {
+        final AtomicLong seed = this.seed;
+        long oldSeed, nextSeed;
+        do {
+            oldSeed = seed.get();
+            nextSeed = JavaRandomEngine.nextGaussianPairs(oldSeed, dst, off, end);
+        } while (!seed.compareAndSet(oldSeed, nextSeed));
+        return cache.afterPairs(oldSeed, nextSeed);
     }
 
     /**
      * {@inheritDoc}
      * Java uses <a href="https://en.wikipedia.org/wiki/Marsaglia_polar_method#Implementation">Marsaglia polar method</a>.
+     *
+     * @see #prevGaussian()
      */
     @Override
     public void undoNextGaussian() {
-        if (shouldReverseGaussian) {
-            double v1, v2, s;
-            do {
-                v1 = 2 * prevDouble() - 1; // between -1 and 1
-                v2 = 2 * prevDouble() - 1; // between -1 and 1
-                s = v1 * v1 + v2 * v2;
-            } while (s >= 1 || s == 0);
-            clear();
-        } else {
-            shouldReverseGaussian = true;
-        }
+        prevGaussian();
     }
 
     /**
@@ -16,10 +16,13 @@
 
 package ro.derbederos.untwist;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import static java.lang.Integer.toUnsignedLong;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkRestoreState;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkSaveState;
 
 
 /**
@@ -78,7 +81,7 @@ import java.io.Serializable;
  * DAMAGE.</strong></td></tr>
  * </table>
  */
-public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implements Serializable {
+public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implements StateCodec, Serializable {
 
     /**
      * Serializable version identifier.
@@ -89,19 +92,23 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
     /**
      * Size of the bytes pool.
      */
-    private static final int N = 624;
+    private static final int N = MersenneTwisterEngine.N;
+
+    private static final double DOUBLE_UNIT = 0x1.0p-52d; // 1.0 / (1L << 52)
+    private static final float FLOAT_UNIT = 0x1.0p-23f;   // 1.0 / (1 << 23)
 
     private static final int STATE_SIZE = N * Integer.BYTES + Integer.BYTES; //mt, mti
 
     /**
-     * Period second parameter.
+     * Up to this number of blocks, {@link #jump(long)} simply twists or untwists the state,
+     * which is faster than evaluating the jump polynomial.
      */
-    private static final int M = 397;
+    private static final long DIRECT_JUMP_BLOCKS = 1 << 12;
 
     /**
-     * X * MATRIX_A for X = {0, 1}.
+     * The implementation of the block operations, scalar or vectorized.
      */
-    private static final int[] MAG01 = {0x0, 0x9908B0DF};
+    private static final MersenneTwisterEngine ENGINE = MersenneTwisterEngine.getInstance();
 
     /**
      * Bytes pool.
@@ -113,6 +120,14 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
      */
     private int mti;
 
+    /**
+     * When set, the words of {@code mt} from {@code mti} on are the ones of the previous block,
+     * and each of them is twisted right before it is used.
+     *
+     * @see #setIncrementalTwist(boolean)
+     */
+    private boolean incrementalTwist;
+
     /**
      * Creates a new random number generator.
      * <p>
@@ -151,6 +166,70 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
         setSeed(seed);
     }
 
+    /**
+     * Creates a generator out of at least 624 consecutive values returned by {@link #next()}
+     * (or {@link #nextInt()}) of a Mersenne Twister.
+     * <p>
+     * The generator is positioned right after the last observed value, so {@link #next()} continues
+     * the observed sequence and {@link #prev()} returns the observed values in reverse order, and
+     * goes further back if called more times.
+     *
+     * @param outputs  the observed values, at least 624 of them. The values after the first 624
+     *                 are used to validate the recovered state.
+     * @param position the number of values generated before {@code outputs[0]}, counted from
+     *                 the seeding of the generator. It aligns the internal state on the one
+     *                 of the observed generator, the recovered sequence does not depend on it.
+     * @return the recovered generator.
+     * @throws IllegalArgumentException if there are less than 624 values or the values could not
+     *                                  have been generated by a Mersenne Twister.
+     */
+    public static ReversibleMersenneTwister fromOutputs(int[] outputs, long position) {
+        ReversibleMersenneTwister generator = new ReversibleMersenneTwister(0);
+        generator.recoverState(outputs, position);
+        return generator;
+    }
+
+    /**
+     * Rebuilds the state out of consecutive values of {@link #next()}, using {@link #untemper(int)}.
+     *
+     * @param outputs  the observed values, at least 624 of them.
+     * @param position the number of values generated before {@code outputs[0]}.
+     * @see #fromOutputs(int[], long)
+     */
+    void recoverState(int[] outputs, long position) {
+        if (outputs.length < N) {
+            throw new IllegalArgumentException("At least " + N + " values are needed, but got " + outputs.length);
+        }
+        final int offset = (int) Math.floorMod(position, (long) N);
+        // the observed words, followed by the words of the current block which were not generated yet
+        final int[] words = new int[offset == 0 ? N : 2 * N - offset];
+        for (int i = 0; i < N; i++) {
+            words[i] = untemper(outputs[i]);
+        }
+        for (int i = N; i < words.length; i++) {
+            words[i] = words[i - N + MersenneTwisterEngine.M]
+                    ^ MersenneTwisterEngine.twistWord(words[i - N], words[i - N + 1]);
+        }
+        System.arraycopy(words, words.length - N, mt, 0, N);
+        mti = offset == 0 ? N : offset;
+        deferIncrementalTwist();
+
+        clear();
+
+        // going back over the observed values and forward again validates the words of the
+        // previous block which were not observed and the words which are out of the twist image
+        for (int i = N - 1; i >= 0; i--) {
+            if (prev() != outputs[i]) {
+                throw new IllegalArgumentException("The values are not consecutive outputs of a Mersenne Twister");
+            }
+        }
+        for (int i = 0; i < outputs.length; i++) {
+            if (next() != outputs[i]) {
+                throw new IllegalArgumentException("The value at index " + i + " does not match the recovered state");
+            }
+        }
+    }
+
     /**
      * Part of the <a href="http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/MT2002/CODES/mt19937ar.c">original code</a>.
      * Method {@code init_genrand}.
@@ -158,18 +237,29 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
      * @param seed the initial seed
      */
     private void initGenRand(int seed) {
+        initGenRand(mt, seed);
+        mti = N;
+
+        clear(); // Clear normal deviate cache
+    }
+
+    /**
+     * Method {@code init_genrand} of the original code, over a given state array.
+     *
+     * @param mt   the state array to fill.
+     * @param seed the initial seed
+     */
+    static void initGenRand(int[] mt, int seed) {
         // we use a long masked by 0xFFFFFFFFL as a poor man unsigned int
         long longMT = Integer.toUnsignedLong(seed);
         // NB: unlike original C code, we are working with java longs, the cast below makes masking unnecessary
         mt[0] = (int) longMT;
-        for (mti = 1; mti < N; ++mti) {
+        for (int i = 1; i < N; ++i) {
             // See Knuth TAOCP Vol2. 3rd Ed. P.106 for multiplier.
             // initializer from the 2002-01-09 C version by Makoto Matsumoto
-            longMT = (1812433253L * (longMT ^ (longMT >>> 30)) + mti) & 0xFFFFFFFFL;
-            mt[mti] = (int) longMT;
+            longMT = (1812433253L * (longMT ^ (longMT >>> 30)) + i) & 0xFFFFFFFFL;
+            mt[i] = (int) longMT;
         }
-
-        clear(); // Clear normal deviate cache
     }
 
     /**
@@ -211,7 +301,20 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
             return;
         }
 
-        initGenRand(19650218);
+        initByArray(mt, seed);
+        mti = N;
+        fixState();
+        clear(); // Clear normal deviate cache
+    }
+
+    /**
+     * Method {@code init_by_array} of the original code, over a given state array.
+     *
+     * @param mt   the state array to fill.
+     * @param seed the initial seed (32 bits integers array)
+     */
+    static void initByArray(int[] mt, int[] seed) {
+        initGenRand(mt, 19650218);
         int i = 1;
         int j = 0;
 
@@ -244,8 +347,6 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
         }
 
         mt[0] = 0x80000000; // MSB is 1; assuring non-zero initial array
-        fixState();
-        clear(); // Clear normal deviate cache
     }
 
     /**
@@ -275,6 +376,9 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
      */
     @Override
     public int next() {
+        if (incrementalTwist) {
+            return nextIncremental();
+        }
         if (mti >= N) {
             twist();
             mti = 0;
@@ -287,6 +391,9 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
      */
     @Override
     public int prev() {
+        if (incrementalTwist) {
+            return prevIncremental();
+        }
         int result = temper(mt[--mti]);
         if (mti == 0) {
             untwist();
@@ -295,15 +402,312 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
         return result;
     }
 
+    /**
+     * Enables or disables the incremental twist. The generated values are the same in both modes.
+     * <p>
+     * By default, {@link #next()} twists the whole {@code mt} array once every 624 calls, and {@link #prev()}
+     * untwists it once every 624 calls. With the incremental twist, each word is twisted right before it is
+     * used and untwisted right after it is used in reverse, so all calls take about the same time. It is
+     * useful when the latency of a single call matters more than the throughput.
+     *
+     * @param incrementalTwist {@code true} to twist one word at a time.
+     */
+    public void setIncrementalTwist(boolean incrementalTwist) {
+        if (this.incrementalTwist != incrementalTwist) {
+            flushIncrementalTwist();
+            this.incrementalTwist = incrementalTwist;
+            deferIncrementalTwist();
+        }
+    }
+
+    /**
+     * @return {@code true} if the incremental twist is enabled.
+     * @see #setIncrementalTwist(boolean)
+     */
+    public boolean isIncrementalTwist() {
+        return incrementalTwist;
+    }
+
+    private int nextIncremental() {
+        if (mti >= N) {
+            mti = 0;
+        }
+        MersenneTwisterEngine.twistAt(mt, mti);
+        return temper(mt[mti++]);
+    }
+
+    private int prevIncremental() {
+        final int result = temper(mt[--mti]);
+        MersenneTwisterEngine.untwistAt(mt, mti);
+        if (mti == 0) {
+            mti = N;
+        }
+        return result;
+    }
+
+    /**
+     * Twists the words which were not used yet when the incremental twist is enabled,
+     * so that {@code mt} holds a whole block, like when it is disabled.
+     */
+    private void flushIncrementalTwist() {
+        if (incrementalTwist) {
+            for (int i = mti; i < N; i++) {
+                MersenneTwisterEngine.twistAt(mt, i);
+            }
+        }
+    }
+
+    /**
+     * The reverse of {@link #flushIncrementalTwist()}.
+     */
+    private void deferIncrementalTwist() {
+        if (incrementalTwist) {
+            for (int i = N - 1; i >= mti; i--) {
+                MersenneTwisterEngine.untwistAt(mt, i);
+            }
+        }
+    }
+
+    /**
+     * Skips {@code n} values, the same as calling {@link #next()} {@code n} times,
+     * or {@link #prev()} {@code -n} times when {@code n} is negative.
+     * <p>
+     * It is computed in a logarithmic time using {@link #jump(long)}.
+     * The cache used by {@link #nextGaussian()} is cleared.
+     *
+     * @param n the number of 32 bit values to skip, it can be negative.
+     */
+    public void skip(long n) {
+        long blocks = Math.floorDiv(n, (long) N);
+        int index = mti + (int) Math.floorMod(n, (long) N);
+        if (index > N) {
+            blocks++;
+            index -= N;
+        }
+        flushIncrementalTwist();
+        jumpBlocks(blocks);
+        mti = index;
+        deferIncrementalTwist();
+        clear();
+    }
+
+    /**
+     * Jumps over {@code blocks} blocks of 624 values, without changing the position inside the current block.
+     * It is the same as calling {@link #skip(long)} with {@code 624 * blocks}, but without the risk of overflow.
+     * <p>
+     * Far jumps use the characteristic polynomial of the generator, see
+     * <a href="http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/JUMP/jump-ahead.pdf">Efficient
+     * Jump Ahead for F2-Linear Random Number Generators</a>. The jump polynomials are cached, so jumping
+     * repeatedly by the same distance is cheaper.
+     * The cache used by {@link #nextGaussian()} is cleared.
+     *
+     * @param blocks the number of blocks to jump over, it can be negative.
+     */
+    public void jump(long blocks) {
+        flushIncrementalTwist();
+        jumpBlocks(blocks);
+        deferIncrementalTwist();
+        clear();
+    }
+
+    private void jumpBlocks(long blocks) {
+        if (blocks > -DIRECT_JUMP_BLOCKS && blocks < DIRECT_JUMP_BLOCKS) {
+            for (; blocks > 0; blocks--) {
+                twist();
+            }
+            for (; blocks < 0; blocks++) {
+                untwist();
+            }
+        } else {
+            // the state is kept consistent by fixState, twist and untwist, so the jump is exact
+            MersenneTwisterJump.getInstance().jump(mt, blocks);
+        }
+    }
+
+    /**
+     * Computes the state words the generator had right after its seeding, without changing the generator.
+     *
+     * @param position the number of values generated since the seeding.
+     * @return the state words right after the seeding.
+     * @throws IllegalArgumentException if the position does not match the index inside the current block.
+     */
+    int[] seedState(long position) {
+        if (Math.floorMod(position - mti, (long) N) != 0) {
+            throw new IllegalArgumentException("The position " + position + " does not match the generator state");
+        }
+        // the number of twists done since the seeding
+        final long blocks = Math.floorDiv(position - mti, (long) N) + 1;
+        final int[] state = blockState();
+        if (blocks > -DIRECT_JUMP_BLOCKS && blocks < DIRECT_JUMP_BLOCKS) {
+            for (long i = blocks; i > 0; i--) {
+                ENGINE.untwist(state);
+            }
+            for (long i = blocks; i < 0; i++) {
+                ENGINE.twist(state);
+            }
+        } else {
+            MersenneTwisterJump.getInstance().jump(state, -blocks);
+        }
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The values are tempered straight out of the {@code mt} array, one block at a time.
+     */
+    @Override
+    protected void nextIntsFill(int[] dst, int off, int len) {
+        if (incrementalTwist) {
+            for (int end = off + len; off < end; off++) {
+                dst[off] = nextIncremental();
+            }
+            return;
+        }
+        while (len > 0) {
+            if (mti >= N) {
+                twist();
+                mti = 0;
+            }
+            final int n = Math.min(N - mti, len);
+            ENGINE.temper(mt, mti, dst, off, n);
+            mti += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void nextLongsFill(long[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            nextIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (toUnsignedLong(words[2 * i]) << 32) | toUnsignedLong(words[2 * i + 1]);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void nextDoublesFill(double[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            nextIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                final long high = ((long) (words[2 * i] >>> 6)) << 26;
+                final int low = words[2 * i + 1] >>> 6;
+                dst[off++] = (high | low) * DOUBLE_UNIT;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void nextFloatsFill(float[] dst, int off, int len) {
+        final int[] words = new int[Math.min(len, N)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N);
+            nextIntsFill(words, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (words[i] >>> 9) * FLOAT_UNIT;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The values are tempered straight out of the {@code mt} array, walking it backwards
+     * one block at a time.
+     */
+    @Override
+    protected void prevIntsFill(int[] dst, int off, int len) {
+        if (incrementalTwist) {
+            for (int end = off + len; off < end; off++) {
+                dst[off] = prevIncremental();
+            }
+            return;
+        }
+        final int[] mt = this.mt;
+        while (len > 0) {
+            final int n = Math.min(mti, len);
+            for (int i = mti - 1, end = off + n; off < end; i--) {
+                dst[off++] = temper(mt[i]);
+            }
+            mti -= n;
+            len -= n;
+            if (mti == 0) {
+                untwist();
+                mti = N;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prevLongsFill(long[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            prevIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = toUnsignedLong(words[2 * i]) | (toUnsignedLong(words[2 * i + 1]) << 32);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prevDoublesFill(double[] dst, int off, int len) {
+        final int[] words = new int[2 * Math.min(len, N / 2)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N / 2);
+            prevIntsFill(words, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                final int low = words[2 * i] >>> 6;
+                final long high = ((long) (words[2 * i + 1] >>> 6)) << 26;
+                dst[off++] = (low | high) * DOUBLE_UNIT;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prevFloatsFill(float[] dst, int off, int len) {
+        final int[] words = new int[Math.min(len, N)];
+        for (int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, N);
+            prevIntsFill(words, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off++] = (words[i] >>> 9) * FLOAT_UNIT;
+            }
+        }
+    }
+
     /**
      * Part of the <a href="http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/MT2002/CODES/mt19937ar.c">original code</a>.
      * The block of code which computes the next {@code mt} array from the original method {@code genrand_int32}.
+     *
+     * @see MersenneTwisterEngine#twist(int[])
      */
     void twist() {
-        for (int i = 0; i < N; i++) {
-            int x = (mt[i] & 0x80000000) | (mt[(i + 1) % N] & 0x7FFFFFFF);
-            mt[i] = mt[(i + M) % N] ^ (x >>> 1) ^ MAG01[x & 0x1];
-        }
+        ENGINE.twist(mt);
     }
 
     /**
@@ -314,43 +718,16 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
      * @return The tempered value.
      */
     static int temper(int y) {
-        y ^= (y >>> 11);
-        y ^= (y << 7) & 0x9D2C5680;
-        y ^= (y << 15) & 0xEFC60000;
-        y ^= (y >>> 18);
-        return y;
+        return MersenneTwisterEngine.temper(y);
     }
 
     /**
      * The reverse of {@link #twist()} method.
-     * <p>
-     * Source code:
-     * <a href="https://jazzy.id.au/2010/09/25/cracking_random_number_generators_part_4.html">Cracking Random Number Generators - Part 4</a>
-     * <a href="https://jazzy.id.au/2010/09/22/cracking_random_number_generators_part_3.html">Cracking Random Number Generators - Part 3</a>
+     *
+     * @see MersenneTwisterEngine#untwist(int[])
      */
     void untwist() {
-        for (int i = 623; i >= 0; i--) {
-            int result;
-            // first we calculate the first bit
-            int tmp = mt[i] ^ mt[(i + M) % N];
-            // if the first bit is odd, unapply magic
-            if ((tmp & 0x80000000) == 0x80000000) {
-                tmp ^= 0x9908B0DF;
-            }
-            // the second bit of tmp is the first bit of the result
-            result = (tmp << 1) & 0x80000000;
-
-            // work out the remaining 31 bits
-            tmp = mt[(i - 1 + N) % N] ^ mt[(i + M - 1) % N];
-            if ((tmp & 0x80000000) == 0x80000000) {
-                tmp ^= 0x9908B0DF;
-                // since it was odd, the last bit must have been 1
-                result |= 1;
-            }
-            // extract the final 30 bits
-            result |= (tmp << 1) & 0x7FFFFFFF;
-            mt[i] = result;
-        }
+        ENGINE.untwist(mt);
     }
 
     /**
@@ -380,17 +757,71 @@ public class ReversibleMersenneTwister extends ReverseBitsStreamGenerator implem
         return y;
     }
 
-    byte[] getState() {
-        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream(STATE_SIZE);
-        DataOutputStream output = new DataOutputStream(byteOutput);
-        try {
-            output.writeInt(mti);
-            for (int value : mt) {
-                output.writeInt(value);
+    /**
+     * @return a copy of {@code mt} holding a whole block, whatever the twist mode.
+     */
+    private int[] blockState() {
+        final int[] state = mt.clone();
+        if (incrementalTwist) {
+            for (int i = mti; i < N; i++) {
+                MersenneTwisterEngine.twistAt(state, i);
             }
-            output.close();
-        } catch (IOException ignore) {
         }
-        return byteOutput.toByteArray();
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The state is {@code mti}, the {@code mt} array and the cache of {@link #nextGaussian()}.
+     * It does not depend on {@link #setIncrementalTwist(boolean)}.
+     */
+    @Override
+    public int stateSize() {
+        return STATE_SIZE + GAUSSIAN_STATE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        checkSaveState(buffer, stateSize());
+        saveBlockState(buffer);
+        saveGaussianState(buffer);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(ByteBuffer buffer) {
+        checkRestoreState(buffer, stateSize());
+        final int index = buffer.getInt(buffer.position());
+        if (index < 1 || index > N) {
+            throw new IllegalArgumentException("Invalid index in the state: " + index);
+        }
+        checkFlag(buffer, buffer.position() + STATE_SIZE);
+        mti = buffer.getInt();
+        for (int i = 0; i < N; i++) {
+            mt[i] = buffer.getInt();
+        }
+        deferIncrementalTwist();
+        restoreGaussianState(buffer);
+    }
+
+    private void saveBlockState(ByteBuffer buffer) {
+        flushIncrementalTwist();
+        buffer.putInt(mti);
+        for (int value : mt) {
+            buffer.putInt(value);
+        }
+        deferIncrementalTwist();
+    }
+
+    byte[] getState() {
+        final ByteBuffer buffer = ByteBuffer.allocate(STATE_SIZE);
+        saveBlockState(buffer);
+        return buffer.array();
     }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+/**
+ * Receives the progress of a {@link SeedSearch}.
+ * <p>
+ * The methods are called from the worker threads of the search, so they have to be thread safe and fast.
+ */
+@FunctionalInterface
+public interface SearchProgressListener {
+
+    /**
+     * Called each time a part of the seed space has been searched.
+     *
+     * @param searched the number of seeds searched so far.
+     * @param total    the number of seeds to search.
+     */
+    void onProgress(long searched, long total);
+
+    /**
+     * Called each time a part of the seed space has been searched, with the speed of the thread which
+     * searched it. The speed of the whole search is about this one times the number of threads.
+     *
+     * @param seedsPerSecond the number of seeds searched per second by a single thread.
+     */
+    default void onThroughput(double seedsPerSecond) {
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Brute force search over a space of seeds, split across the threads of a {@link ForkJoinPool}.
+ * <p>
+ * Implementations provide a fast {@link #scan(long, long, LongConsumer)} method, which rejects
+ * most of the seeds by computing as little as possible, and an exact {@link #verify(long)} method,
+ * which is called only for the candidates found by the scan.
+ * <p>
+ * A search can be cancelled from any thread with {@link #cancel()}, which stops the running searches.
+ * The searches started after all of them stopped are not cancelled.
+ */
+public abstract class SeedSearch {
+
+    /**
+     * The number of seeds scanned by a single fork join task.
+     */
+    private static final long CHUNK_SIZE = 1 << 18;
+
+    private volatile boolean cancelled;
+    /**
+     * The number of running searches, guarded by {@code this}.
+     */
+    private int running;
+
+    protected SeedSearch() {
+    }
+
+    /**
+     * @return the number of seeds in the whole seed space, the seeds are {@code [0, size)}.
+     */
+    protected abstract long size();
+
+    /**
+     * Scans the seeds from {@code [from, to)} and reports the ones which may match.
+     * It may report false positives, but no false negatives.
+     *
+     * @param from       the first seed.
+     * @param to         the seed after the last one.
+     * @param candidates receives the seeds which may match.
+     */
+    protected abstract void scan(long from, long to, LongConsumer candidates);
+
+    /**
+     * Checks exactly a candidate seed.
+     *
+     * @param seed the candidate seed.
+     * @return {@code true} if the seed matches.
+     */
+    protected abstract boolean verify(long seed);
+
+    /**
+     * Requests the cancellation of the search. The running searches stop as soon as
+     * their current parts are done and throw a {@link CancellationException}.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return {@code true} if {@link #cancel()} was called since the start of the running searches,
+     * or of the last one.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Marks the start of a search, which may search several ranges. A search started when no other one is
+     * running is not cancelled by the calls of {@link #cancel()} before it.
+     * It has to be followed by {@link #endSearch()}.
+     */
+    protected final synchronized void beginSearch() {
+        if (running++ == 0) {
+            cancelled = false;
+        }
+    }
+
+    /**
+     * Marks the end of a search started by {@link #beginSearch()}.
+     */
+    protected final synchronized void endSearch() {
+        running--;
+    }
+
+    /**
+     * Searches the seeds from {@code [from, to)}.
+     *
+     * @param from     the first seed.
+     * @param to       the seed after the last one.
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching seeds, in increasing order.
+     * @throws IllegalArgumentException if the range is not part of the seed space.
+     * @throws CancellationException    if the search was cancelled.
+     */
+    protected long[] searchRange(long from, long to, ForkJoinPool pool, SearchProgressListener listener) {
+        if (from < 0 || from > to || to > size()) {
+            throw new IllegalArgumentException("[" + from + ", " + to + ") is out of interval [0, " + size() + ")");
+        }
+        final ConcurrentLinkedQueue<Long> found = new ConcurrentLinkedQueue<>();
+        final AtomicLong searched = new AtomicLong();
+        beginSearch();
+        try {
+            pool.invoke(new SearchTask(from, to, to - from, found, searched, listener));
+            if (cancelled) {
+                throw new CancellationException("The seed search was cancelled");
+            }
+        } finally {
+            endSearch();
+        }
+        return found.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final long total;
+        private final ConcurrentLinkedQueue<Long> found;
+        private final AtomicLong searched;
+        private final SearchProgressListener listener;
+
+        SearchTask(long from, long to, long total, ConcurrentLinkedQueue<Long> found, AtomicLong searched,
+                   SearchProgressListener listener) {
+            this.from = from;
+            this.to = to;
+            this.total = total;
+            this.found = found;
+            this.searched = searched;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (to - from > CHUNK_SIZE) {
+                final long middle = from + (to - from) / 2;
+                invokeAll(new SearchTask(from, middle, total, found, searched, listener),
+                          new SearchTask(middle, to, total, found, searched, listener));
+                return;
+            }
+            final long start = System.nanoTime();
+            scan(from, to, seed -> {
+                if (verify(seed)) {
+                    found.add(seed);
+                }
+            });
+            final long elapsed = System.nanoTime() - start;
+            final long done = searched.addAndGet(to - from);
+            if (listener != null) {
+                listener.onThroughput((to - from) * 1e9 / Math.max(1, elapsed));
+                listener.onProgress(done, total);
+            }
+        }
+    }
+}
@@ -18,11 +18,28 @@ package ro.derbederos.untwist;
 
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static java.lang.Integer.toUnsignedLong;
+import static ro.derbederos.untwist.MersenneTwisterEngine.N;
 
 public class SeedUtils {
 
+    /**
+     * The longest key for which {@code init_by_array} can be inverted.
+     */
+    private static final int MAX_MERSENNE_KEY_LENGTH = N - 1;
+
+    private static final int KEY_MULTIPLIER = 1664525;
+    private static final int MIX_MULTIPLIER = 1566083941;
+
+    /**
+     * The state of {@code init_genrand(19650218)}, where {@code init_by_array} starts from.
+     */
+    private static final int[] INIT_BY_ARRAY_BASE = initGenRand(19650218);
+
     public static long convertToLong(int... seed) {
         long result = 0;
         int endIndex = seed.length / 2 * 2;
@@ -74,4 +91,151 @@ public class SeedUtils {
         ByteBuffer.wrap(bytes).asIntBuffer().get(result);
         return result;
     }
+
+    /**
+     * Recovers the key given to {@link ReversibleMersenneTwister#setSeed(int[])}, the {@code init_by_array}
+     * of the original code, out of the state of a generator. The generator can be one rebuilt with
+     * {@link ReversibleMersenneTwister#fromOutputs(int[], long)}, and it is not changed.
+     * <p>
+     * Both loops of {@code init_by_array} are undone, starting from the last written word. The keys
+     * of up to 622 words are recovered exactly, as each of their words is used at least once by
+     * a word of the state which survives the seeding. For 623 words, the first two words of the key
+     * are not uniquely determined, so one of the keys which lead to the same state is returned.
+     *
+     * @param generator the generator.
+     * @param position  the number of values generated since the seeding.
+     * @param keyLength the length of the key, from {@code [1, 623]}.
+     * @return the key.
+     * @throws IllegalArgumentException if the key length is not supported, the position does not match
+     *                                  the generator, or the generator was not seeded with a key of this length.
+     */
+    public static int[] recoverMersenneKey(ReversibleMersenneTwister generator, long position, int keyLength) {
+        if (keyLength < 1 || keyLength > MAX_MERSENNE_KEY_LENGTH) {
+            throw new IllegalArgumentException("The key length " + keyLength + " is out of interval [1, "
+                                               + MAX_MERSENNE_KEY_LENGTH + "]");
+        }
+        final int[] state = generator.seedState(position);
+        final int[] key = invertInitByArray(state, keyLength);
+        if (key == null) {
+            throw new IllegalArgumentException("The generator was not seeded with a key of length " + keyLength);
+        }
+        return key;
+    }
+
+    /**
+     * Recovers the seed given to {@link MersenneTwisterPy3k#setSeed(long)}, which is the integer
+     * given to Python's {@code random.seed(n)} for {@code 0 <= n < 2^64}. The generator is not changed.
+     *
+     * @param generator the generator.
+     * @param position  the number of values generated since the seeding.
+     * @return the seed, an unsigned 64 bits integer.
+     * @throws IllegalArgumentException if the position does not match the generator, or the generator
+     *                                  was not seeded with a 64 bits integer.
+     */
+    public static long recoverPython3Seed(MersenneTwisterPy3k generator, long position) {
+        final int[] state = generator.seedState(position);
+        final int[] key = invertInitByArray(state, 1);
+        if (key != null) {
+            return toUnsignedLong(key[0]);
+        }
+        final int[] longKey = invertInitByArray(state, 2);
+        if (longKey != null && longKey[1] != 0) {
+            return ((long) longKey[1] << 32) | toUnsignedLong(longKey[0]);
+        }
+        throw new IllegalArgumentException("The generator was not seeded with a 64 bits integer");
+    }
+
+    /**
+     * Computes the state of {@code init_genrand}, before the state fix done by the generators.
+     *
+     * @param seed the seed.
+     * @return the state words.
+     */
+    static int[] initGenRand(int seed) {
+        final int[] mt = new int[N];
+        ReversibleMersenneTwister.initGenRand(mt, seed);
+        return mt;
+    }
+
+    /**
+     * @return the key, or {@code null} if there is no key of this length which leads to the state.
+     */
+    private static int[] invertInitByArray(int[] state, int keyLength) {
+        final int[] base = INIT_BY_ARRAY_BASE;
+        // undo the second loop, which has written the words 2..N-1 and then word 1,
+        // with word 0 being a copy of word N-1
+        final int[] first = new int[N];
+        first[1] = (state[1] + 1) ^ (mix(state[N - 1]) * MIX_MULTIPLIER);
+        first[2] = (state[2] + 2) ^ (mix(first[1]) * MIX_MULTIPLIER);
+        for (int i = 3; i < N; i++) {
+            first[i] = (state[i] + i) ^ (mix(state[i - 1]) * MIX_MULTIPLIER);
+        }
+
+        // the first loop has written word t + 1 with key[t % keyLength] at step t, for t = 0..N-2,
+        // and word 1 again at step N-1; the steps 2..N-2 have known inputs and outputs
+        final int[] key = new int[keyLength];
+        final boolean[] known = new boolean[keyLength];
+        for (int t = 2; t < N - 1; t++) {
+            final int j = t % keyLength;
+            final int value = first[t + 1] - (base[t + 1] ^ (mix(first[t]) * KEY_MULTIPLIER)) - j;
+            if (known[j] && key[j] != value) {
+                return null;
+            }
+            key[j] = value;
+            known[j] = true;
+        }
+
+        // word 1 written at step 0, out of key[0], and rewritten at step N-1
+        final int start = base[1] ^ (mix(base[0]) * KEY_MULTIPLIER);
+        final int last = (N - 1) % keyLength;
+        final int lastMix = mix(first[N - 1]) * KEY_MULTIPLIER;
+        final int[] candidates;
+        if (known[0]) {
+            candidates = new int[]{key[0]};
+        } else if (known[last]) {
+            candidates = new int[]{((first[1] - key[last] - last) ^ lastMix) - start};
+        } else {
+            // key[0] is used by both writes of word 1
+            candidates = solveKeyWord(start, lastMix, first[1]);
+        }
+        for (int candidate : candidates) {
+            final int[] result = key.clone();
+            result[0] = candidate;
+            final int word1 = start + candidate;
+            if (!known[1 % keyLength]) {
+                result[1 % keyLength] = first[2] - (base[2] ^ (mix(word1) * KEY_MULTIPLIER)) - (1 % keyLength);
+            }
+            if (Arrays.equals(new ReversibleMersenneTwister(result).seedState(0), state)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds all {@code k} such that {@code ((start + k) ^ lastMix) + k == target}.
+     * The left side is a triangular function, the bit {@code n} of the result depends only on
+     * the bits {@code 0..n} of {@code k}, so {@code k} is built one bit at a time.
+     */
+    private static int[] solveKeyWord(int start, int lastMix, int target) {
+        List<Integer> prefixes = new ArrayList<>();
+        prefixes.add(0);
+        for (int bit = 0; bit < Integer.SIZE; bit++) {
+            final int mask = (int) ((2L << bit) - 1);
+            final List<Integer> next = new ArrayList<>();
+            for (int prefix : prefixes) {
+                for (int k : new int[]{prefix, prefix | (1 << bit)}) {
+                    if (((((start + k) ^ lastMix) + k ^ target) & mask) == 0) {
+                        next.add(k);
+                    }
+                }
+            }
+            prefixes = next;
+        }
+        return prefixes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int mix(int x) {
+        return x ^ (x >>> 30);
+    }
 }
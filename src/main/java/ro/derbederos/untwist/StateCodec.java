@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Saves and restores the whole state of a generator, including the cache used by {@code nextGaussian()},
+ * straight into a caller provided {@link ByteBuffer}, without allocating.
+ * <p>
+ * The state is written at the current position of the buffer, which is advanced, and uses the byte order
+ * of the buffer. A state has to be restored using the same byte order, into a generator of the same class.
+ * The configuration given to the constructors, like the coprocessor flag of {@link TurboPascalRandom},
+ * is not part of the state.
+ */
+public interface StateCodec {
+
+    /**
+     * @return the number of bytes written by {@link #saveState(ByteBuffer)}.
+     */
+    int stateSize();
+
+    /**
+     * Writes the state of the generator.
+     *
+     * @param buffer the buffer which receives the state.
+     * @throws BufferOverflowException if there are less than {@link #stateSize()} bytes remaining in the buffer.
+     */
+    void saveState(ByteBuffer buffer);
+
+    /**
+     * Replaces the state of the generator with one written by {@link #saveState(ByteBuffer)}.
+     * The generator is not changed when an exception is thrown.
+     *
+     * @param buffer the buffer which holds the state.
+     * @throws BufferUnderflowException if there are less than {@link #stateSize()} bytes remaining in the buffer.
+     * @throws IllegalArgumentException if the state is not valid.
+     */
+    void restoreState(ByteBuffer buffer);
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ro.derbederos.untwist.TurboPascalRandom.ADDEND;
+import static ro.derbederos.untwist.TurboPascalRandom.INVERSE_MULTIPLIER;
+import static ro.derbederos.untwist.TurboPascalRandom.MASK;
+import static ro.derbederos.untwist.TurboPascalRandom.MULTIPLIER;
+
+/**
+ * Recovers the state of {@link TurboPascalRandom} out of intervals of its consecutive 32 bit states.
+ * <p>
+ * Each observed value is given by the high bits of a state: {@code Random(n)} returns
+ * {@code (state * n) >>> 32}, so a value {@code v} means the state is between {@code ceil(v * 2^32 / n)}
+ * and {@code ceil((v + 1) * 2^32 / n) - 1}. An interval of width {@code w} for the state {@code k} values
+ * after the first one bounds {@code (A * x + C) mod 2^32} for the first state {@code x}, so the intervals
+ * are narrowed together as a close vector problem: the lattice made of these constraints, scaled to the
+ * same width, is reduced with LLL, and its vectors close to the centers of the intervals are enumerated
+ * with the nearest planes algorithm. The lattice depends only on the bounds, not on the values, so the
+ * reduced lattices of the last windows are cached, for recovering many sequences having the same bounds.
+ * <p>
+ * The recovery is done on windows of values with enough information, one after another, and each
+ * candidate state is checked against all the intervals.
+ */
+final class TurboPascalIntervalRecovery {
+
+    private static final long MODULUS = 1L << 32;
+    /**
+     * The fixed part of the bits of information a window has over the 32 unknown bits.
+     */
+    private static final int MARGIN_BITS = 6;
+    /**
+     * The logarithm of the number of close vectors tried for a window.
+     */
+    private static final int CANDIDATE_BITS = 14;
+    private static final int MAX_CACHED_LATTICES = 64;
+
+    private static final Map<List<Long>, Lattice> LATTICES = Collections.synchronizedMap(
+            new LinkedHashMap<List<Long>, Lattice>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Long>, Lattice> eldest) {
+                    return size() > MAX_CACHED_LATTICES;
+                }
+            });
+
+    private final long[] lows;
+    private final long[] widths;
+
+    /**
+     * @param lows   the lowest state of each interval, the states being consecutive.
+     * @param widths the number of states of each interval, between {@code 1} and {@code 2^32}.
+     */
+    TurboPascalIntervalRecovery(long[] lows, long[] widths) {
+        if (lows.length == 0) {
+            throw new IllegalArgumentException("No values");
+        }
+        this.lows = lows;
+        this.widths = widths;
+    }
+
+    /**
+     * Returns the interval of the states giving {@code value} through {@link TurboPascalRandom#nextInt(int)},
+     * with the bound taken as unsigned, like Delphi does.
+     *
+     * @param bound the unsigned bound, for {@code 0} the value is always {@code 0}.
+     * @param value the value.
+     * @return the lowest state and the number of states.
+     */
+    static long[] interval(int bound, int value) {
+        final long n = Integer.toUnsignedLong(bound);
+        final long v = Integer.toUnsignedLong(value);
+        if (n == 0 && v == 0) {
+            return new long[]{0, MODULUS};
+        }
+        if (v >= n) {
+            throw new IllegalArgumentException("Value " + value + " is out of bound " + Integer.toUnsignedString(bound));
+        }
+        final long low = ceilDiv(v << 32, n);
+        final long high = v + 1 == n ? MODULUS : ceilDiv((v + 1) << 32, n);
+        return new long[]{low, high - low};
+    }
+
+    private static long ceilDiv(long unsignedDividend, long divisor) {
+        final long quotient = Long.divideUnsigned(unsignedDividend, divisor);
+        return Long.remainderUnsigned(unsignedDividend, divisor) == 0 ? quotient : quotient + 1;
+    }
+
+    /**
+     * @return the state before the first value, or {@code -1} if no state gives the values.
+     * @throws IllegalArgumentException if the values do not have enough information to find the state.
+     */
+    long recover() {
+        for (int i = 0; i < lows.length; i++) {
+            if (widths[i] == 1) {
+                return verify(step(lows[i], -(i + 1)));
+            }
+        }
+        int start = 0;
+        while (true) {
+            final Window window = new Window(start);
+            if (start == 0 && window.information < window.neededInformation()) {
+                throw new IllegalArgumentException("Not enough values to recover the state, "
+                        + (int) window.information + " bits of the needed " + (int) window.neededInformation());
+            }
+            final long state = window.search();
+            if (state >= 0 || window.end == lows.length) {
+                return state;
+            }
+            start = BoundedValues.nextWindowStart(start, window.end);
+        }
+    }
+
+    private static long step(long state, long n) {
+        return LinearCongruentialJump.skip(state, MULTIPLIER, INVERSE_MULTIPLIER, ADDEND, MASK, n);
+    }
+
+    /**
+     * @param state the state before the first value.
+     * @return the state, if it gives all the values, or {@code -1}.
+     */
+    private long verify(long state) {
+        long current = state;
+        for (int i = 0; i < lows.length; i++) {
+            current = (current * MULTIPLIER + ADDEND) & MASK;
+            if (((current - lows[i]) & MASK) >= widths[i]) {
+                return -1;
+            }
+        }
+        return state;
+    }
+
+    private static double information(long width) {
+        return 32 - Math.log(width) / Math.log(2);
+    }
+
+    /**
+     * Intervals {@code [start, end)} used to build a lattice.
+     */
+    private final class Window {
+
+        private final int start;
+        private final int end;
+        private final double information;
+
+        // for each informative interval: its state is multiplier * x + addend, for the state x of the first one
+        private final int size;
+        private final int[] indexes;
+        private final long[] multipliers;
+        private final long[] addends;
+        private final long[] scales;
+
+        Window(int start) {
+            this.start = start;
+            int end = start;
+            int count = 0;
+            double information = 0;
+            do {
+                if (widths[end] < MODULUS) {
+                    count++;
+                    information += information(widths[end]);
+                }
+                end++;
+            } while (end < lows.length && count < BoundedValues.MAX_WINDOW_SIZE
+                    && information < neededInformation(count));
+            this.end = end;
+            this.size = count;
+            this.information = information;
+
+            indexes = new int[count];
+            multipliers = new long[count];
+            addends = new long[count];
+            scales = new long[count];
+            long multiplier = 1;
+            long addend = 0;
+            for (int i = start, j = 0; i < end; i++) {
+                if (widths[i] < MODULUS) {
+                    indexes[j] = i;
+                    multipliers[j] = multiplier;
+                    addends[j] = addend;
+                    // the widths of the values of a bound differ by one, they get the same scale
+                    scales[j] = Math.max(1, Math.round((double) MODULUS / widths[i]));
+                    j++;
+                }
+                multiplier = (multiplier * MULTIPLIER) & MASK;
+                addend = (addend * MULTIPLIER + ADDEND) & MASK;
+            }
+        }
+
+        double neededInformation() {
+            return neededInformation(size);
+        }
+
+        private double neededInformation(int count) {
+            return BoundedValues.neededInformation(32, MARGIN_BITS, count);
+        }
+
+        /**
+         * @return the state before the first value, or {@code -1} if not found.
+         */
+        long search() {
+            if (size == 0) {
+                return -1;
+            }
+            final Lattice lattice = lattice();
+            final int dimension = lattice.dimension();
+            // the first coordinate of each reduced vector is the multiple of x
+            final long[] firstCoordinates = new long[dimension];
+            for (int i = 0; i < dimension; i++) {
+                firstCoordinates[i] = lattice.vector(i)[0].longValue();
+            }
+            final double[] target = new double[size + 1];
+            target[0] = MODULUS / 2;
+            for (int j = 0; j < size; j++) {
+                final int i = indexes[j];
+                target[j + 1] = (((lows[i] - addends[j]) & MASK) + widths[i] / 2.0) * scales[j];
+            }
+            final long[] found = {-1};
+            lattice.closeVectors(target, lattice.branches(1L << CANDIDATE_BITS), coefficients -> {
+                long x = 0;
+                for (int i = 0; i < dimension; i++) {
+                    x += coefficients[i] * firstCoordinates[i];
+                }
+                // x is the state of the first value of the window
+                found[0] = verify(step(x & MASK, -(start + 1)));
+                return found[0] >= 0;
+            });
+            return found[0];
+        }
+
+        private Lattice lattice() {
+            final List<Long> key = new ArrayList<>(2 * size);
+            for (int j = 0; j < size; j++) {
+                key.add((long) (indexes[j] - start));
+                key.add(scales[j]);
+            }
+            Lattice lattice = LATTICES.get(key);
+            if (lattice == null) {
+                lattice = new Lattice(basis());
+                LATTICES.put(key, lattice);
+            }
+            return lattice;
+        }
+
+        private BigInteger[][] basis() {
+            final BigInteger modulus = BigInteger.valueOf(MODULUS);
+            final BigInteger[][] basis = new BigInteger[size + 1][size + 1];
+            for (BigInteger[] row : basis) {
+                Arrays.fill(row, BigInteger.ZERO);
+            }
+            basis[0][0] = BigInteger.ONE;
+            for (int j = 0; j < size; j++) {
+                final BigInteger scale = BigInteger.valueOf(scales[j]);
+                basis[0][j + 1] = BigInteger.valueOf(multipliers[j]).multiply(scale);
+                basis[j + 1][j + 1] = modulus.multiply(scale);
+            }
+            return basis;
+        }
+    }
+}
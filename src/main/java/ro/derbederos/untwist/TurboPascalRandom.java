@@ -16,7 +16,12 @@
 
 package ro.derbederos.untwist;
 
+import java.nio.ByteBuffer;
+
 import static java.lang.Integer.toUnsignedLong;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkFlag;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkRestoreState;
+import static ro.derbederos.untwist.DefaultRandomPrimitivesFactory.checkSaveState;
 
 /**
  * Java implementation of the random number generator from Turbo Pascal 7/Delphi.
@@ -36,18 +41,20 @@ import static java.lang.Integer.toUnsignedLong;
  * design fault</a>, as 32 bit numbers are emulated in Turbo Pascal 7.
  */
 public class TurboPascalRandom extends ReverseBitsStreamGenerator
-        implements ReverseNormalizedGaussianSampler {
+        implements ReverseNormalizedGaussianSampler, StateCodec {
     private static final long serialVersionUID = 1L;
 
-    private static final long MULTIPLIER = 0x08088405L;
-    private static final long INVERSE_MULTIPLIER = 0xD94FA8CDL;
-    private static final long ADDEND = 0x1L;
-    private static final long MASK = 0xFFFFFFFFL;         // (1L << 32) - 1
+    static final long MULTIPLIER = 0x08088405L;
+    static final long INVERSE_MULTIPLIER = 0xD94FA8CDL;
+    static final long ADDEND = 0x1L;
+    static final long MASK = 0xFFFFFFFFL;         // (1L << 32) - 1
     private static final double DOUBLE_UNIT = 0x1.0p-32d; // 1.0 / (1L << 32)
 
     private final boolean coprocessorEnabled;
 
     private long seed;
+    // the state right after the seeding, where position() counts from
+    private long seedState;
 
     /**
      * Creates a new random number generator using a single int seed.
@@ -126,6 +133,7 @@ public class TurboPascalRandom extends ReverseBitsStreamGenerator
     @Override
     public void setSeed(int seed) {
         this.seed = seed;
+        seedState = seed & MASK;
         clear();
     }
 
@@ -138,6 +146,38 @@ public class TurboPascalRandom extends ReverseBitsStreamGenerator
         return (int) seed;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The state is the 32 bits seed and the cache of {@link #nextGaussian()}.
+     */
+    @Override
+    public int stateSize() {
+        return Integer.BYTES + GAUSSIAN_STATE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        checkSaveState(buffer, stateSize());
+        buffer.putInt((int) seed);
+        saveGaussianState(buffer);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(ByteBuffer buffer) {
+        checkRestoreState(buffer, stateSize());
+        checkFlag(buffer, buffer.position() + Integer.BYTES);
+        seed = buffer.getInt() & MASK;
+        seedState = seed;
+        restoreGaussianState(buffer);
+    }
+
     /**
      * Converts the {@code int[]} seed to an {@code int} and calls {@link #setSeed(int)}.
      *
@@ -179,6 +219,41 @@ public class TurboPascalRandom extends ReverseBitsStreamGenerator
         return result;
     }
 
+    /**
+     * Skips {@code n} values, the same as calling {@link #next()} {@code n} times,
+     * or {@link #prev()} {@code -n} times when {@code n} is negative.
+     * <p>
+     * It is computed in a logarithmic time, by composing the linear congruential step with itself.
+     * The cache used by {@link #nextGaussian()} is cleared.
+     *
+     * @param n the number of 32 bit values to skip, it can be negative.
+     */
+    public void skip(long n) {
+        seed = LinearCongruentialJump.skip(seed, MULTIPLIER, INVERSE_MULTIPLIER, ADDEND, MASK, n);
+        clear();
+    }
+
+    /**
+     * Returns the number of values generated since the last call of {@link #setSeed(int)} or
+     * {@link #restoreState(ByteBuffer)}, modulo the period {@code 2^32}. A value generated
+     * backwards is counted as {@code 2^32 - 1} values forward.
+     *
+     * @return the position, between {@code 0} and {@code 2^32 - 1}.
+     */
+    public long position() {
+        return LinearCongruentialJump.distance(seedState, seed, MULTIPLIER, ADDEND, 32);
+    }
+
+    /**
+     * @param n the number of values, it can be negative.
+     * @return a new generator, {@code n} values away from this one, which is not changed.
+     */
+    TurboPascalRandom copyAt(long n) {
+        final TurboPascalRandom copy = new TurboPascalRandom((int) seed, coprocessorEnabled);
+        copy.skip(n);
+        return copy;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -197,6 +272,138 @@ public class TurboPascalRandom extends ReverseBitsStreamGenerator
         return prev();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void nextIntsFill(int[] dst, int off, int len) {
+        long seed = this.seed;
+        for (int i = off, end = off + len; i < end; i++) {
+            seed = (seed * MULTIPLIER + ADDEND) & MASK;
+            dst[i] = (int) seed;
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void nextLongsFill(long[] dst, int off, int len) {
+        long seed = this.seed;
+        for (int i = off, end = off + len; i < end; i++) {
+            final long high = (seed * MULTIPLIER + ADDEND) & MASK;
+            seed = (high * MULTIPLIER + ADDEND) & MASK;
+            dst[i] = (high << 32) | seed;
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void nextDoublesFill(double[] dst, int off, int len) {
+        long seed = this.seed;
+        // in turbo pascal the seed was 32 bit signed integer, delphi is performing unsigned division
+        final double offset = coprocessorEnabled ? 0x1p-1d : 0d;
+        final long sign = coprocessorEnabled ? 0x80000000L : 0L;
+        for (int i = off, end = off + len; i < end; i++) {
+            seed = (seed * MULTIPLIER + ADDEND) & MASK;
+            dst[i] = ((seed ^ sign) - sign) * DOUBLE_UNIT + offset;
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void nextFloatsFill(float[] dst, int off, int len) {
+        long seed = this.seed;
+        final double offset = coprocessorEnabled ? 0x1p-1d : 0d;
+        final long sign = coprocessorEnabled ? 0x80000000L : 0L;
+        for (int i = off, end = off + len; i < end; i++) {
+            seed = (seed * MULTIPLIER + ADDEND) & MASK;
+            dst[i] = (float) (((seed ^ sign) - sign) * DOUBLE_UNIT + offset);
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void prevIntsFill(int[] dst, int off, int len) {
+        long seed = this.seed & MASK;
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = (int) seed;
+            seed = ((seed - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void prevLongsFill(long[] dst, int off, int len) {
+        long seed = this.seed & MASK;
+        for (int i = off, end = off + len; i < end; i++) {
+            final long low = seed;
+            final long high = ((low - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+            seed = ((high - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+            dst[i] = (high << 32) | low;
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void prevDoublesFill(double[] dst, int off, int len) {
+        long seed = this.seed & MASK;
+        final double offset = coprocessorEnabled ? 0x1p-1d : 0d;
+        final long sign = coprocessorEnabled ? 0x80000000L : 0L;
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = ((seed ^ sign) - sign) * DOUBLE_UNIT + offset;
+            seed = ((seed - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The seed is kept in a local variable while filling the array.
+     */
+    @Override
+    protected void prevFloatsFill(float[] dst, int off, int len) {
+        long seed = this.seed & MASK;
+        final double offset = coprocessorEnabled ? 0x1p-1d : 0d;
+        final long sign = coprocessorEnabled ? 0x80000000L : 0L;
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = (float) (((seed ^ sign) - sign) * DOUBLE_UNIT + offset);
+            seed = ((seed - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+        }
+        this.seed = seed;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.Arrays;
+
+import static ro.derbederos.untwist.TurboPascalRandom.ADDEND;
+import static ro.derbederos.untwist.TurboPascalRandom.MASK;
+import static ro.derbederos.untwist.TurboPascalRandom.MULTIPLIER;
+
+/**
+ * Recovers the seed of {@link TurboPascalRandom}, the {@code RandSeed} of Turbo Pascal and Delphi, out of
+ * a few consecutive outputs of {@code Random(n)}, {@code Math.RandomRange} or {@code Random}.
+ * <p>
+ * A double gives the whole 32 bit state. An integer {@code v} of {@code Random(n)} gives only an interval
+ * of about {@code 2^32 / n} states, and the intervals of consecutive values are narrowed together with
+ * lattice reduction, without trying the {@code 2^32} seeds. The values need about 40 bits of information
+ * together, like 19 dice rolls or 5 values of {@code Random(1000)}, and they are recovered in milliseconds.
+ */
+public final class TurboPascalRandomCracker {
+
+    private TurboPascalRandomCracker() {
+    }
+
+    /**
+     * Recovers the seed out of consecutive {@link TurboPascalRandom#nextInt(int)} values having the same
+     * bound, the values of {@code Random(n)}.
+     *
+     * @param bound  the bound of the values.
+     * @param values the values.
+     * @return the seed before the first value, or {@code null} if no seed gives the values.
+     * @throws IllegalArgumentException if the bound is not positive, a value is out of bound, or the values
+     *                                  do not have enough information to find the seed.
+     * @see #fromInts(int[], int[])
+     */
+    public static Match fromInts(int bound, int... values) {
+        final int[] bounds = new int[values.length];
+        Arrays.fill(bounds, bound);
+        return fromInts(bounds, values);
+    }
+
+    /**
+     * Recovers the seed out of consecutive {@link TurboPascalRandom#nextInt(int)} values.
+     *
+     * @param bounds the bounds of the values.
+     * @param values the values.
+     * @return the seed before the first value, or {@code null} if no seed gives the values.
+     * @throws IllegalArgumentException if the arrays have different lengths, a bound is not positive, a value
+     *                                  is out of bound, or the values do not have enough information to find
+     *                                  the seed.
+     */
+    public static Match fromInts(int[] bounds, int[] values) {
+        BoundedValues.check(bounds, values);
+        final long[] lows = new long[values.length];
+        final long[] widths = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            setInterval(lows, widths, i, bounds[i], values[i]);
+        }
+        return recover(lows, widths, false);
+    }
+
+    /**
+     * Recovers the seed out of consecutive {@link TurboPascalRandom#nextInt(int, int)} values, the values of
+     * {@code Math.RandomRange(from, to)}.
+     *
+     * @param from   the least value, unless greater than {@code to}.
+     * @param to     the upper bound (exclusive), unless lower than {@code from}.
+     * @param values the values.
+     * @return the seed before the first value, or {@code null} if no seed gives the values.
+     * @throws IllegalArgumentException if a value is out of the range, or the values do not have enough
+     *                                  information to find the seed.
+     */
+    public static Match fromRange(int from, int to, int... values) {
+        final int least = Math.min(from, to);
+        final int bound = from > to ? from - to : to - from;
+        final long[] lows = new long[values.length];
+        final long[] widths = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            setInterval(lows, widths, i, bound, values[i] - least);
+        }
+        return recover(lows, widths, false);
+    }
+
+    /**
+     * Recovers the seed out of consecutive {@link TurboPascalRandom#nextDouble()} values, the values of
+     * {@code Random} in Delphi. The first value gives the seed, the others check it.
+     *
+     * @param values the values.
+     * @return the seed before the first value, or {@code null} if the seed does not give the other values.
+     * @throws IllegalArgumentException if there are no values, or a value can not be generated by {@code Random}.
+     */
+    public static Match fromDoubles(double... values) {
+        return fromDoubles(false, values);
+    }
+
+    /**
+     * Recovers the seed out of consecutive {@link TurboPascalRandom#nextDouble()} values.
+     * With the coprocessor enabled, {@code {$N+}} in Turbo Pascal 7, the values are offset-ed by {@code 0.5}.
+     *
+     * @param coprocessorEnabled if the values are offset-ed by {@code 0.5}.
+     * @param values             the values.
+     * @return the seed before the first value, or {@code null} if the seed does not give the other values.
+     * @throws IllegalArgumentException if there are no values, or a value can not be generated by {@code Random}.
+     */
+    public static Match fromDoubles(boolean coprocessorEnabled, double... values) {
+        final long[] lows = new long[values.length];
+        final long[] widths = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            final double value = values[i];
+            final long state = (long) (value * 0x1.0p32);
+            if (!(value >= 0 && value < 1) || state * 0x1.0p-32 != value) {
+                throw new IllegalArgumentException("Not a value of Random: " + value);
+            }
+            // with the coprocessor the state is signed and the value is offset-ed by 0.5
+            lows[i] = coprocessorEnabled ? state ^ (1L << 31) : state;
+            widths[i] = 1;
+        }
+        return recover(lows, widths, coprocessorEnabled);
+    }
+
+    private static void setInterval(long[] lows, long[] widths, int i, int bound, int value) {
+        final long[] interval = TurboPascalIntervalRecovery.interval(bound, value);
+        lows[i] = interval[0];
+        widths[i] = interval[1];
+    }
+
+    private static Match recover(long[] lows, long[] widths, boolean coprocessorEnabled) {
+        final long state = new TurboPascalIntervalRecovery(lows, widths).recover();
+        return state < 0 ? null : new Match((int) state, coprocessorEnabled);
+    }
+
+    /**
+     * A seed which gives the observed values.
+     */
+    public static final class Match {
+        private final int seed;
+        private final boolean coprocessorEnabled;
+
+        Match(int seed, boolean coprocessorEnabled) {
+            this.seed = seed;
+            this.coprocessorEnabled = coprocessorEnabled;
+        }
+
+        /**
+         * @return the seed before the first value, the value of {@code RandSeed}, which gives the values
+         * through {@link TurboPascalRandom#setSeed(int)}.
+         */
+        public int seed() {
+            return seed;
+        }
+
+        /**
+         * Returns the number of values generated after seeding the generator with {@code initialSeed}, up to the
+         * first observed value. It is computed in logarithmic time.
+         * <p>
+         * Delphi starts with a {@code RandSeed} of {@code 0} when {@code Randomize} is not called.
+         *
+         * @param initialSeed the seed given to the generator.
+         * @return the position of the first observed value, between {@code 0} and {@code 2^32 - 1}.
+         */
+        public long position(int initialSeed) {
+            return LinearCongruentialJump.distance(initialSeed & MASK, seed & MASK, MULTIPLIER, ADDEND, 32);
+        }
+
+        /**
+         * @return a new generator positioned before the first value.
+         */
+        public TurboPascalRandom newGenerator() {
+            return new TurboPascalRandom(seed, coprocessorEnabled);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Match)) {
+                return false;
+            }
+            final Match that = (Match) o;
+            return seed == that.seed && coprocessorEnabled == that.coprocessorEnabled;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * seed + Boolean.hashCode(coprocessorEnabled);
+        }
+
+        @Override
+        public String toString() {
+            return "Match{seed=" + seed + ", coprocessorEnabled=" + coprocessorEnabled + '}';
+        }
+    }
+}
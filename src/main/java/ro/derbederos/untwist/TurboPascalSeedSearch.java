@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+import static ro.derbederos.untwist.TurboPascalRandom.ADDEND;
+import static ro.derbederos.untwist.TurboPascalRandom.MASK;
+import static ro.derbederos.untwist.TurboPascalRandom.MULTIPLIER;
+
+/**
+ * Finds the seeds of {@link TurboPascalRandom}, the {@code RandSeed} of Turbo Pascal and Delphi, which generate
+ * a known sequence of values, by brute force over the 2<sup>32</sup> seeds.
+ * <p>
+ * It is meant for the values which carry too little information for {@link TurboPascalRandomCracker}, like
+ * the bits of {@code nextBoolean()}, or which are not supported by it, like the values of {@code nextFloat()},
+ * which depend on the coprocessor mode. Each value is turned into the interval of the states which give it,
+ * and the scan advances {@value #LANES} seeds at a time, in independent {@code int} lanes which the JIT
+ * compiler can vectorize, comparing the next states with the intervals until all the lanes fail.
+ * <p>
+ * The whole search takes a few seconds to minutes, depending on the values. A search given a result file
+ * with {@link #search(Path, ForkJoinPool, SearchProgressListener)} writes the matching seeds into it, part by
+ * part, together with the seed it reached, so a killed search continues from there when run again.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * TurboPascalSeedSearch search = TurboPascalSeedSearch.forBooleans(flips);
+ * int[] seeds = search.search(Paths.get("flips.seeds"), ForkJoinPool.commonPool(), null);
+ * TurboPascalRandom random = new TurboPascalRandom(seeds[0]);
+ * }</pre>
+ */
+public final class TurboPascalSeedSearch extends SeedSearch {
+
+    /**
+     * The number of seeds scanned at a time.
+     */
+    static final int LANES = 16;
+
+    private static final long SEED_SPACE = 1L << 32;
+
+    /**
+     * The number of seeds searched between two updates of a result file.
+     */
+    private static final long PART_SIZE = 1L << 26;
+
+    // the result file: the magic number, the version, the fingerprint of the values and of the range, the seed
+    // reached by the search and the number of seeds found, followed by the seeds, all big endian
+    private static final int MAGIC = 0x554E5453; // "UNTS"
+    private static final int VERSION = 1;
+    private static final int FINGERPRINT_OFFSET = 2 * Integer.BYTES;
+    private static final int NEXT_OFFSET = FINGERPRINT_OFFSET + Long.BYTES;
+    private static final int COUNT_OFFSET = NEXT_OFFSET + Long.BYTES;
+    private static final int HEADER_SIZE = COUNT_OFFSET + Long.BYTES;
+
+    // the intervals of the states of the values, the ones of width 2^32 are not checked
+    private final int[] lows;
+    private final int[] widths;
+    private final boolean[] informative;
+
+    private TurboPascalSeedSearch(long[] lows, long[] widths) {
+        if (lows.length == 0) {
+            throw new IllegalArgumentException("At least one value is needed");
+        }
+        double information = 0;
+        this.lows = new int[lows.length];
+        this.widths = new int[lows.length];
+        this.informative = new boolean[lows.length];
+        for (int i = 0; i < lows.length; i++) {
+            this.lows[i] = (int) lows[i];
+            this.widths[i] = (int) widths[i];
+            this.informative[i] = widths[i] < SEED_SPACE;
+            information += 32 - Math.log(widths[i]) / Math.log(2);
+        }
+        if (information < 32) {
+            throw new IllegalArgumentException("Not enough values to find the seeds, "
+                    + (int) information + " bits of the needed 32");
+        }
+    }
+
+    /**
+     * Creates a search for the seeds which generate a sequence of {@link TurboPascalRandom#nextBoolean()}.
+     *
+     * @param values the values, at least 32 of them.
+     * @return the search.
+     */
+    public static TurboPascalSeedSearch forBooleans(boolean... values) {
+        final int[] bounds = new int[values.length];
+        final int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bounds[i] = 2;
+            ints[i] = values[i] ? 1 : 0;
+        }
+        return forInts(bounds, ints);
+    }
+
+    /**
+     * Creates a search for the seeds which generate a sequence of {@link TurboPascalRandom#nextInt(int)},
+     * the values of {@code Random(n)}, having the same bound.
+     *
+     * @param bound  the bound of the values.
+     * @param values the values.
+     * @return the search.
+     * @see #forInts(int[], int[])
+     */
+    public static TurboPascalSeedSearch forInts(int bound, int... values) {
+        final int[] bounds = new int[values.length];
+        Arrays.fill(bounds, bound);
+        return forInts(bounds, values);
+    }
+
+    /**
+     * Creates a search for the seeds which generate a sequence of {@link TurboPascalRandom#nextInt(int)}.
+     * The values must have at least 32 bits of information.
+     *
+     * @param bounds the bounds of the values.
+     * @param values the values.
+     * @return the search.
+     * @throws IllegalArgumentException if the arrays have different lengths, a bound is not positive,
+     *                                  a value is out of bound, or the values have less than 32 bits.
+     */
+    public static TurboPascalSeedSearch forInts(int[] bounds, int[] values) {
+        BoundedValues.check(bounds, values);
+        final long[] lows = new long[values.length];
+        final long[] widths = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            final long[] interval = TurboPascalIntervalRecovery.interval(bounds[i], values[i]);
+            lows[i] = interval[0];
+            widths[i] = interval[1];
+        }
+        return new TurboPascalSeedSearch(lows, widths);
+    }
+
+    /**
+     * Creates a search for the seeds which generate a sequence of {@link TurboPascalRandom#nextFloat()}.
+     * With the coprocessor enabled, {@code {$N+}} in Turbo Pascal 7, the values are offset-ed by {@code 0.5}.
+     * Each value has about 24 bits of information, so two of them are usually enough.
+     *
+     * @param coprocessorEnabled if the values are offset-ed by {@code 0.5}.
+     * @param values             the values.
+     * @return the search.
+     * @throws IllegalArgumentException if a value can not be generated by {@code nextFloat()}, or the values
+     *                                  have less than 32 bits.
+     */
+    public static TurboPascalSeedSearch forFloats(boolean coprocessorEnabled, float... values) {
+        final long[] lows = new long[values.length];
+        final long[] widths = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            // the floats increase with the state, offset-ed by 2^31 with the coprocessor
+            final long low = firstStateOf(values[i], coprocessorEnabled);
+            final long high = firstStateOf(Math.nextUp(values[i]), coprocessorEnabled);
+            if (!(values[i] >= 0 && values[i] <= 1) || low == high) {
+                throw new IllegalArgumentException("Not a value of nextFloat: " + values[i]);
+            }
+            lows[i] = coprocessorEnabled ? low ^ (1L << 31) : low;
+            widths[i] = high - low;
+        }
+        return new TurboPascalSeedSearch(lows, widths);
+    }
+
+    /**
+     * @return the lowest state, offset-ed by {@code 2^31} with the coprocessor, whose float is at least
+     * {@code value}, or {@code 2^32}.
+     */
+    private static long firstStateOf(float value, boolean coprocessorEnabled) {
+        long low = 0;
+        long high = SEED_SPACE;
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            final double random = coprocessorEnabled
+                    ? (int) (middle ^ (1L << 31)) * 0x1.0p-32d + 0x1p-1d
+                    : middle * 0x1.0p-32d;
+            if ((float) random < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Searches all the seeds using the common fork join pool.
+     *
+     * @return the matching seeds, ordered as unsigned integers.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public int[] search() {
+        return search(ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Searches all the seeds.
+     *
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching seeds, ordered as unsigned integers.
+     * @throws CancellationException if the search was cancelled.
+     */
+    public int[] search(ForkJoinPool pool, SearchProgressListener listener) {
+        return search(0, SEED_SPACE, pool, listener);
+    }
+
+    /**
+     * Searches the seeds from {@code [from, to)}, where the seeds are seen as unsigned integers.
+     * It is useful for splitting the search across several machines.
+     *
+     * @param from     the first seed, from {@code [0, 2^32]}.
+     * @param to       the seed after the last one, from {@code [0, 2^32]}.
+     * @param pool     the pool which runs the search.
+     * @param listener receives the progress, it can be {@code null}.
+     * @return the matching seeds, ordered as unsigned integers.
+     * @throws IllegalArgumentException if the range is not valid.
+     * @throws CancellationException    if the search was cancelled.
+     */
+    public int[] search(long from, long to, ForkJoinPool pool, SearchProgressListener listener) {
+        final long[] seeds = searchRange(from, to, pool, listener);
+        final int[] result = new int[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            result[i] = (int) seeds[i];
+        }
+        return result;
+    }
+
+    /**
+     * Searches all the seeds, keeping the progress and the matching seeds in a memory mapped file.
+     *
+     * @param resultFile the file, created if it does not exist.
+     * @param pool       the pool which runs the search.
+     * @param listener   receives the progress, it can be {@code null}.
+     * @return all the matching seeds of the file, ordered as unsigned integers.
+     * @throws IOException           if the file can not be written, or it was written by another search.
+     * @throws CancellationException if the search was cancelled, the file keeping the parts searched until then.
+     * @see #search(Path, long, long, ForkJoinPool, SearchProgressListener)
+     */
+    public int[] search(Path resultFile, ForkJoinPool pool, SearchProgressListener listener) throws IOException {
+        return search(resultFile, 0, SEED_SPACE, pool, listener);
+    }
+
+    /**
+     * Searches the seeds from {@code [from, to)}, keeping the progress and the matching seeds in a memory
+     * mapped file.
+     * <p>
+     * The seeds are searched in parts of {@code 2^26}, and after each part the file gets its matching
+     * seeds and the seed the search reached. When the file exists, the search continues from that seed,
+     * so a search which was killed or cancelled loses at most the part it was searching. A file of a
+     * complete search just gives its seeds.
+     *
+     * @param resultFile the file, created if it does not exist.
+     * @param from       the first seed, from {@code [0, 2^32]}.
+     * @param to         the seed after the last one, from {@code [0, 2^32]}.
+     * @param pool       the pool which runs the search.
+     * @param listener   receives the progress of the whole range, it can be {@code null}.
+     * @return all the matching seeds of the file, ordered as unsigned integers.
+     * @throws IllegalArgumentException if the range is not valid.
+     * @throws IOException              if the file can not be written, or it was written by a search of other
+     *                                  values or of another range.
+     * @throws CancellationException    if the search was cancelled, the file keeping the parts searched until then.
+     */
+    public int[] search(Path resultFile, long from, long to, ForkJoinPool pool, SearchProgressListener listener)
+            throws IOException {
+        if (from < 0 || from > to || to > SEED_SPACE) {
+            throw new IllegalArgumentException("[" + from + ", " + to + ") is out of interval [0, " + SEED_SPACE + ")");
+        }
+        final long fingerprint = fingerprint(from, to);
+        // a cancellation between two parts stops the search too
+        beginSearch();
+        try (FileChannel channel = FileChannel.open(resultFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final boolean created = channel.size() == 0;
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (created) {
+                header.putInt(0, MAGIC).putInt(Integer.BYTES, VERSION).putLong(FINGERPRINT_OFFSET, fingerprint)
+                        .putLong(NEXT_OFFSET, from);
+                header.force();
+            } else if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException("Not a seed search file");
+            } else if (header.getLong(FINGERPRINT_OFFSET) != fingerprint) {
+                throw new IOException("The seed search file belongs to a search of other values or of another range");
+            }
+            long next = header.getLong(NEXT_OFFSET);
+            long count = header.getLong(COUNT_OFFSET);
+            if (next < from || next > to || count < 0 || count > (channel.size() - HEADER_SIZE) / Integer.BYTES) {
+                throw new IOException("Corrupted seed search file");
+            }
+            // the seeds of a part written before its end was, from a killed search, are searched again
+            final IntBuffer seeds = map(channel, 0, count);
+            while (count > 0 && Integer.toUnsignedLong(seeds.get((int) count - 1)) >= next) {
+                count--;
+            }
+            while (next < to) {
+                final long end = Math.min(next + PART_SIZE, to);
+                final int[] found = search(next, end, pool,
+                        listener == null ? null : new PartListener(listener, next - from, to - from));
+                if (found.length > 0) {
+                    final IntBuffer buffer = map(channel, count, found.length);
+                    buffer.put(found);
+                    count += found.length;
+                    header.putLong(COUNT_OFFSET, count);
+                }
+                header.putLong(NEXT_OFFSET, end);
+                header.force();
+                next = end;
+            }
+            final int[] result = new int[(int) count];
+            map(channel, 0, count).get(result);
+            return result;
+        } finally {
+            endSearch();
+        }
+    }
+
+    private static IntBuffer map(FileChannel channel, long from, long count) throws IOException {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                HEADER_SIZE + from * Integer.BYTES, count * Integer.BYTES);
+        return buffer.asIntBuffer();
+    }
+
+    private long fingerprint(long from, long to) {
+        long fingerprint = from * 0x9E3779B97F4A7C15L + to;
+        fingerprint = fingerprint * 0x9E3779B97F4A7C15L + lows.length;
+        for (int i = 0; i < lows.length; i++) {
+            fingerprint = fingerprint * 0x9E3779B97F4A7C15L + lows[i];
+            fingerprint = fingerprint * 0x9E3779B97F4A7C15L + widths[i];
+        }
+        return fingerprint;
+    }
+
+    @Override
+    protected long size() {
+        return SEED_SPACE;
+    }
+
+    /**
+     * The lanes are kept as a bit mask of the seeds that generated all the values so far. The intervals are
+     * compared as unsigned integers, by flipping their sign bits.
+     */
+    @Override
+    protected void scan(long from, long to, LongConsumer candidates) {
+        final int[] states = new int[LANES];
+        final int[] lows = this.lows;
+        final int[] widths = this.widths;
+        final boolean[] informative = this.informative;
+        final int multiplier = (int) MULTIPLIER;
+        final int addend = (int) ADDEND;
+        long seed = from;
+        for (; seed + LANES <= to; seed += LANES) {
+            for (int i = 0; i < LANES; i++) {
+                states[i] = (int) (seed + i);
+            }
+            int alive = (1 << LANES) - 1;
+            for (int j = 0; j < lows.length && alive != 0; j++) {
+                for (int i = 0; i < LANES; i++) {
+                    states[i] = states[i] * multiplier + addend;
+                }
+                if (informative[j]) {
+                    final int low = lows[j];
+                    final int width = widths[j] ^ Integer.MIN_VALUE;
+                    int different = 0;
+                    for (int i = 0; i < LANES; i++) {
+                        different |= ((states[i] - low) ^ Integer.MIN_VALUE) >= width ? 1 << i : 0;
+                    }
+                    alive &= ~different;
+                }
+            }
+            for (int i = 0; alive != 0; i++, alive >>>= 1) {
+                if ((alive & 1) != 0) {
+                    candidates.accept(seed + i);
+                }
+            }
+        }
+        for (; seed < to; seed++) {
+            if (verify(seed)) {
+                candidates.accept(seed);
+            }
+        }
+    }
+
+    @Override
+    protected boolean verify(long seed) {
+        long state = seed;
+        for (int i = 0; i < lows.length; i++) {
+            state = (state * MULTIPLIER + ADDEND) & MASK;
+            if (informative[i] && ((state - lows[i]) & MASK) >= Integer.toUnsignedLong(widths[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reports the progress of a part as the progress of the whole range.
+     */
+    private static final class PartListener implements SearchProgressListener {
+        private final SearchProgressListener listener;
+        private final long start;
+        private final long total;
+
+        PartListener(SearchProgressListener listener, long start, long total) {
+            this.listener = listener;
+            this.start = start;
+            this.total = total;
+        }
+
+        @Override
+        public void onProgress(long searched, long total) {
+            listener.onProgress(start + searched, this.total);
+        }
+
+        @Override
+        public void onThroughput(double seedsPerSecond) {
+            listener.onThroughput(seedsPerSecond);
+        }
+    }
+}
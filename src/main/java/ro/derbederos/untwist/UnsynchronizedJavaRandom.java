@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import ro.derbederos.untwist.JavaRandomEngine.GaussianCache;
+
+import static ro.derbederos.untwist.JavaRandomEngine.DOUBLE_UNIT;
+import static ro.derbederos.untwist.JavaRandomEngine.FLOAT_UNIT;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MASK;
+import static ro.derbederos.untwist.ReversibleJavaRandom.MULTIPLIER;
+
+/**
+ * A single threaded sibling of {@link ReversibleJavaRandom}, generating the same values as {@link Random}.
+ * <p>
+ * The seed is kept in a plain {@code long} instead of an {@link java.util.concurrent.atomic.AtomicLong},
+ * and none of the methods is synchronized, {@link #nextGaussian()} included. An instance must not be
+ * used by more than one thread at a time.
+ * <p>
+ * The values, the gaussian ones included, and the layout of the state are the same as those of
+ * {@link ReversibleJavaRandom}, so a state saved by one class can be restored by the other.
+ */
+public class UnsynchronizedJavaRandom extends Random
+        implements ReverseRandomGenerator, ReverseNormalizedGaussianSampler, StateCodec {
+    private static final long serialVersionUID = 1L;
+
+    // the state of the generator, set by the constructor of Random through setSeed,
+    // so the fields must not have initializers
+    private long seed;
+    // the cache of nextGaussian()
+    private GaussianCache gaussianCache;
+    // the state right after the seeding, where position() counts from
+    private long seedState;
+
+    public UnsynchronizedJavaRandom() {
+        super();
+    }
+
+    public UnsynchronizedJavaRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int seed) {
+        setSeed((long) seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int[] seed) {
+        setSeed(SeedUtils.convertToLong(seed));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(long seed) {
+        this.seed = scrambleSeed(seed);
+        seedState = this.seed;
+        clear();
+    }
+
+    /**
+     * Returns the seed used by this generator.
+     *
+     * @return the seed (which can be used with {@link #setSeed(long)}.
+     */
+    long getSeed() {
+        return scrambleSeed(seed);
+    }
+
+    private static long scrambleSeed(long seed) {
+        return (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The state is the 48 bits seed and the cache of {@link #nextGaussian()}, with the same layout as
+     * {@link ReversibleJavaRandom}.
+     */
+    @Override
+    public int stateSize() {
+        return JavaRandomEngine.STATE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        JavaRandomEngine.saveState(buffer, seed, gaussianCache);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(ByteBuffer buffer) {
+        seed = JavaRandomEngine.checkState(buffer);
+        seedState = seed;
+        gaussianCache = JavaRandomEngine.readState(buffer);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int next(int bits) {
+        final long nextSeed = JavaRandomEngine.next(seed);
+        seed = nextSeed;
+        return (int) (nextSeed >>> (48 - bits));
+    }
+
+    /**
+     * Reverse of {@link #next(int)}.
+     *
+     * @param bits random bits.
+     * @return the previous pseudorandom value from this random number
+     * generator's sequence.
+     * @see ReversibleJavaRandom#prev(int)
+     */
+    protected int prev(int bits) {
+        final long nextSeed = seed;
+        seed = JavaRandomEngine.prev(nextSeed);
+        return (int) (nextSeed >>> (48 - bits));
+    }
+
+    /**
+     * Skips {@code n} steps of the generator in a logarithmic time.
+     * The cache used by {@link #nextGaussian()} is cleared.
+     *
+     * @param n the number of steps to skip, it can be negative.
+     * @see ReversibleJavaRandom#skip(long)
+     */
+    public void skip(long n) {
+        seed = LinearCongruentialJump.skip(seed, MULTIPLIER, ReversibleJavaRandom.INVERSE_MULTIPLIER,
+                ReversibleJavaRandom.ADDEND, MASK, n);
+        clear();
+    }
+
+    /**
+     * @return the number of steps of the generator since the last call of {@link #setSeed(long)} or
+     * {@link #restoreState(ByteBuffer)}, modulo the period {@code 2^48}.
+     * @see ReversibleJavaRandom#position()
+     */
+    public long position() {
+        return JavaRandomEngine.distance(seedState, seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.nextInts(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.nextLongs(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.nextDoubles(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.nextFloats(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevInts(int[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.prevInts(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevLongs(long[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.prevLongs(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevDoubles(double[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.prevDoubles(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevFloats(float[] dst, int off, int len) {
+        DefaultRandomPrimitivesFactory.checkFromIndexSize(off, len, dst.length);
+        seed = JavaRandomEngine.prevFloats(seed, dst, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prevBytes(byte[] bytes) {
+        final int bytesInInt = Integer.SIZE / Byte.SIZE;
+        final int remainder = bytes.length % bytesInInt;
+        if (remainder > 0) {
+            for (int i = remainder - 1,
+                 rnd = prevInt();
+                 i >= 0; i--, rnd >>= Byte.SIZE) {
+                bytes[i] = (byte) (rnd);
+            }
+        }
+        for (int i = remainder, len = bytes.length; i < len; ) {
+            for (int rnd = prevInt(),
+                 n = bytesInInt;
+                 n-- > 0; rnd <<= Byte.SIZE) {
+                bytes[i++] = (byte) (rnd >>> 24);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int prevInt() {
+        return prev(32);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int prevInt(int bound) {
+        return DefaultRandomPrimitivesFactory.prevInt(this, bound);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long prevLong() {
+        return prev(32) + ((long) (prev(32)) << 32);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean prevBoolean() {
+        return DefaultRandomPrimitivesFactory.toBoolean(prev(1));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public float prevFloat() {
+        return prev(24) * FLOAT_UNIT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double prevDouble() {
+        return (prev(27) + ((long) (prev(26)) << 27)) * DOUBLE_UNIT;
+    }
+
+    private void clear() {
+        gaussianCache = GaussianCache.EMPTY;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The same <a href="https://en.wikipedia.org/wiki/Marsaglia_polar_method#Implementation">Marsaglia polar
+     * method</a> as {@link Random#nextGaussian()}, without the synchronization.
+     */
+    @Override
+    public double nextGaussian() {
+        final GaussianCache cache = gaussianCache;
+        if (cache.hasNext) {
+            gaussianCache = cache.taken();
+            return cache.next;
+        }
+        final double[] pair = new double[2];
+        nextGaussianPairs(cache, pair, 0, 2);
+        gaussianCache = gaussianCache.withNext(pair[1]);
+        return pair[0];
+    }
+
+    /**
+     * Fills the array with the values of {@link #nextGaussian()}.
+     *
+     * @param gaussians the array to fill.
+     * @see ReversibleJavaRandom#nextGaussians(double[])
+     */
+    public void nextGaussians(double[] gaussians) {
+        int i = 0;
+        final GaussianCache cache = gaussianCache;
+        if (gaussians.length > 0 && cache.hasNext) {
+            gaussianCache = cache.taken();
+            gaussians[i++] = cache.next;
+        }
+        final int end = i + (gaussians.length - i) / 2 * 2;
+        if (i < end) {
+            nextGaussianPairs(gaussianCache, gaussians, i, end);
+        }
+        if (end < gaussians.length) {
+            gaussians[end] = nextGaussian();
+        }
+    }
+
+    private void nextGaussianPairs(GaussianCache cache, double[] dst, int off, int end) {
+        final long oldSeed = seed;
+        seed = JavaRandomEngine.nextGaussianPairs(oldSeed, dst, off, end);
+        gaussianCache = cache.afterPairs(oldSeed, seed);
+    }
+
+    /**
+     * Reverse of {@link #nextGaussian()}, it returns the last value of {@link #nextGaussian()} and
+     * restores the generator to the state before generating it.
+     *
+     * @return the previous gaussian value from this random number generator's sequence.
+     * @see ReversibleJavaRandom#prevGaussian()
+     */
+    public double prevGaussian() {
+        final double[] pair = new double[2];
+        final GaussianCache cache = gaussianCache;
+        final long end = seed;
+        final long accepted = JavaRandomEngine.prevGaussianPair(end, pair);
+        if (!cache.hasNext) {
+            gaussianCache = cache.restored(pair[1], end);
+            return pair[1];
+        }
+        seed = JavaRandomEngine.skipRejectedPairs(accepted, cache.rejectedSteps(accepted, seedState));
+        gaussianCache = cache.rewound(seed);
+        return pair[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see #prevGaussian()
+     */
+    @Override
+    public void undoNextGaussian() {
+        prevGaussian();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * For the unbounded case: uses {@link #nextInt()}.
+     * For the bounded case with representable range: uses {@link #nextInt(int)}.
+     * For the bounded case with unrepresentable range: uses {@link #nextInt()}.
+     */
+    @Override
+    public int nextInt(int origin, int bound) {
+        return DefaultRandomPrimitivesFactory.nextInt(this, origin, bound);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * For the unbounded case: uses {@link #prevInt()}.
+     * For the bounded case with representable range: uses {@link #prevInt(int)}.
+     * For the bounded case with unrepresentable range: uses {@link #prevInt()}.
+     */
+    @Override
+    public int prevInt(int origin, int bound) {
+        return DefaultRandomPrimitivesFactory.prevInt(this, origin, bound);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextLong(long bound) {
+        return DefaultRandomPrimitivesFactory.nextLong(this, bound);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long prevLong(long bound) {
+        return DefaultRandomPrimitivesFactory.prevLong(this, bound);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import java.util.Optional;
+
+/**
+ * Chooses the {@link MersenneTwisterEngine} implementation.
+ * <p>
+ * This is the Java 17+ version of the class. It returns the {@link VectorMersenneTwisterEngine}
+ * when the {@code jdk.incubator.vector} module is present in the boot layer, otherwise the scalar engine.
+ * The vectorized engine can be disabled with the system property
+ * {@code ro.derbederos.untwist.vector=false}.
+ */
+final class MersenneTwisterEngines {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private MersenneTwisterEngines() {
+    }
+
+    static MersenneTwisterEngine create() {
+        if (!Boolean.parseBoolean(System.getProperty("ro.derbederos.untwist.vector", "true"))) {
+            return new MersenneTwisterEngine();
+        }
+        Optional<Module> vectorModule = ModuleLayer.boot().findModule(VECTOR_MODULE);
+        if (!vectorModule.isPresent()) {
+            return new MersenneTwisterEngine();
+        }
+        // when used as a named module we do not require the incubator module, so we need to read it explicitly
+        MersenneTwisterEngines.class.getModule().addReads(vectorModule.get());
+        if (!VectorMersenneTwisterEngine.isSupported()) {
+            return new MersenneTwisterEngine();
+        }
+        return new VectorMersenneTwisterEngine();
+    }
+}
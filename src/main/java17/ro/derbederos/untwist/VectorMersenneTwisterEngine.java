@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ASHR;
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+/**
+ * A {@link MersenneTwisterEngine} which uses the <a href="https://openjdk.org/jeps/414">Vector API</a>.
+ * <p>
+ * Each lane computes one word of the {@code mt} array. This works because the words read by
+ * {@code twist} and {@code untwist} are at least {@code N - M - 1} positions away from the ones
+ * being written, which is more than the number of lanes of any species. The words which do not
+ * fill a whole vector are computed by the scalar code of the superclass.
+ * <p>
+ * The lane operations are written inline in the loops on purpose: the vectors passed as arguments
+ * to a method which the JIT decides not to inline are boxed, which is slower than the scalar code.
+ */
+final class VectorMersenneTwisterEngine extends MersenneTwisterEngine {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * @return {@code true} if the preferred species has at least 4 lanes, below that the scalar code is faster.
+     */
+    static boolean isSupported() {
+        return LANES >= 4;
+    }
+
+    @Override
+    void twist(int[] mt) {
+        int kk = 0;
+        for (; kk <= N - M - LANES; kk += LANES) {
+            final IntVector u = IntVector.fromArray(SPECIES, mt, kk);
+            final IntVector v = IntVector.fromArray(SPECIES, mt, kk + 1);
+            final IntVector m = IntVector.fromArray(SPECIES, mt, kk + M);
+            final IntVector y = u.and(UPPER_MASK).or(v.and(LOWER_MASK));
+            // -(y & 1) is computed with shifts, NEG is not intrinsic on all the JDKs
+            final IntVector mag = y.lanewise(LSHL, 31).lanewise(ASHR, 31).and(MATRIX_A);
+            m.lanewise(XOR, y.lanewise(LSHR, 1)).lanewise(XOR, mag).intoArray(mt, kk);
+        }
+        for (; kk < N - M; kk++) {
+            mt[kk] = mt[kk + M] ^ twistWord(mt[kk], mt[kk + 1]);
+        }
+        for (; kk <= N - 1 - LANES; kk += LANES) {
+            final IntVector u = IntVector.fromArray(SPECIES, mt, kk);
+            final IntVector v = IntVector.fromArray(SPECIES, mt, kk + 1);
+            final IntVector m = IntVector.fromArray(SPECIES, mt, kk + (M - N));
+            final IntVector y = u.and(UPPER_MASK).or(v.and(LOWER_MASK));
+            // -(y & 1) is computed with shifts, NEG is not intrinsic on all the JDKs
+            final IntVector mag = y.lanewise(LSHL, 31).lanewise(ASHR, 31).and(MATRIX_A);
+            m.lanewise(XOR, y.lanewise(LSHR, 1)).lanewise(XOR, mag).intoArray(mt, kk);
+        }
+        for (; kk < N - 1; kk++) {
+            mt[kk] = mt[kk + (M - N)] ^ twistWord(mt[kk], mt[kk + 1]);
+        }
+        mt[N - 1] = mt[M - 1] ^ twistWord(mt[N - 1], mt[0]);
+    }
+
+    @Override
+    void untwist(int[] mt) {
+        int i = N - 1;
+        for (; i - LANES + 1 > N - M; i -= LANES) {
+            final int base = i - LANES + 1;
+            IntVector upper = IntVector.fromArray(SPECIES, mt, base)
+                    .lanewise(XOR, IntVector.fromArray(SPECIES, mt, base + (M - N)));
+            IntVector lower = IntVector.fromArray(SPECIES, mt, base - 1)
+                    .lanewise(XOR, IntVector.fromArray(SPECIES, mt, base + (M - N) - 1));
+            upper = upper.lanewise(XOR, upper.lanewise(ASHR, 31).and(MATRIX_A));
+            final IntVector lastBit = lower.lanewise(LSHR, 31);
+            lower = lower.lanewise(XOR, lower.lanewise(ASHR, 31).and(MATRIX_A));
+            upper.lanewise(LSHL, 1).and(UPPER_MASK)
+                    .or(lower.lanewise(LSHL, 1).and(LOWER_MASK))
+                    .or(lastBit)
+                    .intoArray(mt, base);
+        }
+        for (; i > N - M; i--) {
+            mt[i] = untwistWord(mt[i] ^ mt[i + (M - N)], mt[i - 1] ^ mt[i + (M - N) - 1]);
+        }
+        mt[N - M] = untwistWord(mt[N - M] ^ mt[0], mt[N - M - 1] ^ mt[N - 1]);
+        for (i = N - M - 1; i - LANES + 1 > 0; i -= LANES) {
+            final int base = i - LANES + 1;
+            IntVector upper = IntVector.fromArray(SPECIES, mt, base)
+                    .lanewise(XOR, IntVector.fromArray(SPECIES, mt, base + M));
+            IntVector lower = IntVector.fromArray(SPECIES, mt, base - 1)
+                    .lanewise(XOR, IntVector.fromArray(SPECIES, mt, base + M - 1));
+            upper = upper.lanewise(XOR, upper.lanewise(ASHR, 31).and(MATRIX_A));
+            final IntVector lastBit = lower.lanewise(LSHR, 31);
+            lower = lower.lanewise(XOR, lower.lanewise(ASHR, 31).and(MATRIX_A));
+            upper.lanewise(LSHL, 1).and(UPPER_MASK)
+                    .or(lower.lanewise(LSHL, 1).and(LOWER_MASK))
+                    .or(lastBit)
+                    .intoArray(mt, base);
+        }
+        for (; i > 0; i--) {
+            mt[i] = untwistWord(mt[i] ^ mt[i + M], mt[i - 1] ^ mt[i + M - 1]);
+        }
+        mt[0] = untwistWord(mt[0] ^ mt[M], mt[N - 1] ^ mt[M - 1]);
+    }
+
+    @Override
+    void temper(int[] src, int srcPos, int[] dst, int dstPos, int len) {
+        final int loopBound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < loopBound; i += LANES) {
+            IntVector y = IntVector.fromArray(SPECIES, src, srcPos + i);
+            y = y.lanewise(XOR, y.lanewise(LSHR, 11));
+            y = y.lanewise(XOR, y.lanewise(LSHL, 7).and(TEMPERING_MASK_B));
+            y = y.lanewise(XOR, y.lanewise(LSHL, 15).and(TEMPERING_MASK_C));
+            y = y.lanewise(XOR, y.lanewise(LSHR, 18));
+            y.intoArray(dst, dstPos + i);
+        }
+        for (; i < len; i++) {
+            dst[dstPos + i] = temper(src[srcPos + i]);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThrows;
+import static ro.derbederos.untwist.RandomUtils.nextInts;
+
+public class CheckpointTest {
+
+    private static final int[] ARRAY_SEED = {0x123, 0x234, 0x345, 0x456};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestoreMersenneTwister() {
+        ReversibleMersenneTwister expected = new ReversibleMersenneTwister(ARRAY_SEED);
+        expected.skip(1_000_003);
+
+        Checkpoint checkpoint = Checkpoint.ofSeed(Checkpoint.Type.MERSENNE_TWISTER, ARRAY_SEED, 1_000_003);
+        ReverseRandomGenerator restored = checkpoint.restore();
+
+        assertThat(restored, instanceOf(ReversibleMersenneTwister.class));
+        assertThat(nextInts(restored, 1000).toArray(), equalTo(nextInts(expected, 1000).toArray()));
+    }
+
+    @Test
+    public void testRestoreSeeds() {
+        ReverseRandomGenerator[] expected = {new ReversibleJavaRandom(-42L), new TurboPascalRandom(7),
+                new DotNetRandom(12345), new ReversibleMersenneTwister(0x1234567823456789L)};
+        Checkpoint[] checkpoints = {Checkpoint.ofSeed(Checkpoint.Type.JAVA_RANDOM, -42L, 0),
+                Checkpoint.ofSeed(Checkpoint.Type.TURBO_PASCAL, 7, 0),
+                Checkpoint.ofSeed(Checkpoint.Type.DOT_NET, 12345, 0),
+                Checkpoint.ofSeed(Checkpoint.Type.MERSENNE_TWISTER, 0x1234567823456789L, 0)};
+        for (int i = 0; i < expected.length; i++) {
+            nextInts(expected[i], 100).toArray();
+            ReverseRandomGenerator restored = checkpoints[i].at(100).restore();
+            assertThat(restored.getClass(), equalTo((Object) expected[i].getClass()));
+            assertThat(nextInts(restored, 100).toArray(), equalTo(nextInts(expected[i], 100).toArray()));
+        }
+    }
+
+    @Test
+    public void testRestoreState() {
+        DotNetRandom generator = new DotNetRandom(314);
+        nextInts(generator, 500).toArray();
+        generator.nextGaussian();
+        Checkpoint checkpoint = Checkpoint.ofState(generator);
+        assertThat(checkpoint.hasSeed(), equalTo(false));
+
+        ReverseRandomGenerator restored = checkpoint.restore();
+        assertThat(restored.nextGaussian(), equalTo(generator.nextGaussian()));
+
+        DotNetRandom expected = new DotNetRandom(314);
+        nextInts(expected, 500).toArray();
+        expected.nextGaussian();
+        RandomUtils.prevInts(expected, 20).toArray();
+        restored = checkpoint.at(-20).restore();
+        assertThat(nextInts(restored, 40).toArray(), equalTo(nextInts(expected, 40).toArray()));
+
+        assertThrows(IllegalArgumentException.class, () -> Checkpoint.ofState(new FreePascalRandom(1)));
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        Checkpoint[] checkpoints = {Checkpoint.ofSeed(Checkpoint.Type.MERSENNE_TWISTER, ARRAY_SEED, 77),
+                Checkpoint.ofSeed(Checkpoint.Type.JAVA_RANDOM, 1L << 40, -3),
+                Checkpoint.ofSeed(Checkpoint.Type.TURBO_PASCAL, -1, Long.MAX_VALUE),
+                Checkpoint.ofState(new ReversibleMersenneTwister(5))};
+        ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        int size = 0;
+        for (Checkpoint checkpoint : checkpoints) {
+            checkpoint.encode(buffer);
+            size += checkpoint.encodedSize();
+            assertThat(buffer.position(), equalTo(size));
+        }
+        assertThat(checkpoints[0].encodedSize(), equalTo(2 + 4 + 4 * 4 + 8));
+
+        buffer.flip();
+        for (Checkpoint checkpoint : checkpoints) {
+            assertThat(Checkpoint.decode(buffer), equalTo(checkpoint));
+        }
+
+        ByteBuffer invalid = ByteBuffer.wrap(new byte[]{9, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        assertThrows(IllegalArgumentException.class, () -> Checkpoint.decode(invalid));
+    }
+
+    @Test
+    public void testCheckpointFile() throws IOException {
+        Path path = folder.newFile().toPath();
+        Checkpoint first = Checkpoint.ofSeed(Checkpoint.Type.MERSENNE_TWISTER, ARRAY_SEED, 0);
+        Checkpoint second = Checkpoint.ofSeed(Checkpoint.Type.JAVA_RANDOM, 99L, 0);
+        Checkpoint state = Checkpoint.ofState(new TurboPascalRandom(3));
+        int count = 10_000;
+        try (CheckpointFile.Writer writer = CheckpointFile.create(path)) {
+            for (int i = 0; i < count; i++) {
+                Checkpoint checkpoint = i % 3 == 0 ? first : i % 3 == 1 ? second : state;
+                assertThat(writer.add(checkpoint.at(1000L * i)), equalTo((long) i));
+            }
+        }
+
+        try (CheckpointFile file = CheckpointFile.open(path)) {
+            assertThat(file.size(), equalTo((long) count));
+            for (int i = count - 1; i >= 0; i -= 7) {
+                Checkpoint checkpoint = i % 3 == 0 ? first : i % 3 == 1 ? second : state;
+                assertThat(file.get(i), equalTo(checkpoint.at(1000L * i)));
+            }
+            ReversibleMersenneTwister expected = new ReversibleMersenneTwister(ARRAY_SEED);
+            expected.skip(9_999_000);
+            assertThat(nextInts(file.restore(9999), 100).toArray(), equalTo(nextInts(expected, 100).toArray()));
+            assertThrows(IndexOutOfBoundsException.class, () -> file.get(count));
+        }
+    }
+
+    @Test
+    public void testCheckpointFileManySeeds() throws IOException {
+        Path path = folder.newFolder().toPath().resolve("checkpoints");
+        int count = 3000;
+        try (CheckpointFile.Writer writer = CheckpointFile.create(path)) {
+            for (int i = 0; i < count; i++) {
+                writer.add(Checkpoint.ofSeed(Checkpoint.Type.JAVA_RANDOM, i % 1000, i));
+            }
+        }
+        try (Stream<Path> files = Files.list(path.getParent())) {
+            assertThat(files.count(), equalTo(1L));
+        }
+
+        try (CheckpointFile file = CheckpointFile.open(path)) {
+            assertThat(file.size(), equalTo((long) count));
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < count; i += 3) {
+                    assertThat(file.get(i), equalTo(Checkpoint.ofSeed(Checkpoint.Type.JAVA_RANDOM, i % 1000, i)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCheckpointFileInvalid() throws IOException {
+        Path path = folder.newFile().toPath();
+        assertThrows(IOException.class, () -> CheckpointFile.open(path));
+    }
+}
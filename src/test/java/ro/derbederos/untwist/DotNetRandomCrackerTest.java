@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+public class DotNetRandomCrackerTest {
+
+    private static final long RANGE = 1 << 16;
+
+    @Test
+    public void testFromInts() {
+        DotNetRandom random = new DotNetRandom(12345);
+        DotNetRandomCracker.Match match = DotNetRandomCracker.fromInts(nextInts(random, 55));
+
+        assertThat(match.seed(), equalTo(12345));
+        assertThat(match.position(), equalTo(0L));
+        assertThat(nextInts(match.newGenerator(), 100), equalTo(nextInts(new DotNetRandom(12345), 100)));
+    }
+
+    @Test
+    public void testFromIntsAfterPosition() {
+        int[] seeds = {-987654321, Integer.MIN_VALUE, 1235545220, 1333158113};
+        for (int seed : seeds) {
+            DotNetRandom random = new DotNetRandom(seed);
+            nextInts(random, 1000);
+            int[] values = nextInts(random, 60);
+            DotNetRandomCracker.Match match = DotNetRandomCracker.fromInts(values);
+
+            assertThat(match.seed(), equalTo(seed == Integer.MIN_VALUE ? Integer.MAX_VALUE : Math.abs(seed)));
+            assertThat(match.position(), equalTo(1000L));
+            assertThat(nextInts(match.newGenerator(), 60), equalTo(values));
+        }
+    }
+
+    @Test
+    public void testFromIntsSeedNotFound() {
+        DotNetRandom random = new DotNetRandom(42);
+        nextInts(random, 100);
+        int[] values = nextInts(random, 55);
+        DotNetRandomCracker.Match match = DotNetRandomCracker.fromInts(values, 99);
+
+        assertThat(match.seed(), equalTo(-1));
+        assertThat(match.position(), equalTo(-1L));
+        DotNetRandom generator = match.newGenerator();
+        assertThat(nextInts(generator, 55), equalTo(values));
+        assertThat(generator.nextInt(), equalTo(random.nextInt()));
+        assertThat(DotNetRandomCracker.fromInts(values, 100).position(), equalTo(100L));
+    }
+
+    @Test
+    public void testFromIntsInconsistent() {
+        int[] values = nextInts(new DotNetRandom(7), 56);
+        values[55] ^= 1;
+
+        assertThat(DotNetRandomCracker.fromInts(values), nullValue());
+    }
+
+    @Test
+    public void testFromDoubles() {
+        DotNetRandom random = new DotNetRandom(-5);
+        random.nextDouble();
+        double[] values = new double[55];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble();
+        }
+        DotNetRandomCracker.Match match = DotNetRandomCracker.fromDoubles(values);
+
+        assertThat(match.seed(), equalTo(5));
+        assertThat(match.position(), equalTo(1L));
+    }
+
+    @Test
+    public void testSearchInts() {
+        int seed = 1_000_000_007;
+        DotNetRandom random = new DotNetRandom(seed);
+        random.nextInt(6);
+        random.nextInt(6);
+        int[] rolls = new int[16];
+        for (int i = 0; i < rolls.length; i++) {
+            rolls[i] = random.nextInt(6);
+        }
+        List<DotNetRandomCracker.Match> matches = search(DotNetRandomCracker.searchInts(6, rolls, 4), seed);
+
+        assertThat(matches.size(), equalTo(1));
+        assertThat(matches.get(0).seed(), equalTo(seed));
+        assertThat(matches.get(0).position(), equalTo(2L));
+        assertThat(matches.get(0).newGenerator().nextInt(6), equalTo(rolls[0]));
+    }
+
+    @Test
+    public void testSearchRange() {
+        int seed = 777;
+        DotNetRandom random = new DotNetRandom(seed);
+        int[] values = {random.nextInt(-1000, 1000), random.nextInt(-1000, 1000), random.nextInt(-1000, 1000)};
+        List<DotNetRandomCracker.Match> matches = search(DotNetRandomCracker.searchRange(-1000, 1000, values), seed);
+        assertThat(matches.get(0).seed(), equalTo(seed));
+
+        random = new DotNetRandom(seed);
+        values = new int[]{random.nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE)};
+        matches = search(DotNetRandomCracker.searchRange(Integer.MIN_VALUE, Integer.MAX_VALUE, values), seed);
+        assertThat(matches.get(0).seed(), equalTo(seed));
+        assertThat(matches.get(0).newGenerator().nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE), equalTo(values[0]));
+    }
+
+    @Test
+    public void testSearchLargeRangeAfterPosition() {
+        // each value of the large range takes two samples, so the position is odd
+        int seed = 31337;
+        DotNetRandom random = new DotNetRandom(seed);
+        random.nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        random.nextInt();
+        int[] values = {random.nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE),
+                random.nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE)};
+        List<DotNetRandomCracker.Match> matches = search(
+                DotNetRandomCracker.searchRange(Integer.MIN_VALUE, Integer.MAX_VALUE, values, 8), seed);
+
+        assertThat(matches.size(), equalTo(1));
+        assertThat(matches.get(0).seed(), equalTo(seed));
+        assertThat(matches.get(0).position(), equalTo(3L));
+        DotNetRandom generator = matches.get(0).newGenerator();
+        assertThat(generator.nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE), equalTo(values[0]));
+        assertThat(generator.nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE), equalTo(values[1]));
+        assertThat(generator.nextInt(), equalTo(random.nextInt()));
+        assertThat(search(DotNetRandomCracker.searchRange(Integer.MIN_VALUE, Integer.MAX_VALUE, values, 2), seed),
+                equalTo(Collections.emptyList()));
+    }
+
+    @Test
+    public void testSearchDoubles() {
+        int seed = 2_000_000_000;
+        DotNetRandom random = new DotNetRandom(seed);
+        random.nextDouble();
+        double[] values = {random.nextDouble(), random.nextDouble()};
+        List<DotNetRandomCracker.Match> matches = search(DotNetRandomCracker.searchDoubles(values, 3), seed);
+
+        assertThat(matches.size(), equalTo(1));
+        assertThat(matches.get(0).position(), equalTo(1L));
+        assertThat(search(DotNetRandomCracker.searchDoubles(values, 0), seed), equalTo(Collections.emptyList()));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.fromInts(new int[54]));
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.fromInts(new int[55], -1));
+        int[] values = new int[55];
+        values[3] = Integer.MAX_VALUE;
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.fromInts(values));
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.fromDoubles(new double[]{0.1}));
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.searchInts(6, 1, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.searchInts(6, 6));
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.searchInts(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomCracker.searchRange(1, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> DotNetRandomCracker.searchDoubles(new double[]{0.5}, 1));
+    }
+
+    private static List<DotNetRandomCracker.Match> search(DotNetRandomCracker.Search search, int seed) {
+        long from = Math.max(0, seed - RANGE / 2);
+        return search.search(from, from + RANGE, ForkJoinPool.commonPool(), null);
+    }
+
+    private static int[] nextInts(DotNetRandom random, int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
+
+public class DotNetRandomSeedSweepTest {
+
+    private static final int COUNT = 60;
+    // the seeds around 0, MSEED, the largest seed, both overflows, and the seeds initialized as .NET does
+    private static final long[] SEEDS = {
+            0, 161803398, Integer.MAX_VALUE, 979892000L, 614279151L, 1235228408L, 1235545220L, 1333158113L
+    };
+
+    @Test
+    public void testValuesAsDotNetRandom() {
+        DotNetRandomSeedSweep sweep = DotNetRandomSeedSweep.forOutputs(COUNT, DotNetRandomSeedSweepTest::sameAsDotNet);
+        for (long seed : SEEDS) {
+            long from = Math.max(0, seed - 2048);
+            long to = Math.min(1L << 31, seed + 2048);
+            assertThat(sweep.search(from, to, ForkJoinPool.commonPool(), null).length, equalTo((int) (to - from)));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 8; i++) {
+            long from = random.nextInt(Integer.MAX_VALUE - 10000);
+            assertThat(sweep.search(from, from + 10000, ForkJoinPool.commonPool(), null).length, equalTo(10000));
+        }
+    }
+
+    @Test
+    public void testSearchInts() {
+        int seed = 1235545220;
+        DotNetRandom random = new DotNetRandom(-seed);
+        int[] prefix = {random.nextInt(), random.nextInt()};
+        int[] seeds = DotNetRandomSeedSweep.forInts(prefix).search(seed - 100000L, seed + 100000L,
+                ForkJoinPool.commonPool(), null);
+        assertThat(seeds, equalTo(new int[]{seed}));
+    }
+
+    @Test
+    public void testSearchMinValue() {
+        DotNetRandom random = new DotNetRandom(Integer.MIN_VALUE);
+        int[] seeds = DotNetRandomSeedSweep.forInts(random.nextInt()).search((1L << 31) - 1000, 1L << 31,
+                ForkJoinPool.commonPool(), null);
+        assertThat(seeds, equalTo(new int[]{Integer.MAX_VALUE}));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, DotNetRandomSeedSweep::forInts);
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomSeedSweep.forOutputs(0, (seed, values) -> true));
+        assertThrows(IllegalArgumentException.class, () -> DotNetRandomSeedSweep.forInts(1)
+                .search(0, (1L << 31) + 1, ForkJoinPool.commonPool(), null));
+    }
+
+    private static boolean sameAsDotNet(int seed, int[] values) {
+        DotNetRandom random = new DotNetRandom(seed);
+        for (int value : values) {
+            if (value != random.nextInt()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
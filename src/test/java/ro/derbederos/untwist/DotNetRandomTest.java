@@ -19,6 +19,7 @@ package ro.derbederos.untwist;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.stream.IntStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -289,4 +290,83 @@ public class DotNetRandomTest extends ReverseRandomGeneratorAbstractTest<DotNetR
         //compare states
         assertThat(actual, equalTo(expected));
     }
+
+    @Test
+    public void testSkipVsNext() {
+        for (int n : new int[]{0, 1, 2, 1000, 65536, 100003}) {
+            DotNetRandom generator1 = makeGenerator();
+            DotNetRandom generator2 = makeGenerator();
+            generator1.nextInt();
+            generator2.nextInt();
+
+            generator1.skip(n);
+            nextInts(generator2, n).toArray();
+
+            assertThat(generator1.getState(), equalTo(generator2.getState()));
+            assertThat(generator1.nextInt(), equalTo(generator2.nextInt()));
+        }
+    }
+
+    @Test
+    public void testSkipVsPrev() {
+        for (int n : new int[]{1, 2, 1000, 65536, 100003}) {
+            DotNetRandom generator1 = makeGenerator();
+            DotNetRandom generator2 = makeGenerator();
+
+            generator1.skip(-n);
+            for (int i = 0; i < n; i++) {
+                generator2.prevInt();
+            }
+
+            assertThat(generator1.getState(), equalTo(generator2.getState()));
+            assertThat(generator1.prevInt(), equalTo(generator2.prevInt()));
+        }
+    }
+
+    @Test
+    public void testSkipFarAndBack() {
+        DotNetRandom generator = makeGenerator();
+        int[] expected = nextInts(generator, 100).toArray();
+        generator.skip(-100);
+
+        generator.skip(Long.MAX_VALUE);
+        generator.skip(Long.MIN_VALUE);
+        generator.skip(1);
+
+        assertThat(nextInts(generator, 100).toArray(), equalTo(expected));
+    }
+
+    @Test
+    public void testSkipNotReducedState() {
+        ByteBuffer state = ByteBuffer.allocate(generator.stateSize());
+        generator.saveState(state);
+        // seedArray[5] = MBIG, a value not given by the seeds
+        state.putInt(2 * Integer.BYTES + 5 * Integer.BYTES, Integer.MAX_VALUE);
+        DotNetRandom generator1 = makeGenerator();
+        DotNetRandom generator2 = makeGenerator();
+        generator1.restoreState(ByteBuffer.wrap(state.array()));
+        generator2.restoreState(ByteBuffer.wrap(state.array()));
+
+        generator1.skip(200_000);
+        nextInts(generator2, 200_000).toArray();
+
+        assertThat(generator1.getState(), equalTo(generator2.getState()));
+    }
+
+    @Test
+    public void testRestoreStateInvalidIndices() {
+        ByteBuffer state = ByteBuffer.allocate(generator.stateSize());
+        generator.saveState(state);
+        int[] expected = nextInts(generator, 10).toArray();
+        state.putInt(Integer.BYTES, 22);
+
+        assertThrows(IllegalArgumentException.class, () -> generator.restoreState(ByteBuffer.wrap(state.array())));
+        state.putInt(0, 34);
+        state.putInt(Integer.BYTES, 55);
+        generator.restoreState(ByteBuffer.wrap(state.array()));
+        state.putInt(0, 55);
+        state.putInt(Integer.BYTES, 21);
+        generator.restoreState(ByteBuffer.wrap(state.array()));
+        assertThat(nextInts(generator, 10).toArray(), equalTo(expected));
+    }
 }
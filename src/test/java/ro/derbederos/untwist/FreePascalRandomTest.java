@@ -24,6 +24,7 @@ import java.util.stream.LongStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
 import static ro.derbederos.untwist.RandomUtils.nextDoubles;
 import static ro.derbederos.untwist.RandomUtils.nextInts;
 import static ro.derbederos.untwist.RandomUtils.nextLongs;
@@ -251,4 +252,27 @@ public class FreePascalRandomTest extends ReversibleMersenneTwisterTest {
     public void testNextPrevMixedCalls() {
         super.testNextPrevMixedCalls();
     }
+
+    @Test
+    public void testFromDoubles() {
+        FreePascalRandom random = (FreePascalRandom) makeGenerator();
+        random.skip(100);
+        double[] outputs = new double[624];
+        random.nextDoubles(outputs, 0, outputs.length);
+
+        FreePascalRandom recovered = FreePascalRandom.fromDoubles(outputs, 100);
+
+        assertThat(recovered.getState(), equalTo(random.getState()));
+        assertThat(nextDoubles(recovered, 1000).toArray(), equalTo(nextDoubles(random, 1000).toArray()));
+        assertThat(recovered.prevInt(100), equalTo(random.prevInt(100)));
+    }
+
+    @Test
+    public void testFromDoublesInvalid() {
+        double[] outputs = new double[624];
+        makeGenerator().nextDoubles(outputs, 0, outputs.length);
+        outputs[10] = Math.nextUp(outputs[10]);
+
+        assertThrows(IllegalArgumentException.class, () -> FreePascalRandom.fromDoubles(outputs, 0));
+    }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItemInArray;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThrows;
+
+public class JavaRandomCrackerTest {
+
+    private static final int SAMPLES = 2000;
+
+    @Test
+    public void testFromInts() {
+        Random seeds = new Random(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            ReversibleJavaRandom random = new ReversibleJavaRandom(seeds.nextLong());
+            random.nextInt(1000);
+            long expected = JavaRandomCracker.seedOf(random.getSeed());
+
+            long[] states = JavaRandomCracker.fromInts(random.nextInt(), random.nextInt());
+
+            assertThat(boxed(states), hasItemInArray(expected));
+            assertThat(states.length, lessThanOrEqualTo(2));
+        }
+    }
+
+    @Test
+    public void testFromLong() {
+        Random seeds = new Random(2);
+        for (int i = 0; i < SAMPLES; i++) {
+            long seed = seeds.nextLong();
+            long value = new Random(seed).nextLong();
+
+            long[] states = JavaRandomCracker.fromLong(value);
+
+            assertThat(boxed(states), hasItemInArray(JavaRandomCracker.seedOf(seed)));
+        }
+    }
+
+    @Test
+    public void testFromDouble() {
+        Random seeds = new Random(3);
+        for (int i = 0; i < SAMPLES; i++) {
+            long seed = seeds.nextLong();
+            double value = new Random(seed).nextDouble();
+
+            long[] states = JavaRandomCracker.fromDouble(value);
+
+            assertThat(boxed(states), hasItemInArray(JavaRandomCracker.seedOf(seed)));
+        }
+    }
+
+    @Test
+    public void testFromFloats() {
+        Random seeds = new Random(4);
+        for (int i = 0; i < SAMPLES; i++) {
+            long seed = seeds.nextLong();
+            Random random = new Random(seed);
+
+            long[] states = JavaRandomCracker.fromFloats(random.nextFloat(), random.nextFloat(), random.nextFloat());
+
+            assertThat(states, equalTo(new long[]{JavaRandomCracker.seedOf(seed)}));
+        }
+    }
+
+    @Test
+    public void testNewGenerator() {
+        Random random = new Random(-123456789L);
+        random.nextInt();
+        int first = random.nextInt();
+        int second = random.nextInt();
+        int third = random.nextInt();
+
+        long[] states = JavaRandomCracker.fromInts(first, second);
+        ReversibleJavaRandom generator = JavaRandomCracker.newGenerator(states[0]);
+
+        assertThat(generator.nextInt(), equalTo(first));
+        assertThat(generator.nextInt(), equalTo(second));
+        assertThat(generator.nextInt(), equalTo(third));
+        generator.skip(-4);
+        assertThat(generator.getSeed(), equalTo(-123456789L & ((1L << 48) - 1)));
+    }
+
+    @Test
+    public void testFromBoundedIntsDice() {
+        assertFromBoundedInts(3, 40, 6);
+    }
+
+    @Test
+    public void testFromBoundedIntsPowerOfTwo() {
+        assertFromBoundedInts(4, 16, 16);
+        assertFromBoundedInts(5, 4, 1 << 20);
+    }
+
+    @Test
+    public void testFromBoundedIntsOdd() {
+        assertFromBoundedInts(6, 20, 7);
+    }
+
+    @Test
+    public void testFromBoundedIntsMixed() {
+        Random seeds = new Random(7);
+        for (int i = 0; i < 3; i++) {
+            long seed = seeds.nextLong();
+            Random random = new Random(seed);
+            int[] bounds = new int[24];
+            int[] values = new int[bounds.length];
+            for (int j = 0; j < bounds.length; j++) {
+                bounds[j] = j % 3 == 0 ? 1 : j % 3 == 1 ? 100 : 64;
+                values[j] = random.nextInt(bounds[j]);
+            }
+
+            ReversibleJavaRandom generator = JavaRandomCracker.fromBoundedInts(bounds, values);
+
+            assertThat(generator.getSeed(), equalTo(new ReversibleJavaRandom(seed).getSeed()));
+        }
+    }
+
+    @Test
+    public void testFromBoundedIntsRejected() {
+        // about a third of the values are rejected
+        int bound = 1_500_000_000;
+        Random seeds = new Random(8);
+        for (int i = 0; i < 5; i++) {
+            long seed = seeds.nextLong();
+            int[] values = nextInts(new Random(seed), 10, bound);
+
+            ReversibleJavaRandom generator = JavaRandomCracker.fromBoundedInts(bound, values);
+
+            assertThat(generator.getSeed(), equalTo(new ReversibleJavaRandom(seed).getSeed()));
+        }
+    }
+
+    @Test
+    public void testFromBoundedIntsOftenRejected() {
+        // about half of the values are rejected, also inside the windows of the search; when the first
+        // value is rejected, the state after it gives the same values
+        int bound = (1 << 30) + 1;
+        Random seeds = new Random(10);
+        for (int i = 0; i < 5; i++) {
+            long seed = seeds.nextLong();
+            int[] values = nextInts(new Random(seed), 4, bound);
+
+            ReversibleJavaRandom generator = JavaRandomCracker.fromBoundedInts(bound, values);
+
+            assertThat(nextInts(generator, values.length, bound), equalTo(values));
+        }
+    }
+
+    @Test
+    public void testFromBoundedIntsSmallBound() {
+        assertFromBoundedInts(11, 120, 3);
+    }
+
+    @Test
+    public void testFromBoundedIntsMinimum() {
+        assertFromBoundedInts(12, 36, 6);
+        assertFromBoundedInts(13, 16, 16);
+        assertThrows(IllegalArgumentException.class,
+                () -> JavaRandomCracker.fromBoundedInts(6, nextInts(new Random(14), 35, 6)));
+        assertThrows(IllegalArgumentException.class,
+                () -> JavaRandomCracker.fromBoundedInts(16, nextInts(new Random(15), 15, 16)));
+    }
+
+    @Test
+    public void testFromBoundedIntsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromBoundedInts(6, 1, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromBoundedInts(6, 6));
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromBoundedInts(0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> JavaRandomCracker.fromBoundedInts(2, nextInts(new Random(9), 100, 2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> JavaRandomCracker.fromBoundedInts(new int[]{6, 6}, new int[]{1}));
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromDouble(1.0));
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromDouble(-0.5));
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromDouble(Double.MIN_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromFloats(0.5f));
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomCracker.fromFloats(0.5f, Float.NaN));
+    }
+
+    private static void assertFromBoundedInts(long seeds, int count, int bound) {
+        Random random = new Random(seeds);
+        for (int i = 0; i < 3; i++) {
+            long seed = random.nextLong();
+            int[] values = nextInts(new Random(seed), count, bound);
+
+            ReversibleJavaRandom generator = JavaRandomCracker.fromBoundedInts(bound, values);
+
+            assertThat(generator.getSeed(), equalTo(new ReversibleJavaRandom(seed).getSeed()));
+            assertThat(nextInts(generator, count, bound), equalTo(values));
+        }
+    }
+
+    private static int[] nextInts(Random random, int count, int bound) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(bound);
+        }
+        return values;
+    }
+
+    private static Long[] boxed(long[] values) {
+        return LongStream.of(values).boxed().toArray(Long[]::new);
+    }
+}
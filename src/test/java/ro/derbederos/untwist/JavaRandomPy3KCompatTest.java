@@ -130,6 +130,22 @@ public class JavaRandomPy3KCompatTest {
         assertThat(actual, equalTo(expected));
     }
 
+    @Test
+    public void testNextPrevFloatsChunks() {
+        JavaRandomPy3KCompat expected = new JavaRandomPy3KCompat(0L);
+        float[] floats = new float[1000];
+        generator.nextFloats(floats, 3, 997);
+        for (int i = 3; i < floats.length; i++) {
+            assertThat(floats[i], equalTo(expected.nextFloat()));
+        }
+
+        generator.prevFloats(floats, 0, 600);
+        for (int i = 0; i < 600; i++) {
+            assertThat(floats[i], equalTo(expected.prevFloat()));
+        }
+        assertThat(generator.nextLong(), equalTo(expected.nextLong()));
+    }
+
     @Test
     public void testNextBooleanExactValue() {
         boolean actual = generator.nextBoolean();
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThrows;
+
+public class JavaRandomSeedSearchTest {
+
+    private static final long RANGE = 1 << 21;
+
+    @Test
+    public void testSearchBooleans() {
+        long seed = 0x1234_5678_9ABCL;
+        Random random = new Random(seed);
+        boolean[] flips = new boolean[64];
+        for (int i = 0; i < flips.length; i++) {
+            flips[i] = random.nextBoolean();
+        }
+        JavaRandomSeedSearch search = JavaRandomSeedSearch.forBooleans(flips);
+        assertThat(search.searchSpaceSize(), equalTo(1L << 47));
+
+        assertThat(search(search, seed), equalTo(new long[]{JavaRandomCracker.seedOf(seed)}));
+    }
+
+    @Test
+    public void testSearchBoundedInts() {
+        long seed = -98765L;
+        Random random = new Random(seed);
+        int[] rolls = new int[40];
+        for (int i = 0; i < rolls.length; i++) {
+            rolls[i] = random.nextInt(6);
+        }
+        JavaRandomSeedSearch search = JavaRandomSeedSearch.forBoundedInts(6, rolls);
+        assertThat(search.searchSpaceSize(), equalTo(1L << 48));
+
+        long[] states = search(search, seed);
+
+        assertThat(states, equalTo(new long[]{JavaRandomCracker.seedOf(seed)}));
+        assertThat(JavaRandomCracker.newGenerator(states[0]).nextInt(6), equalTo(rolls[0]));
+    }
+
+    @Test
+    public void testSearchRejected() {
+        // about a third of the values are rejected
+        int bound = 1_500_000_000;
+        Random seeds = new Random(11);
+        for (int i = 0; i < 10; i++) {
+            long seed = seeds.nextLong();
+            Random random = new Random(seed);
+            int[] bounds = {4, bound, bound, bound};
+            int[] values = new int[bounds.length];
+            for (int j = 0; j < bounds.length; j++) {
+                values[j] = random.nextInt(bounds[j]);
+            }
+            JavaRandomSeedSearch search = JavaRandomSeedSearch.forBoundedInts(bounds, values);
+
+            assertThat(search(search, seed), equalTo(new long[]{JavaRandomCracker.seedOf(seed)}));
+        }
+    }
+
+    @Test
+    public void testSearchProgressAndThroughput() {
+        JavaRandomSeedSearch search = JavaRandomSeedSearch.forBoundedInts(1 << 16, 1, 2, 3, 4);
+        AtomicLong last = new AtomicLong();
+        DoubleAdder speeds = new DoubleAdder();
+
+        search.search(10, RANGE + 10, ForkJoinPool.commonPool(), new SearchProgressListener() {
+            @Override
+            public void onProgress(long searched, long total) {
+                assertThat(total, equalTo(RANGE));
+                last.accumulateAndGet(searched, Math::max);
+            }
+
+            @Override
+            public void onThroughput(double seedsPerSecond) {
+                speeds.add(seedsPerSecond);
+            }
+        });
+
+        assertThat(last.get(), equalTo(RANGE));
+        assertThat(speeds.sum(), greaterThan(0.0));
+    }
+
+    @Test
+    public void testSearchInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomSeedSearch.forBooleans(new boolean[47]));
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomSeedSearch.forBoundedInts(6, 6));
+        assertThrows(IllegalArgumentException.class,
+                () -> JavaRandomSeedSearch.forBoundedInts(new int[]{1 << 30, 1 << 30}, new int[]{1}));
+        JavaRandomSeedSearch search = JavaRandomSeedSearch.forBoundedInts(1 << 16, 1, 2, 3);
+        assertThrows(IllegalArgumentException.class,
+                () -> search.search(0, (1L << 32) + 1, ForkJoinPool.commonPool(), null));
+    }
+
+    /**
+     * Searches a range around the state of the first value.
+     */
+    private static long[] search(JavaRandomSeedSearch search, long seed) {
+        long state = (JavaRandomCracker.seedOf(seed) * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+        long index = state & (search.searchSpaceSize() - 1);
+        long from = Math.max(0, index - RANGE / 2);
+        long to = Math.min(search.searchSpaceSize(), from + RANGE);
+        return search.search(from, to, ForkJoinPool.commonPool(), null);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThrows;
+import static ro.derbederos.untwist.JavaRandomUniquifierSearch.Uniquifier.CURRENT;
+import static ro.derbederos.untwist.JavaRandomUniquifierSearch.Uniquifier.LEGACY;
+
+public class JavaRandomUniquifierSearchTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    @Test
+    public void testSeedUniquifier() {
+        JavaRandomUniquifierSearch.Uniquifier[] uniquifiers = {LEGACY, CURRENT};
+        long[] multipliers = {181783497276652981L, 1181783497276652981L};
+        for (int i = 0; i < uniquifiers.length; i++) {
+            JavaRandomUniquifierSearch.Uniquifier uniquifier = uniquifiers[i];
+            assertThat(uniquifier.value(0), equalTo(8682522807148012L));
+            assertThat(uniquifier.value(1), equalTo(8682522807148012L * multipliers[i]));
+            assertThat(uniquifier.value(999_999) * multipliers[i], equalTo(uniquifier.value(1_000_000)));
+            assertThat(uniquifier.value(-1) * multipliers[i], equalTo(8682522807148012L));
+        }
+    }
+
+    @Test
+    public void testSearch() {
+        long index = 123_457;
+        long nanoTime = 987_654_321_012_345L;
+        long seed = LEGACY.value(index) ^ nanoTime;
+        long state = JavaRandomCracker.seedOf(seed);
+        JavaRandomUniquifierSearch search =
+                JavaRandomUniquifierSearch.forState(LEGACY, state, nanoTime - MILLISECOND, nanoTime + MILLISECOND);
+
+        JavaRandomUniquifierSearch.Match[] matches = search.search(0, 1 << 24, ForkJoinPool.commonPool(), null);
+
+        assertThat(matches.length, equalTo(1));
+        assertThat(matches[0].index(), equalTo(index));
+        assertThat(matches[0].nanoTime(), equalTo(nanoTime));
+        assertThat(matches[0].seed(), equalTo(seed));
+    }
+
+    @Test
+    public void testSearchDefaultConstructor() {
+        long before = System.nanoTime();
+        Random random = new Random();
+        long after = System.nanoTime() + 1;
+        long[] states = JavaRandomCracker.fromInts(random.nextInt(), random.nextInt());
+        JavaRandomUniquifierSearch search = JavaRandomUniquifierSearch.forState(CURRENT, states[0], before, after);
+
+        JavaRandomUniquifierSearch.Match[] matches = search.search(1, 1 << 20, ForkJoinPool.commonPool(), null);
+
+        assertThat(matches.length, greaterThan(0));
+        Random expected = new Random(matches[0].seed());
+        assertThat(expected.nextLong(), equalTo(new Random(JavaRandomCracker.seedOf(states[0])).nextLong()));
+    }
+
+    @Test
+    public void testInvalidWindow() {
+        assertThrows(IllegalArgumentException.class, () -> JavaRandomUniquifierSearch.forState(CURRENT, 0, 10, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> JavaRandomUniquifierSearch.forState(CURRENT, 0, 0, (1L << 48) + 1));
+    }
+}
@@ -31,6 +31,7 @@ import java.util.stream.LongStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
 import static ro.derbederos.untwist.RandomUtils.nextDoubles;
 import static ro.derbederos.untwist.RandomUtils.nextInts;
 import static ro.derbederos.untwist.RandomUtils.nextLongs;
@@ -252,4 +253,58 @@ public class MersenneTwisterPy3kTest extends ReversibleMersenneTwisterTest {
         assertThat(expected, equalTo(2294769705264217817L));
         assertThat(actual, equalTo(expected));
     }
+
+    @Test
+    public void testFromOutputs() {
+        super.testFromOutputs();
+
+        MersenneTwisterPy3k random = (MersenneTwisterPy3k) makeGenerator();
+        int[] outputs = nextInts(random, 624).toArray();
+
+        MersenneTwisterPy3k recovered = MersenneTwisterPy3k.fromOutputs(outputs, 0);
+
+        assertThat(nextDoubles(recovered, 1000).toArray(), equalTo(nextDoubles(random, 1000).toArray()));
+    }
+
+    @Test
+    public void testFromDoubles() {
+        MersenneTwisterPy3k random = new MersenneTwisterPy3k(0x1234567823456789L);
+        random.skip(1001);
+        double[] doubles = nextDoubles(random, 623).toArray();
+
+        MersenneTwisterPy3k recovered = MersenneTwisterPy3k.fromDoubles(doubles, 1001);
+
+        assertThat(nextInts(recovered, 1000).toArray(), equalTo(nextInts(random, 1000).toArray()));
+        recovered.skip(-1000 - 2 * doubles.length);
+        assertThat(nextDoubles(recovered, doubles.length).toArray(), equalTo(doubles));
+    }
+
+    @Test
+    public void testFromDoublesInvalid() {
+        MersenneTwisterPy3k random = (MersenneTwisterPy3k) makeGenerator();
+        double[] doubles = nextDoubles(random, 700).toArray();
+
+        assertThrows(IllegalArgumentException.class,
+                     () -> MersenneTwisterPy3k.fromDoubles(Arrays.copyOf(doubles, 311), 0));
+        assertThrows(IllegalArgumentException.class,
+                     () -> MersenneTwisterPy3k.fromDoubles(Arrays.copyOf(doubles, 500), 0));
+        double[] tampered = doubles.clone();
+        tampered[650] = 0.5;
+        assertThrows(IllegalArgumentException.class, () -> MersenneTwisterPy3k.fromDoubles(tampered, 0));
+        double[] notRandom = doubles.clone();
+        notRandom[10] = 0.1;
+        assertThrows(IllegalArgumentException.class, () -> MersenneTwisterPy3k.fromDoubles(notRandom, 0));
+    }
+
+    @Test
+    public void testRecoverPython3Seed() {
+        for (long seed : new long[]{0, 1, 0xFFFFFFFFL, 0x100000000L, 0x1234567823456789L, -1}) {
+            MersenneTwisterPy3k generator = new MersenneTwisterPy3k(seed);
+            generator.skip(700);
+
+            assertThat(SeedUtils.recoverPython3Seed(generator, 700), equalTo(seed));
+        }
+        assertThrows(IllegalArgumentException.class,
+                     () -> SeedUtils.recoverPython3Seed(new MersenneTwisterPy3k(new int[]{1, 2, 3}), 0));
+    }
 }
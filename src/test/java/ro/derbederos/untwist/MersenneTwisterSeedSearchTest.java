@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
+
+public class MersenneTwisterSeedSearchTest {
+
+    private static final long RANGE = 3_000_000;
+
+    @Test
+    public void testSearchMersenneTwister() {
+        int seed = 2_000_123;
+        int[] prefix = prefix(new ReversibleMersenneTwister(seed));
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(prefix);
+
+        int[] seeds = search.search(seed - RANGE / 2 + 1, seed + RANGE / 2, ForkJoinPool.commonPool(), null);
+
+        assertThat(seeds, equalTo(new int[]{seed}));
+    }
+
+    @Test
+    public void testSearchMersenneTwisterNegativeSeed() {
+        int seed = -5;
+        int[] prefix = prefix(new ReversibleMersenneTwister(seed));
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(prefix);
+        long unsignedSeed = Integer.toUnsignedLong(seed);
+
+        int[] seeds = search.search(unsignedSeed - 1001, unsignedSeed + 3, ForkJoinPool.commonPool(), null);
+
+        assertThat(seeds, equalTo(new int[]{seed}));
+    }
+
+    @Test
+    public void testSearchFreePascal() {
+        int seed = 1_000_002;
+        int[] prefix = prefix(new FreePascalRandom(seed));
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forFreePascal(prefix);
+
+        int[] seeds = search.search(0, RANGE, ForkJoinPool.commonPool(), null);
+
+        assertThat(seeds, equalTo(new int[]{seed}));
+    }
+
+    @Test
+    public void testSearchPython3() {
+        int seed = 123_457;
+        int[] prefix = prefix(new MersenneTwisterPy3k(seed));
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forPython3(prefix);
+
+        int[] seeds = search.search(seed - 40_000, seed + 20_001, ForkJoinPool.commonPool(), null);
+
+        assertThat(seeds, equalTo(new int[]{seed}));
+    }
+
+    @Test
+    public void testSearchNotFound() {
+        int[] prefix = prefix(new ReversibleMersenneTwister((int) RANGE + 10));
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(prefix);
+
+        int[] seeds = search.search(0, RANGE, ForkJoinPool.commonPool(), null);
+
+        assertThat(seeds.length, equalTo(0));
+    }
+
+    @Test
+    public void testSearchProgress() {
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(1, 2, 3);
+        AtomicLong last = new AtomicLong();
+
+        search.search(10, RANGE + 10, ForkJoinPool.commonPool(),
+                (searched, total) -> {
+                    assertThat(total, equalTo(RANGE));
+                    last.accumulateAndGet(searched, Math::max);
+                });
+
+        assertThat(last.get(), equalTo(RANGE));
+    }
+
+    @Test
+    public void testSearchCancel() {
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(1, 2, 3);
+
+        assertThrows(CancellationException.class,
+                () -> search.search(ForkJoinPool.commonPool(), (searched, total) -> search.cancel()));
+        assertThat(search.isCancelled(), equalTo(true));
+    }
+
+    @Test
+    public void testSearchAfterCancel() {
+        ReversibleMersenneTwister random = new ReversibleMersenneTwister(12345);
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(random.nextInt(),
+                random.nextInt(), random.nextInt());
+        search.cancel();
+
+        assertThat(search.search(0, 1 << 16, ForkJoinPool.commonPool(), null), equalTo(new int[]{12345}));
+        assertThat(search.isCancelled(), equalTo(false));
+    }
+
+    @Test
+    public void testSearchInvalid() {
+        assertThrows(IllegalArgumentException.class, MersenneTwisterSeedSearch::forMersenneTwister);
+        MersenneTwisterSeedSearch search = MersenneTwisterSeedSearch.forMersenneTwister(1);
+        assertThrows(IllegalArgumentException.class,
+                () -> search.search(-1, 10, ForkJoinPool.commonPool(), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> search.search(10, 9, ForkJoinPool.commonPool(), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> search.search(0, (1L << 32) + 1, ForkJoinPool.commonPool(), null));
+    }
+
+    private static int[] prefix(ReversibleMersenneTwister generator) {
+        int[] prefix = new int[2];
+        generator.nextInts(prefix, 0, prefix.length);
+        return prefix;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
+import static ro.derbederos.untwist.RandomUtils.nextDoubles;
+import static ro.derbederos.untwist.RandomUtils.nextInts;
+import static ro.derbederos.untwist.RandomUtils.prevInts;
+
+public class OffHeapMersenneTwisterTest {
+
+    private static final int[] ARRAY_SEED = {0x123, 0x234, 0x345, 0x456};
+
+    @Test
+    public void testSameValuesAsReversibleMersenneTwister() {
+        MersenneTwisterArena arena = new MersenneTwisterArena();
+        int[] slots = {arena.allocate(), arena.allocate(), arena.allocate()};
+        ReversibleMersenneTwister[] expected = {new ReversibleMersenneTwister(1234557890),
+                new ReversibleMersenneTwister(ARRAY_SEED), new ReversibleMersenneTwister(0x1234567823456789L)};
+        OffHeapMersenneTwister view = arena.view(slots[0]);
+        view.setSeed(1234557890);
+        view.moveTo(slots[1]);
+        view.setSeed(ARRAY_SEED);
+        view.moveTo(slots[2]);
+        view.setSeed(0x1234567823456789L);
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < slots.length; i++) {
+                view.moveTo(slots[i]);
+                assertThat(nextInts(view, 500).toArray(), equalTo(nextInts(expected[i], 500).toArray()));
+            }
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < slots.length; i++) {
+                view.moveTo(slots[i]);
+                assertThat(prevInts(view, 700).toArray(), equalTo(prevInts(expected[i], 700).toArray()));
+            }
+        }
+        view.moveTo(slots[1]);
+        assertThat(nextDoubles(view, 1000).toArray(), equalTo(nextDoubles(expected[1], 1000).toArray()));
+        assertThat(view.nextGaussian(), equalTo(expected[1].nextGaussian()));
+    }
+
+    @Test
+    public void testCopyFrom() {
+        MersenneTwisterArena arena = new MersenneTwisterArena();
+        ReversibleMersenneTwister expected = new ReversibleMersenneTwister(ARRAY_SEED);
+        expected.skip(1000);
+        OffHeapMersenneTwister view = arena.view(arena.allocate());
+
+        view.copyFrom(expected);
+
+        assertThat(nextInts(view, 2000).toArray(), equalTo(nextInts(expected, 2000).toArray()));
+        assertThat(prevInts(view, 5000).toArray(), equalTo(prevInts(expected, 5000).toArray()));
+    }
+
+    @Test
+    public void testAllocateFree() {
+        MersenneTwisterArena arena = new MersenneTwisterArena();
+        for (int i = 0; i < 1500; i++) {
+            assertThat(arena.allocate(), equalTo(i));
+        }
+        assertThat(arena.size(), equalTo(1500));
+        assertThat(arena.offHeapBytes(), equalTo(2L * 1024 * 625 * Integer.BYTES));
+
+        arena.free(7);
+        arena.free(1200);
+        assertThat(arena.size(), equalTo(1498));
+        assertThat(arena.allocate(), equalTo(1200));
+        assertThat(arena.allocate(), equalTo(7));
+        assertThat(arena.allocate(), equalTo(1500));
+
+        arena.free(3);
+        assertThrows(IllegalArgumentException.class, () -> arena.free(3));
+        assertThrows(IllegalArgumentException.class, () -> arena.free(-1));
+        assertThrows(IllegalArgumentException.class, () -> arena.free(5000));
+        assertThrows(IllegalArgumentException.class, () -> arena.view(5000));
+        assertThrows(IllegalArgumentException.class, () -> arena.view(3));
+        assertThrows(IllegalArgumentException.class, () -> arena.view(1501));
+
+        OffHeapMersenneTwister view = arena.view(4);
+        assertThrows(IllegalArgumentException.class, () -> view.moveTo(3));
+        assertThrows(IllegalArgumentException.class, () -> view.moveTo(1501));
+        assertThat(view.slot(), equalTo(4));
+    }
+
+    @Test
+    public void testTwistInPlaceOnEveryPageOffset() {
+        MersenneTwisterArena arena = new MersenneTwisterArena();
+        for (int i = 0; i < MersenneTwisterArena.SLOTS_PER_PAGE + 2; i++) {
+            arena.allocate();
+        }
+        int[] slots = {0, MersenneTwisterArena.SLOTS_PER_PAGE - 1, MersenneTwisterArena.SLOTS_PER_PAGE + 1};
+        OffHeapMersenneTwister view = arena.view(slots[0]);
+        for (int slot : slots) {
+            ReversibleMersenneTwister expected = new ReversibleMersenneTwister(slot);
+            view.moveTo(slot);
+            view.setSeed(slot);
+
+            assertThat(nextInts(view, 2000).toArray(), equalTo(nextInts(expected, 2000).toArray()));
+            assertThat(prevInts(view, 2500).toArray(), equalTo(prevInts(expected, 2500).toArray()));
+        }
+    }
+
+    @Test
+    public void testNotSerializable() {
+        MersenneTwisterArena arena = new MersenneTwisterArena();
+        OffHeapMersenneTwister view = arena.view(arena.allocate());
+
+        assertThrows(NotSerializableException.class,
+                () -> new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(view));
+    }
+}
@@ -25,6 +25,11 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.IntSummaryStatistics;
 import java.util.function.Supplier;
 import java.util.stream.DoubleStream;
@@ -35,6 +40,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static ro.derbederos.untwist.RandomUtils.*;
 import static ro.derbederos.untwist.Utils.*;
 
@@ -425,6 +431,171 @@ public abstract class ReverseRandomGeneratorAbstractTest<T extends ReverseRandom
         assertThat(actual, equalTo(reverseArray(expected)));
     }
 
+    @DataProvider(format = "%m %i")
+    public static Object[][] dataProviderTestNextArrays() {
+        return new Object[][]{{0}, {1}, {623}, {2459}, {2467}};
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testNextInts(int size) {
+        T other = makeGenerator();
+        generator.nextInt();
+        other.nextInt();
+        int[] expected = new int[size + 5];
+        int[] actual = new int[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.nextInt();
+        }
+
+        other.nextInts(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.nextInt(), equalTo(generator.nextInt()));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testNextLongs(int size) {
+        T other = makeGenerator();
+        generator.nextInt();
+        other.nextInt();
+        long[] expected = new long[size + 5];
+        long[] actual = new long[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.nextLong();
+        }
+
+        other.nextLongs(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.nextInt(), equalTo(generator.nextInt()));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testNextDoubles(int size) {
+        T other = makeGenerator();
+        generator.nextInt();
+        other.nextInt();
+        double[] expected = new double[size + 5];
+        double[] actual = new double[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.nextDouble();
+        }
+
+        other.nextDoubles(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.nextInt(), equalTo(generator.nextInt()));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testNextFloats(int size) {
+        T other = makeGenerator();
+        generator.nextInt();
+        other.nextInt();
+        float[] expected = new float[size + 5];
+        float[] actual = new float[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.nextFloat();
+        }
+
+        other.nextFloats(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.nextInt(), equalTo(generator.nextInt()));
+    }
+
+    @Test
+    public void testNextArraysOutOfBounds() {
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.nextInts(new int[10], -1, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.nextLongs(new long[10], 6, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.nextDoubles(new double[10], 0, 11));
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.nextFloats(new float[10], 5, -1));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testPrevInts(int size) {
+        T other = makeGenerator();
+        generator.prevInt();
+        other.prevInt();
+        int[] expected = new int[size + 5];
+        int[] actual = new int[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.prevInt();
+        }
+
+        other.prevInts(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.prevInt(), equalTo(generator.prevInt()));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testPrevLongs(int size) {
+        T other = makeGenerator();
+        generator.prevInt();
+        other.prevInt();
+        long[] expected = new long[size + 5];
+        long[] actual = new long[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.prevLong();
+        }
+
+        other.prevLongs(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.prevInt(), equalTo(generator.prevInt()));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testPrevDoubles(int size) {
+        T other = makeGenerator();
+        generator.prevInt();
+        other.prevInt();
+        double[] expected = new double[size + 5];
+        double[] actual = new double[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.prevDouble();
+        }
+
+        other.prevDoubles(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.prevInt(), equalTo(generator.prevInt()));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTestNextArrays")
+    public void testPrevFloats(int size) {
+        T other = makeGenerator();
+        generator.prevInt();
+        other.prevInt();
+        float[] expected = new float[size + 5];
+        float[] actual = new float[size + 5];
+        for (int i = 3; i < size + 3; i++) {
+            expected[i] = generator.prevFloat();
+        }
+
+        other.prevFloats(actual, 3, size);
+
+        assertThat(actual, equalTo(expected));
+        assertThat(other.prevInt(), equalTo(generator.prevInt()));
+    }
+
+    @Test
+    public void testPrevArraysOutOfBounds() {
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.prevInts(new int[10], -1, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.prevLongs(new long[10], 6, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.prevDoubles(new double[10], 0, 11));
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.prevFloats(new float[10], 5, -1));
+    }
+
     @DataProvider(format = "%m %i")
     public static Object[][] dataProviderTestNextPrevBytes() {
         return new Object[][]{{2459}, {2467}, {256}, {257}, {258}, {259}};
@@ -616,4 +787,52 @@ public abstract class ReverseRandomGeneratorAbstractTest<T extends ReverseRandom
 
     @Test
     public abstract void testNextBooleanExactValue();
+
+    @Test
+    public void testSaveRestoreState() {
+        assumeTrue(generator instanceof StateCodec);
+        nextInts(generator, 1000).toArray();
+        generator.nextGaussian();
+        StateCodec codec = (StateCodec) generator;
+        ByteBuffer[] buffers = {ByteBuffer.allocate(codec.stateSize() + 7),
+                ByteBuffer.allocateDirect(codec.stateSize() + 7).order(ByteOrder.LITTLE_ENDIAN)};
+        for (ByteBuffer buffer : buffers) {
+            buffer.position(7);
+            codec.saveState(buffer);
+            assertThat(buffer.position(), equalTo(codec.stateSize() + 7));
+
+            T restored = makeGenerator();
+            buffer.position(7);
+            ((StateCodec) restored).restoreState(buffer);
+            assertThat(buffer.position(), equalTo(codec.stateSize() + 7));
+
+            assertThat(restored.nextGaussian(), equalTo(generator.nextGaussian()));
+            assertThat(restored.nextGaussian(), equalTo(generator.nextGaussian()));
+            assertThat(nextInts(restored, 700).toArray(), equalTo(nextInts(generator, 700).toArray()));
+
+            buffer.position(7);
+            ((StateCodec) restored).restoreState(buffer);
+            buffer.position(7);
+            codec.restoreState(buffer);
+            restored.undoNextGaussian();
+            generator.undoNextGaussian();
+            assertThat(prevInts(restored, 10).toArray(), equalTo(prevInts(generator, 10).toArray()));
+            generator.nextGaussian();
+        }
+    }
+
+    @Test
+    public void testSaveRestoreStateInvalid() {
+        assumeTrue(generator instanceof StateCodec);
+        StateCodec codec = (StateCodec) generator;
+        T expected = makeGenerator();
+        assertThrows(BufferOverflowException.class, () -> codec.saveState(ByteBuffer.allocate(codec.stateSize() - 1)));
+        assertThrows(BufferUnderflowException.class,
+                () -> codec.restoreState(ByteBuffer.allocate(codec.stateSize() - 1)));
+        byte[] invalid = new byte[codec.stateSize()];
+        Arrays.fill(invalid, (byte) 0xFF);
+        assertThrows(IllegalArgumentException.class, () -> codec.restoreState(ByteBuffer.wrap(invalid)));
+
+        assertThat(nextInts(generator, 10).toArray(), equalTo(nextInts(expected, 10).toArray()));
+    }
 }
@@ -19,12 +19,21 @@ package ro.derbederos.untwist;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.not;
 import static ro.derbederos.untwist.RandomUtils.nextDoubles;
 import static ro.derbederos.untwist.RandomUtils.nextInts;
 import static ro.derbederos.untwist.RandomUtils.nextLongs;
+import static ro.derbederos.untwist.RandomUtils.parallelDoubles;
+import static ro.derbederos.untwist.RandomUtils.parallelInts;
+import static ro.derbederos.untwist.RandomUtils.parallelLongs;
+import static ro.derbederos.untwist.RandomUtils.prevInts;
 import static ro.derbederos.untwist.Utils.nextBooleans;
 import static ro.derbederos.untwist.Utils.nextFloats;
 
@@ -242,4 +251,198 @@ public class ReversibleJavaRandomTest extends ReverseRandomGeneratorAbstractTest
         assertThat(expected, equalTo(6550299667129363735L));
         assertThat(actual, equalTo(expected));
     }
+
+    @Test
+    public void testSkipVsNext() {
+        for (int n : new int[]{0, 1, 2, 1000, 65537}) {
+            ReversibleJavaRandom generator1 = makeGenerator();
+            ReversibleJavaRandom generator2 = makeGenerator();
+            generator1.nextInt();
+            generator2.nextInt();
+
+            generator1.skip(n);
+            nextInts(generator2, n).toArray();
+
+            assertThat(generator1.nextInt(), equalTo(generator2.nextInt()));
+            assertThat(generator1.position(), equalTo(n + 2L));
+        }
+    }
+
+    @Test
+    public void testSkipVsPrev() {
+        for (int n : new int[]{1, 2, 1000, 65537}) {
+            ReversibleJavaRandom generator1 = makeGenerator();
+            ReversibleJavaRandom generator2 = makeGenerator();
+
+            generator1.skip(-n);
+            prevInts(generator2, n).toArray();
+
+            assertThat(generator1.prevInt(), equalTo(generator2.prevInt()));
+            assertThat(generator1.nextInt(), equalTo(generator2.nextInt()));
+            assertThat(generator1.position(), equalTo((1L << 48) - n));
+        }
+    }
+
+    @Test
+    public void testSkipFarAndBack() {
+        ReversibleJavaRandom generator = makeGenerator();
+        int[] expected = nextInts(generator, 100).toArray();
+        generator.skip(-100);
+
+        generator.skip(Long.MAX_VALUE);
+        generator.skip(Long.MIN_VALUE);
+        generator.skip(1);
+        generator.skip((1L << 48));
+
+        assertThat(generator.position(), equalTo(0L));
+        assertThat(nextInts(generator, 100).toArray(), equalTo(expected));
+    }
+
+    @Test
+    public void testParallelStreams() {
+        ReversibleJavaRandom generator = makeGenerator();
+        ReversibleJavaRandom expected = makeGenerator();
+        int size = 100_003;
+
+        assertThat(parallelInts(generator, size).toArray(), equalTo(nextInts(expected, size).toArray()));
+        assertThat(parallelLongs(generator, size).toArray(), equalTo(nextLongs(expected, size).toArray()));
+        assertThat(parallelDoubles(generator, size).toArray(), equalTo(nextDoubles(expected, size).toArray()));
+        assertThat(parallelInts(generator, size).sum(), equalTo(nextInts(expected, size).sum()));
+        assertThat(generator.nextInt(), equalTo(expected.nextInt()));
+    }
+
+    @Test
+    public void testNextGaussianVsRandom() {
+        Random expected = new Random(1000);
+        for (int i = 0; i < 10_001; i++) {
+            assertThat(generator.nextGaussian(), equalTo(expected.nextGaussian()));
+        }
+        assertThat(generator.nextInt(), equalTo(expected.nextInt()));
+    }
+
+    @Test
+    public void testNextGaussians() {
+        Random expected = new Random(1000);
+        for (int length : new int[]{0, 1, 2, 7, 100}) {
+            double[] gaussians = new double[length];
+            generator.nextGaussians(gaussians);
+            for (double gaussian : gaussians) {
+                assertThat(gaussian, equalTo(expected.nextGaussian()));
+            }
+        }
+        assertThat(generator.nextGaussian(), equalTo(expected.nextGaussian()));
+    }
+
+    @Test
+    public void testPrevGaussian() {
+        double[] expected = new double[1001];
+        generator.nextGaussians(expected);
+
+        for (int i = expected.length - 1; i >= 0; i--) {
+            assertThat(generator.prevGaussian(), equalTo(expected[i]));
+        }
+        assertThat(generator.position(), equalTo(0L));
+
+        double[] actual = new double[expected.length];
+        generator.nextGaussians(actual);
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    public void testPrevGaussianAfterOtherCalls() {
+        for (int seed = 0; seed < 1000; seed++) {
+            ReversibleJavaRandom random = new ReversibleJavaRandom(seed);
+            random.nextInt();
+            double first = random.nextGaussian();
+            double second = random.nextGaussian();
+
+            assertThat(random.prevGaussian(), equalTo(second));
+            assertThat(random.prevGaussian(), equalTo(first));
+            assertThat(random.position(), equalTo(1L));
+            assertThat(random.prevInt(), equalTo(new Random(seed).nextInt()));
+        }
+    }
+
+    @Test
+    public void testPrevGaussianAfterOtherDraws() {
+        for (int seed = 0; seed < 10000; seed++) {
+            ReversibleJavaRandom random = new ReversibleJavaRandom(seed);
+            double firstDouble = random.nextDouble();
+            double secondDouble = random.nextDouble();
+            double gaussian = random.nextGaussian();
+
+            assertThat(random.prevGaussian(), equalTo(gaussian));
+            assertThat(random.position(), equalTo(4L));
+            assertThat(random.prevDouble(), equalTo(secondDouble));
+            assertThat(random.prevDouble(), equalTo(firstDouble));
+        }
+    }
+
+    @Test
+    public void testPrevGaussianPairs() {
+        for (int seed = 0; seed < 1000; seed++) {
+            ReversibleJavaRandom random = new ReversibleJavaRandom(seed);
+            random.nextLong();
+            double[] first = new double[2];
+            random.nextGaussians(first);
+            long position = random.position();
+            double[] second = {random.nextGaussian(), random.nextGaussian()};
+
+            assertThat(random.prevGaussian(), equalTo(second[1]));
+            assertThat(random.prevGaussian(), equalTo(second[0]));
+            assertThat(random.position(), equalTo(position));
+            assertThat(random.prevGaussian(), equalTo(first[1]));
+            assertThat(random.prevGaussian(), equalTo(first[0]));
+            assertThat(random.nextGaussian(), equalTo(first[0]));
+        }
+    }
+
+    @Test
+    public void testNextGaussianConcurrent() throws InterruptedException {
+        ReversibleJavaRandom random = new ReversibleJavaRandom(42);
+        int threads = 4;
+        int count = 20000;
+        double[][] values = new double[threads][count];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            double[] gaussians = values[t];
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    gaussians[i] = random.nextGaussian();
+                }
+            });
+            workers[t].start();
+        }
+        Set<Double> distinct = new HashSet<>();
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            for (double gaussian : values[t]) {
+                distinct.add(gaussian);
+            }
+        }
+
+        // each cached value is returned once
+        assertThat(distinct.size(), equalTo(threads * count));
+    }
+
+    @Test
+    public void testSaveRestoreGaussianCache() {
+        Random expected = new Random(1000);
+        ByteBuffer buffer = ByteBuffer.allocate(generator.stateSize());
+        generator.nextGaussian();
+        expected.nextGaussian();
+        generator.saveState(buffer);
+        buffer.flip();
+
+        ReversibleJavaRandom restored = new ReversibleJavaRandom();
+        restored.restoreState(buffer);
+
+        double second = expected.nextGaussian();
+        double third = expected.nextGaussian();
+        assertThat(restored.nextGaussian(), equalTo(second));
+        assertThat(restored.nextGaussian(), equalTo(third));
+        assertThat(restored.prevGaussian(), equalTo(third));
+        assertThat(restored.prevGaussian(), equalTo(second));
+        assertThat(restored.nextGaussian(), equalTo(generator.nextGaussian()));
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the split loop {@link ReversibleMersenneTwister#twist()} and {@link ReversibleMersenneTwister#untwist()}
+ * with the previous single loop versions which were using modulo and the {@code mag01} table,
+ * and {@link ReversibleMersenneTwister#next()} with and without the incremental twist.
+ * <p>
+ * Run it with {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ro.derbederos.untwist.ReversibleMersenneTwisterBenchmark}.
+ * <p>
+ * The vectorized engine is measured only when the packaged jar is on the class path, instead of
+ * {@code target/classes}, and the benchmark jvm is started with {@code --add-modules jdk.incubator.vector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReversibleMersenneTwisterBenchmark {
+
+    private static final int N = 624;
+    private static final int M = 397;
+    private static final int[] MAG01 = {0x0, 0x9908B0DF};
+
+    private ReversibleMersenneTwister generator;
+    private ReversibleMersenneTwister incrementalGenerator;
+    private int[] mt;
+
+    @Setup
+    public void setUp() {
+        generator = new ReversibleMersenneTwister(new int[]{0x123, 0x234, 0x345, 0x456});
+        incrementalGenerator = new ReversibleMersenneTwister(new int[]{0x123, 0x234, 0x345, 0x456});
+        incrementalGenerator.setIncrementalTwist(true);
+        mt = new int[N];
+        for (int i = 0; i < N; i++) {
+            mt[i] = generator.next();
+        }
+    }
+
+    @Benchmark
+    public ReversibleMersenneTwister twist() {
+        generator.twist();
+        return generator;
+    }
+
+    @Benchmark
+    public ReversibleMersenneTwister untwist() {
+        generator.untwist();
+        return generator;
+    }
+
+    @Benchmark
+    public int next() {
+        return generator.next();
+    }
+
+    @Benchmark
+    public int nextIncremental() {
+        return incrementalGenerator.next();
+    }
+
+    @Benchmark
+    public int[] twistModulo() {
+        final int[] mt = this.mt;
+        for (int i = 0; i < N; i++) {
+            int x = (mt[i] & 0x80000000) | (mt[(i + 1) % N] & 0x7FFFFFFF);
+            mt[i] = mt[(i + M) % N] ^ (x >>> 1) ^ MAG01[x & 0x1];
+        }
+        return mt;
+    }
+
+    @Benchmark
+    public int[] untwistModulo() {
+        final int[] mt = this.mt;
+        for (int i = 623; i >= 0; i--) {
+            int result;
+            int tmp = mt[i] ^ mt[(i + M) % N];
+            if ((tmp & 0x80000000) == 0x80000000) {
+                tmp ^= 0x9908B0DF;
+            }
+            result = (tmp << 1) & 0x80000000;
+            tmp = mt[(i - 1 + N) % N] ^ mt[(i + M - 1) % N];
+            if ((tmp & 0x80000000) == 0x80000000) {
+                tmp ^= 0x9908B0DF;
+                result |= 1;
+            }
+            result |= (tmp << 1) & 0x7FFFFFFF;
+            mt[i] = result;
+        }
+        return mt;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReversibleMersenneTwisterBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
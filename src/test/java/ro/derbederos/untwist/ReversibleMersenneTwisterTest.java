@@ -19,14 +19,19 @@ package ro.derbederos.untwist;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static java.lang.Integer.toUnsignedLong;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 import static ro.derbederos.untwist.RandomUtils.nextDoubles;
 import static ro.derbederos.untwist.RandomUtils.nextInts;
 import static ro.derbederos.untwist.RandomUtils.nextLongs;
+import static ro.derbederos.untwist.RandomUtils.prevInts;
 import static ro.derbederos.untwist.Utils.nextBooleans;
 import static ro.derbederos.untwist.Utils.nextFloats;
 
@@ -612,4 +617,175 @@ public class ReversibleMersenneTwisterTest extends ReverseBitsStreamGeneratorAbs
         assertThat(expected, equalTo(2292643447762143663L));
         assertThat(actual, equalTo(expected));
     }
+
+    @Test
+    public void testSkipVsNext() {
+        for (int n : new int[]{0, 1, 623, 624, 625, 5000}) {
+            ReversibleMersenneTwister mt1 = makeGenerator();
+            ReversibleMersenneTwister mt2 = makeGenerator();
+            mt1.nextInt();
+            mt2.nextInt();
+
+            mt1.skip(n);
+            for (int i = 0; i < n; i++) {
+                mt2.nextInt();
+            }
+
+            assertThat(mt1.getState(), equalTo(mt2.getState()));
+            assertThat(mt1.nextInt(), equalTo(mt2.nextInt()));
+        }
+    }
+
+    @Test
+    public void testSkipVsPrev() {
+        for (int n : new int[]{1, 623, 624, 625, 5000}) {
+            ReversibleMersenneTwister mt1 = makeGenerator();
+            ReversibleMersenneTwister mt2 = makeGenerator();
+            mt1.nextInt();
+            mt2.nextInt();
+
+            mt1.skip(-n);
+            for (int i = 0; i < n; i++) {
+                mt2.prevInt();
+            }
+
+            assertThat(mt1.getState(), equalTo(mt2.getState()));
+            assertThat(mt1.prevInt(), equalTo(mt2.prevInt()));
+            assertThat(mt1.nextInt(), equalTo(mt2.nextInt()));
+        }
+    }
+
+    @Test
+    public void testJumpVsTwist() {
+        final int blocks = 5000;
+        ReversibleMersenneTwister mt1 = makeGenerator();
+        ReversibleMersenneTwister mt2 = makeGenerator();
+
+        mt1.jump(blocks);
+        for (int i = 0; i < blocks; i++) {
+            mt2.twist();
+        }
+        assertThat(mt1.getState(), equalTo(mt2.getState()));
+
+        mt1.jump(-blocks);
+        for (int i = 0; i < blocks; i++) {
+            mt2.untwist();
+        }
+        assertThat(mt1.getState(), equalTo(mt2.getState()));
+        assertThat(mt1.getState(), equalTo(makeGenerator().getState()));
+    }
+
+    @Test
+    public void testSkipFarAndBack() {
+        ReversibleMersenneTwister mt = makeGenerator();
+        int[] expected = nextInts(mt, 1000).toArray();
+
+        mt.skip(1_000_000_000_000L);
+        int[] far = nextInts(mt, 1000).toArray();
+        mt.skip(-1_000_000_001_000L);
+        mt.skip(Long.MIN_VALUE);
+        mt.skip(Long.MAX_VALUE);
+        mt.skip(-999);
+
+        assertThat(nextInts(mt, 1000).toArray(), equalTo(expected));
+        assertThat(far, not(equalTo(expected)));
+    }
+
+    @Test
+    public void testFromOutputs() {
+        for (int position : new int[]{0, 1, 623, 624, 1000, 2000}) {
+            ReversibleMersenneTwister mt = makeGenerator();
+            mt.skip(position);
+            int[] outputs = new int[700];
+            mt.nextInts(outputs, 0, outputs.length);
+
+            ReversibleMersenneTwister recovered = ReversibleMersenneTwister.fromOutputs(outputs, position);
+
+            assertThat(recovered.getState(), equalTo(mt.getState()));
+            assertThat(nextInts(recovered, 2000).toArray(), equalTo(nextInts(mt, 2000).toArray()));
+            assertThat(prevInts(recovered, 5000).toArray(), equalTo(prevInts(mt, 5000).toArray()));
+        }
+    }
+
+    @Test
+    public void testFromOutputsInvalid() {
+        int[] outputs = nextInts(makeGenerator(), 624).toArray();
+        assertThrows(IllegalArgumentException.class,
+                     () -> ReversibleMersenneTwister.fromOutputs(Arrays.copyOf(outputs, 623), 0));
+
+        outputs[0] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> ReversibleMersenneTwister.fromOutputs(outputs, 0));
+        assertThrows(IllegalArgumentException.class, () -> ReversibleMersenneTwister.fromOutputs(outputs, 5));
+    }
+
+    @Test
+    public void testRecoverMersenneKey() {
+        for (int keyLength : new int[]{1, 2, 4, 100, 621, 622}) {
+            int[] key = nextInts(new ReversibleMersenneTwister(keyLength), keyLength).toArray();
+            ReversibleMersenneTwister mt = new ReversibleMersenneTwister(key);
+            int[] outputs = nextInts(mt, 1000).toArray();
+            byte[] state = mt.getState();
+
+            assertThat(SeedUtils.recoverMersenneKey(mt, 1000, keyLength), equalTo(key));
+            assertThat(mt.getState(), equalTo(state));
+
+            ReversibleMersenneTwister recovered = ReversibleMersenneTwister.fromOutputs(outputs, 0);
+            assertThat(SeedUtils.recoverMersenneKey(recovered, outputs.length, keyLength), equalTo(key));
+        }
+    }
+
+    @Test
+    public void testRecoverMersenneKeyEquivalent() {
+        int[] key = nextInts(new ReversibleMersenneTwister(INT_SEED), 623).toArray();
+        ReversibleMersenneTwister mt = new ReversibleMersenneTwister(key);
+
+        int[] recovered = SeedUtils.recoverMersenneKey(mt, 0, key.length);
+
+        assertThat(Arrays.copyOfRange(recovered, 2, key.length), equalTo(Arrays.copyOfRange(key, 2, key.length)));
+        assertThat(new ReversibleMersenneTwister(recovered).getState(), equalTo(mt.getState()));
+    }
+
+    @Test
+    public void testRecoverMersenneKeyInvalid() {
+        ReversibleMersenneTwister mt = new ReversibleMersenneTwister(ARRAY_SEED);
+        assertThrows(IllegalArgumentException.class, () -> SeedUtils.recoverMersenneKey(mt, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> SeedUtils.recoverMersenneKey(mt, 0, 624));
+        assertThrows(IllegalArgumentException.class, () -> SeedUtils.recoverMersenneKey(mt, 1, ARRAY_SEED.length));
+        assertThrows(IllegalArgumentException.class, () -> SeedUtils.recoverMersenneKey(mt, 0, ARRAY_SEED.length + 1));
+        assertThrows(IllegalArgumentException.class,
+                     () -> SeedUtils.recoverMersenneKey(new ReversibleMersenneTwister(INT_SEED), 0, 1));
+    }
+
+    @Test
+    public void testIncrementalTwist() {
+        ReversibleMersenneTwister expected = makeGenerator();
+        ReversibleMersenneTwister mt = makeGenerator();
+        nextInts(expected, 100).toArray();
+        nextInts(mt, 100).toArray();
+        mt.setIncrementalTwist(true);
+
+        assertThat(mt.isIncrementalTwist(), equalTo(true));
+        assertThat(mt.getState(), equalTo(expected.getState()));
+        assertThat(nextInts(mt, 2000).toArray(), equalTo(nextInts(expected, 2000).toArray()));
+        assertThat(mt.getState(), equalTo(expected.getState()));
+        assertThat(prevInts(mt, 5000).toArray(), equalTo(prevInts(expected, 5000).toArray()));
+        assertThat(nextDoubles(mt, 1000).toArray(), equalTo(nextDoubles(expected, 1000).toArray()));
+
+        mt.skip(123_456);
+        expected.skip(123_456);
+        mt.jump(-5000);
+        expected.jump(-5000);
+        int[] actualInts = new int[1500];
+        int[] expectedInts = new int[1500];
+        mt.prevInts(actualInts, 0, 700);
+        expected.prevInts(expectedInts, 0, 700);
+        mt.nextInts(actualInts, 700, 800);
+        expected.nextInts(expectedInts, 700, 800);
+        assertThat(actualInts, equalTo(expectedInts));
+
+        mt.setIncrementalTwist(false);
+        assertThat(mt.isIncrementalTwist(), equalTo(false));
+        assertThat(mt.getState(), equalTo(expected.getState()));
+        assertThat(nextInts(mt, 1000).toArray(), equalTo(nextInts(expected, 1000).toArray()));
+    }
 }
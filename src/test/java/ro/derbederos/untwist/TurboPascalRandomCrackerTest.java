@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+import static ro.derbederos.untwist.RandomUtils.nextDoubles;
+
+public class TurboPascalRandomCrackerTest {
+
+    @Test
+    public void testFromIntsDice() {
+        assertFromInts(1, 20, 6);
+    }
+
+    @Test
+    public void testFromIntsLargeBounds() {
+        assertFromInts(2, 5, 1000);
+        assertFromInts(3, 2, 0x7FFFFFFF);
+    }
+
+    @Test
+    public void testFromIntsMixed() {
+        Random seeds = new Random(4);
+        for (int i = 0; i < 20; i++) {
+            int seed = seeds.nextInt();
+            TurboPascalRandom random = new TurboPascalRandom(seed);
+            int[] bounds = new int[18];
+            int[] values = new int[bounds.length];
+            for (int j = 0; j < bounds.length; j++) {
+                bounds[j] = j % 3 == 0 ? 1 : j % 3 == 1 ? 100 : 7;
+                values[j] = random.nextInt(bounds[j]);
+            }
+
+            TurboPascalRandomCracker.Match match = TurboPascalRandomCracker.fromInts(bounds, values);
+
+            assertThat(match.seed(), equalTo(seed));
+        }
+    }
+
+    @Test
+    public void testFromRange() {
+        Random seeds = new Random(5);
+        for (int i = 0; i < 20; i++) {
+            int seed = seeds.nextInt();
+            TurboPascalRandom random = new TurboPascalRandom(seed);
+            int[] values = new int[10];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = random.nextInt(50, -50);
+            }
+
+            TurboPascalRandomCracker.Match match = TurboPascalRandomCracker.fromRange(50, -50, values);
+
+            assertThat(match.seed(), equalTo(seed));
+        }
+    }
+
+    @Test
+    public void testFromDoubles() {
+        TurboPascalRandom random = new TurboPascalRandom(0x12345678);
+        double[] values = nextDoubles(random, 3).toArray();
+        assertThat(TurboPascalRandomCracker.fromDoubles(values).seed(), equalTo(0x12345678));
+
+        random = new TurboPascalRandom(-1498392781, true);
+        values = nextDoubles(random, 3).toArray();
+        TurboPascalRandomCracker.Match match = TurboPascalRandomCracker.fromDoubles(true, values);
+        assertThat(match.seed(), equalTo(-1498392781));
+        assertThat(nextDoubles(match.newGenerator(), 3).toArray(), equalTo(values));
+
+        values[2] = 0.5;
+        assertThat(TurboPascalRandomCracker.fromDoubles(true, values), nullValue());
+    }
+
+    @Test
+    public void testPosition() {
+        // Delphi starts from the seed 0
+        TurboPascalRandom random = new TurboPascalRandom(0);
+        random.skip(123_456_789);
+        int[] values = new int[8];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(100);
+        }
+
+        TurboPascalRandomCracker.Match match = TurboPascalRandomCracker.fromInts(100, values);
+
+        assertThat(match.position(0), equalTo(123_456_789L));
+        assertThat(match.position(match.seed()), equalTo(0L));
+        assertThat(match.newGenerator().nextInt(100), equalTo(values[0]));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromInts(6, 1, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromInts(6, 6));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromInts(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromInts(new int[]{6}, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromRange(0, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromDoubles());
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromDoubles(0.1));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalRandomCracker.fromDoubles(1.0));
+    }
+
+    private static void assertFromInts(long seeds, int count, int bound) {
+        Random random = new Random(seeds);
+        for (int i = 0; i < 20; i++) {
+            int seed = random.nextInt();
+            TurboPascalRandom generator = new TurboPascalRandom(seed);
+            int[] values = new int[count];
+            for (int j = 0; j < count; j++) {
+                values[j] = generator.nextInt(bound);
+            }
+
+            TurboPascalRandomCracker.Match match = TurboPascalRandomCracker.fromInts(bound, values);
+
+            assertThat(match.seed(), equalTo(seed));
+        }
+    }
+}
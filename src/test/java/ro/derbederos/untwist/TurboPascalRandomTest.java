@@ -19,11 +19,17 @@ package ro.derbederos.untwist;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static ro.derbederos.untwist.RandomUtils.nextDoubles;
 import static ro.derbederos.untwist.RandomUtils.nextInts;
 import static ro.derbederos.untwist.RandomUtils.nextLongs;
+import static ro.derbederos.untwist.RandomUtils.parallelDoubles;
+import static ro.derbederos.untwist.RandomUtils.parallelInts;
+import static ro.derbederos.untwist.RandomUtils.parallelLongs;
+import static ro.derbederos.untwist.RandomUtils.prevInts;
 import static ro.derbederos.untwist.Utils.nextBooleans;
 import static ro.derbederos.untwist.Utils.nextFloats;
 
@@ -130,4 +136,105 @@ public class TurboPascalRandomTest extends ReverseBitsStreamGeneratorAbstractTes
     public void testNextPrevMixedCalls() {
         super.testNextPrevMixedCalls();
     }
+
+    @Test
+    public void testPrevArraysNegativeSeed() {
+        for (boolean coprocessorEnabled : new boolean[]{false, true}) {
+            long[] expectedLongs = {new TurboPascalRandom(-1, coprocessorEnabled) {
+            }.prevLong()};
+            double[] expectedDoubles = {new TurboPascalRandom(-1, coprocessorEnabled) {
+            }.prevDouble()};
+            float[] expectedFloats = {new TurboPascalRandom(-1, coprocessorEnabled) {
+            }.prevFloat()};
+            long[] longs = new long[1];
+            double[] doubles = new double[1];
+            float[] floats = new float[1];
+
+            new TurboPascalRandom(-1, coprocessorEnabled) {
+            }.prevLongs(longs, 0, 1);
+            new TurboPascalRandom(-1, coprocessorEnabled) {
+            }.prevDoubles(doubles, 0, 1);
+            new TurboPascalRandom(-1, coprocessorEnabled) {
+            }.prevFloats(floats, 0, 1);
+
+            assertThat(longs, equalTo(expectedLongs));
+            assertThat(doubles, equalTo(expectedDoubles));
+            assertThat(floats, equalTo(expectedFloats));
+        }
+    }
+
+    @Test
+    public void testRestoreStateHighBitSet() {
+        TurboPascalRandom generator = new TurboPascalRandom(0);
+        generator.setSeed(0x80000001);
+        ByteBuffer state = ByteBuffer.allocate(generator.stateSize());
+        generator.saveState(state);
+        TurboPascalRandom restored = new TurboPascalRandom(0);
+        restored.restoreState(ByteBuffer.wrap(state.array()));
+
+        double[] doubles = new double[1];
+        restored.prevDoubles(doubles, 0, 1);
+        assertThat(doubles[0], equalTo(generator.prevDouble()));
+        assertThat(restored.position(), equalTo(generator.position()));
+        assertThat(restored.nextLong(), equalTo(generator.nextLong()));
+    }
+
+    @Test
+    public void testSkipVsNext() {
+        for (int n : new int[]{0, 1, 2, 1000, 65537}) {
+            TurboPascalRandom generator1 = makeGenerator();
+            TurboPascalRandom generator2 = makeGenerator();
+            generator1.nextInt();
+            generator2.nextInt();
+
+            generator1.skip(n);
+            nextInts(generator2, n).toArray();
+
+            assertThat(generator1.nextInt(), equalTo(generator2.nextInt()));
+            assertThat(generator1.position(), equalTo(n + 2L));
+        }
+    }
+
+    @Test
+    public void testSkipVsPrev() {
+        for (int n : new int[]{1, 2, 1000, 65537}) {
+            TurboPascalRandom generator1 = makeGenerator();
+            TurboPascalRandom generator2 = makeGenerator();
+
+            generator1.skip(-n);
+            prevInts(generator2, n).toArray();
+
+            assertThat(generator1.prevInt(), equalTo(generator2.prevInt()));
+            assertThat(generator1.nextInt(), equalTo(generator2.nextInt()));
+            assertThat(generator1.position(), equalTo((1L << 32) - n));
+        }
+    }
+
+    @Test
+    public void testSkipFarAndBack() {
+        TurboPascalRandom generator = makeGenerator();
+        int[] expected = nextInts(generator, 100).toArray();
+        generator.skip(-100);
+
+        generator.skip(Long.MAX_VALUE);
+        generator.skip(Long.MIN_VALUE);
+        generator.skip(1);
+        generator.skip((1L << 32));
+
+        assertThat(generator.position(), equalTo(0L));
+        assertThat(nextInts(generator, 100).toArray(), equalTo(expected));
+    }
+
+    @Test
+    public void testParallelStreams() {
+        TurboPascalRandom generator = makeGenerator();
+        TurboPascalRandom expected = makeGenerator();
+        int size = 100_003;
+
+        assertThat(parallelInts(generator, size).toArray(), equalTo(nextInts(expected, size).toArray()));
+        assertThat(parallelLongs(generator, size).toArray(), equalTo(nextLongs(expected, size).toArray()));
+        assertThat(parallelDoubles(generator, size).toArray(), equalTo(nextDoubles(expected, size).toArray()));
+        assertThat(parallelInts(generator, size).sum(), equalTo(nextInts(expected, size).sum()));
+        assertThat(generator.nextInt(), equalTo(expected.nextInt()));
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
+
+public class TurboPascalSeedSearchTest {
+
+    private static final long RANGE = 1 << 21;
+    private static final long PART_SIZE = 1 << 26;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSearchBooleans() {
+        int seed = 0x9ABCDEF0;
+        TurboPascalRandom random = new TurboPascalRandom(seed);
+        boolean[] flips = new boolean[40];
+        for (int i = 0; i < flips.length; i++) {
+            flips[i] = random.nextBoolean();
+        }
+
+        assertThat(search(TurboPascalSeedSearch.forBooleans(flips), seed), equalTo(new int[]{seed}));
+    }
+
+    @Test
+    public void testSearchInts() {
+        int seed = -123456789;
+        TurboPascalRandom random = new TurboPascalRandom(seed);
+        int[] rolls = new int[16];
+        for (int i = 0; i < rolls.length; i++) {
+            rolls[i] = random.nextInt(6);
+        }
+
+        assertThat(search(TurboPascalSeedSearch.forInts(6, rolls), seed), equalTo(new int[]{seed}));
+    }
+
+    @Test
+    public void testSearchFloats() {
+        int seed = 77;
+        TurboPascalRandom random = new TurboPascalRandom(seed);
+        float[] values = {random.nextFloat(), random.nextFloat()};
+        assertThat(search(TurboPascalSeedSearch.forFloats(false, values), seed), equalTo(new int[]{seed}));
+
+        TurboPascalRandom coprocessor = new TurboPascalRandom(seed, true);
+        values = new float[]{coprocessor.nextFloat(), coprocessor.nextFloat()};
+        assertThat(search(TurboPascalSeedSearch.forFloats(true, values), seed), equalTo(new int[]{seed}));
+        assertThat(search(TurboPascalSeedSearch.forFloats(false, values), seed), equalTo(new int[0]));
+    }
+
+    @Test
+    public void testSearchResultFileResumed() throws IOException {
+        long from = 0x4000_0000L;
+        long to = from + 3 * PART_SIZE;
+        int seed = (int) (from + 2 * PART_SIZE + 12345);
+        TurboPascalRandom random = new TurboPascalRandom(seed);
+        int[] values = new int[4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1000);
+        }
+        Path file = folder.getRoot().toPath().resolve("search.seeds");
+
+        TurboPascalSeedSearch cancelled = TurboPascalSeedSearch.forInts(1000, values);
+        assertThrows(CancellationException.class, () -> cancelled.search(file, from, to, ForkJoinPool.commonPool(),
+                (searched, total) -> {
+                    if (searched > PART_SIZE) {
+                        cancelled.cancel();
+                    }
+                }));
+
+        long[] first = new long[1];
+        int[] seeds = TurboPascalSeedSearch.forInts(1000, values).search(file, from, to, ForkJoinPool.commonPool(),
+                (searched, total) -> first[0] = first[0] == 0 ? searched : first[0]);
+        assertThat(seeds, equalTo(new int[]{seed}));
+        assertThat(first[0] > PART_SIZE, equalTo(true));
+
+        // a complete file gives its seeds, and it can not be used by other searches
+        assertThat(TurboPascalSeedSearch.forInts(1000, values).search(file, from, to, ForkJoinPool.commonPool(), null),
+                equalTo(new int[]{seed}));
+        assertThrows(IOException.class, () -> TurboPascalSeedSearch.forInts(1000, values)
+                .search(file, from, to - 1, ForkJoinPool.commonPool(), null));
+        assertThrows(IOException.class, () -> TurboPascalSeedSearch.forInts(999, values)
+                .search(file, from, to, ForkJoinPool.commonPool(), null));
+    }
+
+    @Test
+    public void testSearchInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalSeedSearch.forBooleans(new boolean[31]));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalSeedSearch.forInts(6, 6));
+        assertThrows(IllegalArgumentException.class,
+                () -> TurboPascalSeedSearch.forInts(new int[]{1 << 30, 1 << 30}, new int[]{1}));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalSeedSearch.forFloats(false, Float.MIN_VALUE, 0.5f));
+        assertThrows(IllegalArgumentException.class, () -> TurboPascalSeedSearch.forFloats(false, -0.5f, 0.5f));
+        TurboPascalSeedSearch search = TurboPascalSeedSearch.forInts(1 << 16, 1, 2, 3);
+        assertThrows(IllegalArgumentException.class,
+                () -> search.search(0, (1L << 32) + 1, ForkJoinPool.commonPool(), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> search.search(folder.getRoot().toPath().resolve("invalid"), 10, 5, ForkJoinPool.commonPool(),
+                        null));
+    }
+
+    /**
+     * Searches a range around the seed.
+     */
+    private static int[] search(TurboPascalSeedSearch search, int seed) {
+        long from = Math.max(0, Integer.toUnsignedLong(seed) - RANGE / 2);
+        long to = Math.min(1L << 32, from + RANGE);
+        return search.search(from, to, ForkJoinPool.commonPool(), null);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static ro.derbederos.untwist.RandomUtils.nextDoubles;
+import static ro.derbederos.untwist.RandomUtils.nextInts;
+import static ro.derbederos.untwist.RandomUtils.nextLongs;
+import static ro.derbederos.untwist.RandomUtils.prevInts;
+import static ro.derbederos.untwist.Utils.nextBooleans;
+import static ro.derbederos.untwist.Utils.nextFloats;
+
+public class UnsynchronizedJavaRandomTest extends ReverseRandomGeneratorAbstractTest<UnsynchronizedJavaRandom> {
+
+    private final ReversibleJavaRandom expectedGenerator = new ReversibleJavaRandom(1000);
+
+    @Override
+    protected UnsynchronizedJavaRandom makeGenerator() {
+        return new UnsynchronizedJavaRandom(1000);
+    }
+
+    @Test
+    public void testGetSeed() {
+        UnsynchronizedJavaRandom generator = new UnsynchronizedJavaRandom();
+        long seed = generator.getSeed();
+        long expected = generator.nextLong();
+
+        for (int i = 0; i < 100; i++) {
+            generator.nextInt();
+        }
+        generator.setSeed(seed);
+
+        assertThat(generator.nextLong(), equalTo(expected));
+    }
+
+    @Test
+    public void testSameValuesAsJavaRandom() {
+        Random expected = new Random(-5);
+        generator.setSeed(-5);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(generator.nextGaussian(), equalTo(expected.nextGaussian()));
+            assertThat(generator.nextInt(i + 1), equalTo(expected.nextInt(i + 1)));
+        }
+        assertThat(generator.nextLong(), equalTo(expected.nextLong()));
+        assertThat(generator.nextBoolean(), equalTo(expected.nextBoolean()));
+        assertThat(generator.nextFloat(), equalTo(expected.nextFloat()));
+    }
+
+    @Test
+    public void testSameValuesAsReversibleJavaRandom() {
+        ReversibleJavaRandom expected = new ReversibleJavaRandom(12345);
+        generator.setSeed(12345);
+
+        assertThat(nextInts(generator, 1000).toArray(), equalTo(nextInts(expected, 1000).toArray()));
+        assertThat(prevInts(generator, 1500).toArray(), equalTo(prevInts(expected, 1500).toArray()));
+        assertThat(generator.getSeed(), equalTo(expected.getSeed()));
+    }
+
+    @Override
+    @Test
+    public void testNextInt16ExactValue() {
+        assertThat(nextInts(generator, 10, 0, 16).toArray(), equalTo(nextInts(expectedGenerator, 10, 0, 16).toArray()));
+    }
+
+    @Override
+    @Test
+    public void testNextIntExactValue() {
+        assertThat(nextInts(generator, 10).toArray(), equalTo(nextInts(expectedGenerator, 10).toArray()));
+    }
+
+    @Override
+    @Test
+    public void testNextIntWideRangeExactValue() {
+        assertThat(nextInts(generator, 20, -1_000_000_000, Integer.MAX_VALUE).toArray(),
+                equalTo(nextInts(expectedGenerator, 20, -1_000_000_000, Integer.MAX_VALUE).toArray()));
+    }
+
+    @Override
+    @Test
+    public void testNextLong16ExactValue() {
+        assertThat(nextLongs(generator, 10, 0, 16).toArray(),
+                equalTo(nextLongs(expectedGenerator, 10, 0, 16).toArray()));
+    }
+
+    @Override
+    @Test
+    public void testNextLongExactValue() {
+        assertThat(nextLongs(generator, 10).toArray(), equalTo(nextLongs(expectedGenerator, 10).toArray()));
+    }
+
+    @Override
+    @Test
+    public void testNextDoubleExactValue() {
+        assertThat(nextDoubles(generator, 10).toArray(), equalTo(nextDoubles(expectedGenerator, 10).toArray()));
+    }
+
+    @Override
+    @Test
+    public void testNextFloatExactValue() {
+        assertThat(nextFloats(generator, 10).toArray(Float[]::new),
+                equalTo(nextFloats(expectedGenerator, 10).toArray(Float[]::new)));
+    }
+
+    @Override
+    @Test
+    public void testNextBooleanExactValue() {
+        assertThat(nextBooleans(generator, 20).toArray(Boolean[]::new),
+                equalTo(nextBooleans(expectedGenerator, 20).toArray(Boolean[]::new)));
+    }
+
+    @Override
+    @Test
+    @Ignore
+    public void testNextPrevMixedCalls() {
+        super.testNextPrevMixedCalls();
+    }
+
+    @Test
+    public void testSkipVsNext() {
+        for (int n : new int[]{0, 1, 2, 1000, 65537}) {
+            UnsynchronizedJavaRandom generator1 = makeGenerator();
+            UnsynchronizedJavaRandom generator2 = makeGenerator();
+            generator1.nextInt();
+            generator2.nextInt();
+
+            generator1.skip(n);
+            nextInts(generator2, n).toArray();
+
+            assertThat(generator1.nextInt(), equalTo(generator2.nextInt()));
+            assertThat(generator1.position(), equalTo(n + 2L));
+        }
+    }
+
+    @Test
+    public void testSkipVsPrev() {
+        for (int n : new int[]{1, 2, 1000, 65537}) {
+            UnsynchronizedJavaRandom generator1 = makeGenerator();
+            UnsynchronizedJavaRandom generator2 = makeGenerator();
+
+            generator1.skip(-n);
+            prevInts(generator2, n).toArray();
+
+            assertThat(generator1.prevInt(), equalTo(generator2.prevInt()));
+            assertThat(generator1.nextInt(), equalTo(generator2.nextInt()));
+            assertThat(generator1.position(), equalTo((1L << 48) - n));
+        }
+    }
+
+    @Test
+    public void testSkipFarAndBack() {
+        UnsynchronizedJavaRandom generator = makeGenerator();
+        int[] expected = nextInts(generator, 100).toArray();
+        generator.skip(-100);
+
+        generator.skip(Long.MAX_VALUE);
+        generator.skip(Long.MIN_VALUE);
+        generator.skip(1);
+        generator.skip((1L << 48));
+
+        assertThat(generator.position(), equalTo(0L));
+        assertThat(nextInts(generator, 100).toArray(), equalTo(expected));
+    }
+
+    @Test
+    public void testNextGaussiansSameAsJavaRandom() {
+        Random expected = new Random(7);
+        generator.setSeed(7);
+        generator.nextGaussian();
+        expected.nextGaussian();
+
+        double[] actual = new double[101];
+        generator.nextGaussians(actual);
+        for (double value : actual) {
+            assertThat(value, equalTo(expected.nextGaussian()));
+        }
+        assertThat(generator.nextInt(), equalTo(expected.nextInt()));
+    }
+
+    @Test
+    public void testPrevGaussian() {
+        double[] expected = new double[1001];
+        generator.nextGaussians(expected);
+
+        for (int i = expected.length - 1; i >= 0; i--) {
+            assertThat(generator.prevGaussian(), equalTo(expected[i]));
+        }
+        assertThat(generator.position(), equalTo(0L));
+
+        double[] actual = new double[expected.length];
+        generator.nextGaussians(actual);
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    public void testPrevGaussianAfterOtherDraws() {
+        for (int seed = 0; seed < 10000; seed++) {
+            UnsynchronizedJavaRandom random = new UnsynchronizedJavaRandom(seed);
+            double first = random.nextDouble();
+            double second = random.nextDouble();
+            double gaussian = random.nextGaussian();
+
+            random.undoNextGaussian();
+            assertThat(random.position(), equalTo(4L));
+            assertThat(random.nextGaussian(), equalTo(gaussian));
+            assertThat(random.prevGaussian(), equalTo(gaussian));
+            assertThat(random.prevDouble(), equalTo(second));
+            assertThat(random.prevDouble(), equalTo(first));
+        }
+    }
+
+    @Test
+    public void testSaveRestoreAsReversibleJavaRandom() {
+        ReversibleJavaRandom expected = new ReversibleJavaRandom(42);
+        generator.setSeed(42);
+        expected.nextInt();
+        expected.nextGaussian();
+        ByteBuffer buffer = ByteBuffer.allocate(expected.stateSize());
+        expected.saveState(buffer);
+        buffer.flip();
+
+        generator.restoreState(buffer);
+        assertThat(generator.stateSize(), equalTo(expected.stateSize()));
+        for (int i = 0; i < 100; i++) {
+            assertThat(generator.nextGaussian(), equalTo(expected.nextGaussian()));
+        }
+        for (int i = 0; i < 101; i++) {
+            assertThat(generator.prevGaussian(), equalTo(expected.prevGaussian()));
+        }
+
+        buffer.clear();
+        generator.saveState(buffer);
+        buffer.flip();
+        expected.restoreState(buffer);
+        assertThat(expected.nextGaussian(), equalTo(generator.nextGaussian()));
+        assertThat(expected.nextLong(), equalTo(generator.nextLong()));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017-2018 Claudiu Soroiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ro.derbederos.untwist;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assume.assumeTrue;
+import static ro.derbederos.untwist.MersenneTwisterEngine.N;
+
+/**
+ * Compares the vectorized engine with the scalar one. The vectorized engine is only compiled by the
+ * {@code java17} profile, which also puts it on the test class path, so the tests are skipped otherwise.
+ */
+public class VectorMersenneTwisterEngineTest {
+
+    private static final String VECTOR_ENGINE = "ro.derbederos.untwist.VectorMersenneTwisterEngine";
+
+    private static MersenneTwisterEngine scalar;
+    private static MersenneTwisterEngine vector;
+
+    @BeforeClass
+    public static void setUpEngines() throws ReflectiveOperationException {
+        scalar = new MersenneTwisterEngine();
+        final Class<?> type;
+        try {
+            type = Class.forName(VECTOR_ENGINE);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return;
+        }
+        final Method isSupported = type.getDeclaredMethod("isSupported");
+        isSupported.setAccessible(true);
+        if ((Boolean) isSupported.invoke(null)) {
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            vector = (MersenneTwisterEngine) constructor.newInstance();
+        }
+    }
+
+    @Test
+    public void testTwist() {
+        assumeTrue(vector != null);
+        for (int[] state : states()) {
+            int[] expected = state.clone();
+            int[] actual = state.clone();
+            scalar.twist(expected);
+            vector.twist(actual);
+
+            assertThat(actual, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void testUntwist() {
+        assumeTrue(vector != null);
+        for (int[] state : states()) {
+            int[] expected = state.clone();
+            int[] actual = state.clone();
+            scalar.untwist(expected);
+            vector.untwist(actual);
+
+            assertThat(actual, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void testTemper() {
+        assumeTrue(vector != null);
+        for (int[] state : states()) {
+            for (int offset : new int[]{0, 1, 7, N - 17}) {
+                int[] expected = new int[N + 3];
+                int[] actual = new int[N + 3];
+                scalar.temper(state, offset, expected, 3, N - offset);
+                vector.temper(state, offset, actual, 3, N - offset);
+
+                assertThat(actual, equalTo(expected));
+            }
+        }
+    }
+
+    private static int[][] states() {
+        Random random = new Random(17);
+        int[][] states = new int[10][N];
+        Arrays.fill(states[1], -1);
+        Arrays.fill(states[2], MersenneTwisterEngine.UPPER_MASK);
+        for (int i = 3; i < states.length; i++) {
+            for (int j = 0; j < N; j++) {
+                states[i][j] = random.nextInt();
+            }
+        }
+        return states;
+    }
+}